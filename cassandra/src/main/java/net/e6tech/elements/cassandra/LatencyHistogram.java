@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.e6tech.elements.cassandra;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in microseconds.  Buckets are log-linear: each power of two is split into
+ * eight sub-buckets so a percentile is accurate to within about 12%.  Samples are kept in two rotating
+ * windows so that percentiles follow the recent latency of a table instead of its whole history.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+    private final long windowNanos;
+    private volatile Window current;
+    private volatile Window previous;
+
+    public LatencyHistogram() {
+        this(60, TimeUnit.SECONDS);
+    }
+
+    public LatencyHistogram(long window, TimeUnit unit) {
+        this.windowNanos = unit.toNanos(window);
+        current = new Window(System.nanoTime());
+        previous = new Window(current.start);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) Math.max(value, 0);
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = (index >>> SUB_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        window().record(micros);
+    }
+
+    private Window window() {
+        Window w = current;
+        long now = System.nanoTime();
+        if (now - w.start < windowNanos)
+            return w;
+        synchronized (this) {
+            w = current;
+            if (now - w.start >= windowNanos) {
+                // a window that has been idle for more than one period is stale as well.
+                previous = (now - w.start < 2 * windowNanos) ? w : new Window(now);
+                w = new Window(now);
+                current = w;
+            }
+            return w;
+        }
+    }
+
+    public long getCount() {
+        Window w = window();
+        return w.count.sum() + previous.count.sum();
+    }
+
+    public double getMean() {
+        Window w = window();
+        Window p = previous;
+        long count = w.count.sum() + p.count.sum();
+        return (count == 0) ? 0 : (double) (w.sum.sum() + p.sum.sum()) / count;
+    }
+
+    public long getMax() {
+        Window w = window();
+        return Math.max(w.max.get(), previous.max.get());
+    }
+
+    /**
+     * Returns the latency in microseconds at or below which percentile percent of the samples fall, or 0 if
+     * there are no samples.
+     */
+    public long percentile(double percentile) {
+        Window w = window();
+        Window p = previous;
+        long total = w.count.sum() + p.count.sum();
+        if (total == 0)
+            return 0;
+        // walks the live counters and stops at the target bucket, so low percentiles only touch the first buckets.
+        // Samples recorded during the walk may be missed or counted; the result stays within a bucket either way.
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long max = Math.max(w.max.get(), p.max.get());
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = w.counts.get(i) + p.counts.get(i);
+            seen += count;
+            if (seen >= target && count > 0)
+                return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    private static class Window {
+        final long start;
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        final LongAdder count = new LongAdder();
+        final LongAdder sum = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Window(long start) {
+            this.start = start;
+        }
+
+        void record(long micros) {
+            counts.incrementAndGet(index(micros));
+            count.increment();
+            sum.add(micros);
+            max.accumulate(micros);
+        }
+    }
+}
@@ -21,6 +21,11 @@ import net.e6tech.elements.common.util.SystemException;
 @SuppressWarnings({"squid:S2975", "squid:S1845", "squid:ClassVariableVisibilityCheck"})
 public class ReadOptions implements Cloneable {
     public Consistency consistency;
+    public Boolean idempotent;
+    public Double speculativePercentile; // issue another read once the table's latency at this percentile has passed
+    public Integer speculativeExecutions; // max number of speculative reads, defaults to 1 when a percentile is set
+    public Long timeout; // milliseconds before the read is retried at downgradeConsistency, or failed if none is set
+    public Consistency downgradeConsistency;
 
     public static ReadOptions from(ReadOptions from) {
         if (from == null)
@@ -34,9 +39,36 @@ public class ReadOptions implements Cloneable {
             return this;
         if (options.consistency != null)
             consistency = options.consistency;
+        if (options.idempotent != null)
+            idempotent = options.idempotent;
+        if (options.speculativePercentile != null)
+            speculativePercentile = options.speculativePercentile;
+        if (options.speculativeExecutions != null)
+            speculativeExecutions = options.speculativeExecutions;
+        if (options.timeout != null)
+            timeout = options.timeout;
+        if (options.downgradeConsistency != null)
+            downgradeConsistency = options.downgradeConsistency;
         return this;
     }
 
+    /**
+     * Reads are idempotent unless explicitly marked otherwise.  Speculative reads and downgrades are only
+     * attempted for idempotent reads.
+     */
+    public boolean isIdempotent() {
+        return idempotent == null || idempotent;
+    }
+
+    public boolean isSpeculative() {
+        return isIdempotent() && speculativePercentile != null && speculativePercentile > 0
+                && (speculativeExecutions == null || speculativeExecutions > 0);
+    }
+
+    public boolean isAdaptive() {
+        return isSpeculative() || (timeout != null && timeout > 0);
+    }
+
     public ReadOptions clone() {
         try {
             return (ReadOptions) super.clone();
@@ -57,4 +89,69 @@ public class ReadOptions implements Cloneable {
         this.consistency = c;
         return this;
     }
+
+    public Boolean getIdempotent() {
+        return idempotent;
+    }
+
+    public void setIdempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    public ReadOptions idempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+        return this;
+    }
+
+    public Double getSpeculativePercentile() {
+        return speculativePercentile;
+    }
+
+    public void setSpeculativePercentile(Double speculativePercentile) {
+        this.speculativePercentile = speculativePercentile;
+    }
+
+    public ReadOptions speculativePercentile(Double percentile) {
+        this.speculativePercentile = percentile;
+        return this;
+    }
+
+    public Integer getSpeculativeExecutions() {
+        return speculativeExecutions;
+    }
+
+    public void setSpeculativeExecutions(Integer speculativeExecutions) {
+        this.speculativeExecutions = speculativeExecutions;
+    }
+
+    public ReadOptions speculativeExecutions(Integer executions) {
+        this.speculativeExecutions = executions;
+        return this;
+    }
+
+    public Long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Long timeout) {
+        this.timeout = timeout;
+    }
+
+    public ReadOptions timeout(Long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public Consistency getDowngradeConsistency() {
+        return downgradeConsistency;
+    }
+
+    public void setDowngradeConsistency(Consistency downgradeConsistency) {
+        this.downgradeConsistency = downgradeConsistency;
+    }
+
+    public ReadOptions downgradeConsistency(Consistency c) {
+        this.downgradeConsistency = c;
+        return this;
+    }
 }
@@ -19,6 +19,7 @@ package net.e6tech.elements.cassandra;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import net.e6tech.elements.cassandra.async.Stages;
 import net.e6tech.elements.cassandra.driver.cql.AsyncResultSet;
 import net.e6tech.elements.cassandra.driver.metadata.TableMetadata;
 import net.e6tech.elements.cassandra.etl.ETLContext;
@@ -70,6 +71,9 @@ public class Schema {
     private ExecutorService threadPool;
     private int threadSize = 1;
     private long validationWait = 1000L;
+    private int deployConcurrency = 0;
+    private long schemaAgreementPoll = 200L;
+    private long schemaAgreementTimeout = 60000L;
 
     public int getThreadSize() {
         return threadSize;
@@ -101,6 +105,38 @@ public class Schema {
         return this;
     }
 
+    public int getDeployConcurrency() {
+        return deployConcurrency;
+    }
+
+    /**
+     * When greater than 0, createTables deploys through a DDL plan with up to deployConcurrency statements in flight.
+     */
+    public void setDeployConcurrency(int deployConcurrency) {
+        this.deployConcurrency = deployConcurrency;
+    }
+
+    public Schema deployConcurrency(int concurrency) {
+        setDeployConcurrency(concurrency);
+        return this;
+    }
+
+    public long getSchemaAgreementPoll() {
+        return schemaAgreementPoll;
+    }
+
+    public void setSchemaAgreementPoll(long schemaAgreementPoll) {
+        this.schemaAgreementPoll = schemaAgreementPoll;
+    }
+
+    public long getSchemaAgreementTimeout() {
+        return schemaAgreementTimeout;
+    }
+
+    public void setSchemaAgreementTimeout(long schemaAgreementTimeout) {
+        this.schemaAgreementTimeout = schemaAgreementTimeout;
+    }
+
     public List<Map<String, String>> getCodecs() {
         return codecs;
     }
@@ -145,6 +181,11 @@ public class Schema {
     }
 
     public void createTables(String keyspace, Class ... classes) {
+        if (deployConcurrency > 0) {
+            deployTables(keyspace, classes);
+            return;
+        }
+
         provision.open().accept(Resources.class, resources -> {
             List<TableGenerator> tableGenerators = new LinkedList<>();
             Session session = resources.getInstance(Session.class);
@@ -227,6 +268,100 @@ public class Schema {
         validateTables(keyspace, classes);
     }
 
+    /**
+     * Deploys tables and indexes through a DDL plan: tables that are missing are created and existing tables are
+     * altered by diffing against their TableMetadata, then indexes that do not exist yet are created.  Statements for
+     * different tables run concurrently, up to deployConcurrency, while statements for the same table run in order.
+     * Between the two phases schema agreement is polled for instead of sleeping.  There are no user defined types
+     * in the generated schema, so there is no type phase.  validateTables only runs as a fallback when agreement
+     * is not reached within schemaAgreementTimeout.
+     */
+    public void deployTables(String keyspace, Class ... classes) {
+        AtomicBoolean agreed = new AtomicBoolean(false);
+        provision.open().accept(Resources.class, resources -> {
+            Session session = resources.getInstance(Session.class);
+            SessionProvider provider = getProvider(resources);
+            Map<String, List<String>> tablePhase = new LinkedHashMap<>();
+            Map<String, List<String>> indexPhase = new LinkedHashMap<>();
+
+            for (Class cls : classes) {
+                if (getTableName(cls) == null)
+                    continue;
+                TableGenerator generator = provider.getGenerator().getTable(keyspace, cls);
+                TableMetadata metadata = provider.getTableMetadata(keyspace, generator.getTableName());
+                List<String> existingIndexes = Collections.emptyList();
+                if (metadata == null) {
+                    tablePhase.put(generator.fullyQualifiedTableName(), Collections.singletonList(generator.generate()));
+                } else {
+                    List<String> alters = generator.alterStatements(metadata, isDropColumn());
+                    if (!alters.isEmpty())
+                        tablePhase.put(generator.fullyQualifiedTableName(), alters);
+                    existingIndexes = metadata.getIndexes();
+                }
+
+                IndexGenerator indexGenerator = provider.getGenerator().createIndexes(keyspace, cls);
+                List<String> indexes = indexGenerator.generate(existingIndexes);
+                if (!indexes.isEmpty())
+                    indexPhase.put(indexGenerator.fullyQualifiedTableName(), indexes);
+            }
+
+            logger.info("Deploying schema: {} table(s) to create or alter, {} table(s) to index", tablePhase.size(), indexPhase.size());
+            runPhase(session, keyspace, "table", tablePhase);
+            awaitSchemaAgreement(provider);
+            runPhase(session, keyspace, "index", indexPhase);
+            agreed.set(awaitSchemaAgreement(provider));
+        });
+
+        if (!agreed.get())
+            validateTables(keyspace, classes);
+    }
+
+    private void runPhase(Session session, String keyspace, String phase, Map<String, List<String>> plan) {
+        if (plan.isEmpty())
+            return;
+        List<Map.Entry<String, List<String>>> entries = new ArrayList<>(plan.entrySet());
+        try {
+            Stages.allOf(entries, deployConcurrency, entry -> {
+                CompletionStage<AsyncResultSet> stage = CompletableFuture.completedFuture(null);
+                for (String cql : entry.getValue()) {
+                    stage = stage.thenCompose(rs -> {
+                        logger.info("Deploying {} {}", phase, entry.getKey());
+                        return session.executeStage(keyspace, cql);
+                    }).whenComplete((rs, ex) -> {
+                        if (ex != null)
+                            logger.warn("Error in deploying {} for {}: {}", phase, entry.getKey(), cql);
+                    });
+                }
+                return stage;
+            }).toCompletableFuture().join();
+        } catch (CompletionException ex) {
+            throw new SystemException("Cannot deploy " + phase + "(s)", ex.getCause());
+        }
+    }
+
+    /**
+     * @return true if all nodes agree on the schema, false if agreement was not reached in time.
+     */
+    protected boolean awaitSchemaAgreement(SessionProvider provider) {
+        long deadline = System.currentTimeMillis() + schemaAgreementTimeout;
+        while (true) {
+            Boolean agreed = provider.checkSchemaAgreementAsync().toCompletableFuture().join();
+            if (Boolean.TRUE.equals(agreed))
+                return true;
+            if (System.currentTimeMillis() >= deadline) {
+                logger.warn("Schema agreement not reached after {}ms", schemaAgreementTimeout);
+                return false;
+            }
+            try {
+                Thread.sleep(schemaAgreementPoll);
+            } catch (InterruptedException e) {
+                logger.warn("Interrupted", e);
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
     protected String getTableName(Class entityClass) {
         Generator generator = provision.getInstance(SessionProvider.class).getGenerator();
         Class tmp = entityClass;
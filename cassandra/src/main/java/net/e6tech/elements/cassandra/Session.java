@@ -21,6 +21,7 @@ import net.e6tech.elements.cassandra.driver.cql.Bound;
 import net.e6tech.elements.cassandra.driver.cql.Prepared;
 import net.e6tech.elements.cassandra.driver.cql.ResultSet;
 
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
 
 public interface Session {
@@ -37,6 +38,14 @@ public interface Session {
 
     Future<AsyncResultSet> executeAsync(Bound bound);
 
+    CompletionStage<AsyncResultSet> executeStage(String query);
+
+    CompletionStage<AsyncResultSet> executeStage(String keyspace, String query);
+
+    CompletionStage<AsyncResultSet> executeStage(Bound bound);
+
     Prepared prepare(String query);
+
+    CompletionStage<Prepared> prepareStage(String query);
 }
 
@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 
 @SuppressWarnings("squid:S3038")
@@ -181,6 +182,11 @@ public abstract class SessionProvider implements ResourceProvider, Initializable
 
     public abstract TableMetadata getTableMetadata(String keyspaceIn, String tableName);
 
+    /**
+     * Completes with true if all nodes agree on the schema version.
+     */
+    public abstract CompletionStage<Boolean> checkSchemaAgreementAsync();
+
     protected String getKeyspace(String keyspaceIn) {
         String ks = keyspaceIn;
         if (ks == null)
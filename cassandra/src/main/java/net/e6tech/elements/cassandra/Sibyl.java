@@ -21,21 +21,33 @@ import com.google.common.cache.CacheBuilder;
 import net.e6tech.elements.cassandra.async.Async;
 import net.e6tech.elements.cassandra.async.AsyncFutures;
 import net.e6tech.elements.cassandra.async.AsyncPrepared;
+import net.e6tech.elements.cassandra.async.Stages;
+import net.e6tech.elements.cassandra.driver.cql.AsyncResultSet;
 import net.e6tech.elements.cassandra.driver.cql.BaseResultSet;
 import net.e6tech.elements.cassandra.driver.cql.Bound;
 import net.e6tech.elements.cassandra.driver.cql.Prepared;
 import net.e6tech.elements.cassandra.driver.cql.ResultSet;
+import net.e6tech.elements.cassandra.driver.cql.Row;
+import net.e6tech.elements.cassandra.etl.ChangeCapture;
+import net.e6tech.elements.cassandra.etl.ChangeLog;
 import net.e6tech.elements.cassandra.etl.Inspector;
 import net.e6tech.elements.cassandra.etl.PrimaryKey;
 import net.e6tech.elements.cassandra.generator.Generator;
+import net.e6tech.elements.cassandra.query.PagingIterator;
 import net.e6tech.elements.common.inject.Inject;
 import net.e6tech.elements.common.resources.Provision;
 import net.e6tech.elements.common.resources.Resources;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.ArrayList;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 
@@ -51,6 +63,9 @@ public abstract class Sibyl {
     private Resources resources;
     private ReadOptions readOptions = new ReadOptions().consistency(Consistency.LOCAL_SERIAL);
     private WriteOptions writeOptions = new WriteOptions().consistency(Consistency.LOCAL_QUORUM).saveNullFields(false);
+    private WriteStats writeStats = new WriteStats();
+    private ChangeCapture changeCapture;
+    private Map<Class, ReadOptions> readPolicies = new ConcurrentHashMap<>();
 
     public <T> T computeIfAbsent(String key, Function<String, T> mappingFunction) {
         return resources.configurator().computeIfAbsent(key, mappingFunction);
@@ -64,6 +79,40 @@ public abstract class Sibyl {
         this.readOptions = readOptions;
     }
 
+    public ReadOptions getReadPolicy(Class cls) {
+        return readPolicies.get(cls);
+    }
+
+    /**
+     * Read options for an entity class.  They take precedence over the default read options and apply to
+     * every get of cls, e.g. a speculative percentile for a latency sensitive table.
+     */
+    public void setReadPolicy(Class cls, ReadOptions policy) {
+        if (policy == null)
+            readPolicies.remove(cls);
+        else
+            readPolicies.put(cls, policy);
+    }
+
+    public Map<Class, ReadOptions> getReadPolicies() {
+        return readPolicies;
+    }
+
+    public void setReadPolicies(Map<Class, ReadOptions> readPolicies) {
+        this.readPolicies = new ConcurrentHashMap<>(readPolicies);
+    }
+
+    public TableLatency getTableLatency(Class cls) {
+        return TableLatency.of(getKeyspace(), getInspector(cls).tableName());
+    }
+
+    /**
+     * Whether a failed read was a timeout, which allows it to be retried at ReadOptions.downgradeConsistency.
+     */
+    protected boolean isReadTimeout(Throwable throwable) {
+        return false;
+    }
+
     public WriteOptions getWriteOptions() {
         return writeOptions;
     }
@@ -72,6 +121,37 @@ public abstract class Sibyl {
         this.writeOptions = writeOptions;
     }
 
+    public WriteStats getWriteStats() {
+        return writeStats;
+    }
+
+    public ChangeCapture getChangeCapture() {
+        return changeCapture;
+    }
+
+    /**
+     * When set, saves and deletes of the captured classes are also recorded in the change_log table.
+     */
+    public void setChangeCapture(ChangeCapture changeCapture) {
+        this.changeCapture = changeCapture;
+    }
+
+    protected boolean captures(Class cls) {
+        ChangeCapture capture = changeCapture;
+        return capture != null && capture.captures(cls);
+    }
+
+    /**
+     * Returns the change_log row recording operation on entity, or null if cls is not captured.  The driver
+     * specific save and delete calls write it together with the entity.
+     */
+    protected <T> ChangeLog change(String operation, Class<T> cls, T entity) {
+        ChangeCapture capture = changeCapture;
+        if (capture == null || !capture.captures(cls))
+            return null;
+        return capture.changes(operation, getInspector(cls).tableName(), Collections.singletonList(entity)).get(0);
+    }
+
     public Resources getResources() {
         return resources;
     }
@@ -93,14 +173,36 @@ public abstract class Sibyl {
         return getResources().newInstance(Async.class);
     }
 
-    public <D> AsyncPrepared<D> createAsync(String query) {
-        Prepared pstmt;
+    // unqualified table names resolve against the session keyspace, so the same CQL is cached per keyspace.
+    private String preparedKey(String query) {
+        String keyspace = getKeyspace();
+        return keyspace == null ? query : keyspace + ":" + query;
+    }
+
+    public Prepared prepare(String query) {
         try {
-            pstmt = preparedStatementCache.get(query, () -> getSession().prepare(query));
+            return preparedStatementCache.get(preparedKey(query), () -> getSession().prepare(query));
         } catch (ExecutionException e) {
-            pstmt = getSession().prepare(query);
+            return getSession().prepare(query);
         }
-        return getResources().newInstance(AsyncPrepared.class).prepare(pstmt);
+    }
+
+    /**
+     * Prepares without blocking if the statement is not cached yet.
+     */
+    public CompletionStage<Prepared> prepareAsync(String query) {
+        String key = preparedKey(query);
+        Prepared prepared = preparedStatementCache.getIfPresent(key);
+        if (prepared != null)
+            return CompletableFuture.completedFuture(prepared);
+        return getSession().prepareStage(query).thenApply(p -> {
+            preparedStatementCache.put(key, p);
+            return p;
+        });
+    }
+
+    public <D> AsyncPrepared<D> createAsync(String query) {
+        return getResources().newInstance(AsyncPrepared.class).prepare(prepare(query));
     }
 
     public <D> AsyncPrepared<D> createAsync(Prepared stmt) {
@@ -108,35 +210,115 @@ public abstract class Sibyl {
     }
 
     public ResultSet execute(String query, Map<String, Object> map) {
-        Prepared pstmt ;
-        try {
-            pstmt = preparedStatementCache.get(query, () -> getSession().prepare(query));
-        } catch (ExecutionException e) {
-            pstmt = getSession().prepare(query);
-        }
-        return execute(pstmt, map);
+        return execute(prepare(query), map);
     }
 
     protected ResultSet execute(Prepared pstmt, Map<String, Object> map) {
+        return getSession().execute(bind(pstmt, map));
+    }
+
+    public CompletionStage<AsyncResultSet> executeAsync(String query, Map<String, Object> map) {
+        return prepareAsync(query).thenCompose(pstmt -> getSession().executeStage(bind(pstmt, map)));
+    }
+
+    /**
+     * Maps every page of the result without blocking; the next page is requested when the current one is consumed.
+     */
+    public <X> CompletionStage<List<X>> allAsync(Class<X> cls, String query, Map<String, Object> map) {
+        return collect(executeAsync(query, map), rowMapper(cls), new ArrayList<>());
+    }
+
+    /**
+     * Maps the first row.  Pages are fetched until a row is found since a page may be empty while more remain.
+     */
+    public <X> CompletionStage<X> oneAsync(Class<X> cls, String query, Map<String, Object> map) {
+        return first(executeAsync(query, map), rowMapper(cls));
+    }
+
+    static <X> CompletionStage<X> first(CompletionStage<AsyncResultSet> stage, Function<Row, X> mapper) {
+        return stage.thenCompose(rs -> {
+            for (Row row : rs.currentPage())
+                return CompletableFuture.completedFuture(mapper.apply(row));
+            if (rs.hasMorePages())
+                return first(rs.fetchNextPage(), mapper);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private <X> CompletionStage<List<X>> collect(CompletionStage<AsyncResultSet> stage, Function<Row, X> mapper, List<X> list) {
+        return stage.thenCompose(rs -> {
+            for (Row row : rs.currentPage())
+                list.add(mapper.apply(row));
+            if (rs.hasMorePages())
+                return collect(rs.fetchNextPage(), mapper, list);
+            return CompletableFuture.completedFuture(list);
+        });
+    }
+
+    /**
+     * Reads the entities with at most concurrency reads in flight.  Results are in the order of primaryKeys.
+     */
+    public <X> CompletionStage<List<X>> getAllAsync(Collection<PrimaryKey> primaryKeys, Class<X> cls, ReadOptions readOptions, int concurrency) {
+        return Stages.allOf(primaryKeys, concurrency, key -> getAsync(cls, key, readOptions));
+    }
+
+    public <X> CompletionStage<Void> saveAllAsync(Collection<X> list, Class<X> cls, WriteOptions writeOptions, int concurrency) {
+        return Stages.allOf(list, concurrency, item -> saveAsync(cls, item, writeOptions)).thenApply(l -> null);
+    }
+
+    protected Bound bind(Prepared pstmt, Map<String, Object> map) {
         Bound bound = pstmt.bind();
         for (Map.Entry<String, Object> entry : map.entrySet()) {
-            if (entry.getValue() == null) {
-                bound.setToNull(entry.getKey());
-            } else {
-                if (entry.getValue() instanceof List) {
-                    bound.setList(entry.getKey(), (List) entry.getValue());
-                } else if (entry.getValue() instanceof Set) {
-                    bound.setSet(entry.getKey(), (Set) entry.getValue());
-                } else if (entry.getValue() instanceof Map) {
-                    bound.setMap(entry.getKey(), (Map) entry.getValue());
-                } else {
-                    bound.set(entry.getKey(), entry.getValue(), (Class) entry.getValue().getClass());
-                }
-            }
+            bind(bound, entry.getKey(), entry.getValue());
+        }
+        return bound;
+    }
+
+    /**
+     * Binds values by slot.  names[i] is the bind marker for values[i].
+     */
+    public Bound bind(Prepared pstmt, String[] names, Object[] values) {
+        Bound bound = pstmt.bind();
+        for (int i = 0; i < names.length; i++) {
+            bind(bound, names[i], values[i]);
+        }
+        return bound;
+    }
+
+    private void bind(Bound bound, String name, Object value) {
+        if (value == null) {
+            bound.setToNull(name);
+        } else if (value instanceof List) {
+            bound.setList(name, (List) value);
+        } else if (value instanceof Set) {
+            bound.setSet(name, (Set) value);
+        } else if (value instanceof Map) {
+            bound.setMap(name, (Map) value);
+        } else {
+            bound.set(name, value, (Class) value.getClass());
         }
-        return getSession().execute(bound);
     }
 
+    /**
+     * Executes the query asynchronously and returns an iterator that maps rows page by page instead of loading
+     * the whole result into a list.
+     * @param pageSize number of rows per page; the driver default is used if it is not positive.
+     * @param pagingState paging state from a previous PagingIterator to resume from, may be null.
+     */
+    public <X> PagingIterator<X> stream(Class<X> cls, String query, Map<String, Object> map, int pageSize, ByteBuffer pagingState) {
+        return stream(cls, bind(prepare(query), map), pageSize, pagingState);
+    }
+
+    public <X> PagingIterator<X> stream(Class<X> cls, Bound bound, int pageSize, ByteBuffer pagingState) {
+        if (pageSize > 0)
+            bound.setPageSize(pageSize);
+        if (pagingState != null)
+            bound.setPagingState(pagingState);
+        return new PagingIterator<>(getSession().executeStage(bound), rowMapper(cls));
+    }
+
+    protected abstract <X> Function<Row, X> rowMapper(Class<X> cls);
+
     public abstract String getKeyspace();
 
     public abstract <T> T get(Class<T> cls, PrimaryKey primaryKey);
@@ -145,8 +327,14 @@ public abstract class Sibyl {
 
     public abstract <X> AsyncFutures<X, PrimaryKey> get(Collection<PrimaryKey> list, Class<X> cls, ReadOptions userOptions);
 
+    public abstract <T> CompletionStage<T> getAsync(Class<T> cls, PrimaryKey primaryKey, ReadOptions readOptions);
+
     public abstract <T> void save(Class<T> cls, T entity);
 
+    public abstract <T> CompletionStage<Void> saveAsync(Class<T> cls, T entity, WriteOptions options);
+
+    public abstract <T> CompletionStage<Void> deleteAsync(Class<T> cls, T entity);
+
     public abstract <T> void save(Class<T> cls, T entity, WriteOptions options);
 
     public abstract <T> void delete(Class<T> cls, T entity);
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.e6tech.elements.cassandra;
+
+import net.e6tech.elements.common.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read latencies of a table.  One instance exists per keyspace and table; it is registered with the platform
+ * MBeanServer as net.e6tech.elements.cassandra:type=TableLatency,keyspace=...,table=... when first used.
+ */
+public class TableLatency implements TableLatencyMXBean {
+
+    private static final Logger logger = Logger.getLogger();
+    private static final Map<String, TableLatency> latencies = new ConcurrentHashMap<>();
+
+    private final String keyspace;
+    private final String table;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder speculativeReads = new LongAdder();
+    private final LongAdder downgradedReads = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    protected TableLatency(String keyspace, String table) {
+        this.keyspace = keyspace;
+        this.table = table;
+    }
+
+    public static TableLatency of(String keyspace, String table) {
+        String key = (keyspace == null) ? table : keyspace + "." + table;
+        return latencies.computeIfAbsent(key, k -> {
+            TableLatency latency = new TableLatency(keyspace, table);
+            latency.registerMBean();
+            return latency;
+        });
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("net.e6tech.elements.cassandra:type=TableLatency,"
+                    + (keyspace == null ? "" : "keyspace=" + keyspace + ",") + "table=" + table);
+            if (!server.isRegistered(name))
+                server.registerMBean(this, name);
+        } catch (JMException e) {
+            // latencies are still tracked, they are just not visible through JMX.
+            logger.warn("Cannot register TableLatency MBean for " + table, e);
+        }
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    public void speculated() {
+        speculativeReads.increment();
+    }
+
+    public void downgraded() {
+        downgradedReads.increment();
+    }
+
+    public void timedOut() {
+        timeouts.increment();
+    }
+
+    @Override
+    public String getKeyspace() {
+        return keyspace;
+    }
+
+    @Override
+    public String getTable() {
+        return table;
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    @Override
+    public double getMean() {
+        return histogram.getMean();
+    }
+
+    @Override
+    public long getP50() {
+        return histogram.percentile(50);
+    }
+
+    @Override
+    public long getP95() {
+        return histogram.percentile(95);
+    }
+
+    @Override
+    public long getP99() {
+        return histogram.percentile(99);
+    }
+
+    @Override
+    public long getP999() {
+        return histogram.percentile(99.9);
+    }
+
+    @Override
+    public long getMax() {
+        return histogram.getMax();
+    }
+
+    @Override
+    public long getSpeculativeReads() {
+        return speculativeReads.sum();
+    }
+
+    @Override
+    public long getDowngradedReads() {
+        return downgradedReads.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+}
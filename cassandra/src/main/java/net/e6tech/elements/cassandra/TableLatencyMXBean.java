@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.e6tech.elements.cassandra;
+
+/*
+ * Latencies are in microseconds over the most recent one to two histogram windows.
+ */
+public interface TableLatencyMXBean {
+
+    String getKeyspace();
+
+    String getTable();
+
+    long getCount();
+
+    double getMean();
+
+    long getP50();
+
+    long getP95();
+
+    long getP99();
+
+    long getP999();
+
+    long getMax();
+
+    long getSpeculativeReads();
+
+    long getDowngradedReads();
+
+    long getTimeouts();
+}
@@ -27,6 +27,8 @@ public class WriteOptions implements Cloneable {
     public Boolean saveNullFields;
     public Boolean ifNotExists;
     public Long timeout; // use for save
+    public Integer batchSize; // max entities per unlogged batch when saving a collection, batching is off if not > 1
+    public Integer batchBytes; // max serialized size of an unlogged batch
 
     public static WriteOptions from(WriteOptions from) {
         if (from == null)
@@ -46,6 +48,10 @@ public class WriteOptions implements Cloneable {
             saveNullFields = options.saveNullFields;
         if (options.ifNotExists != null)
             ifNotExists = options.ifNotExists;
+        if (options.batchSize != null)
+            batchSize = options.batchSize;
+        if (options.batchBytes != null)
+            batchBytes = options.batchBytes;
         return this;
     }
 
@@ -109,6 +115,36 @@ public class WriteOptions implements Cloneable {
         return this;
     }
 
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public WriteOptions batchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public Integer getBatchBytes() {
+        return batchBytes;
+    }
+
+    public void setBatchBytes(Integer batchBytes) {
+        this.batchBytes = batchBytes;
+    }
+
+    public WriteOptions batchBytes(Integer batchBytes) {
+        this.batchBytes = batchBytes;
+        return this;
+    }
+
+    public boolean isBatched() {
+        return batchSize != null && batchSize > 1 && (ifNotExists == null || !ifNotExists);
+    }
+
     public Long getTimeout() {
         return timeout;
     }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for Sibyl's collection saves so that batched and unbatched throughput can be compared.
+ */
+public class WriteStats {
+    private final LongAdder batchedEntities = new LongAdder();
+    private final LongAdder batchedNanos = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder unbatchedEntities = new LongAdder();
+    private final LongAdder unbatchedNanos = new LongAdder();
+
+    public void recordBatched(int entities, int batchCount, long nanos) {
+        batchedEntities.add(entities);
+        batches.add(batchCount);
+        batchedNanos.add(nanos);
+    }
+
+    public void recordUnbatched(int entities, long nanos) {
+        unbatchedEntities.add(entities);
+        unbatchedNanos.add(nanos);
+    }
+
+    public long getBatchedEntities() {
+        return batchedEntities.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getUnbatchedEntities() {
+        return unbatchedEntities.sum();
+    }
+
+    /**
+     * @return average number of entities per batch.
+     */
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) batchedEntities.sum() / count;
+    }
+
+    /**
+     * @return entities per second written through unlogged batches.
+     */
+    public double getBatchedThroughput() {
+        return throughput(batchedEntities.sum(), batchedNanos.sum());
+    }
+
+    /**
+     * @return entities per second written one statement at a time.
+     */
+    public double getUnbatchedThroughput() {
+        return throughput(unbatchedEntities.sum(), unbatchedNanos.sum());
+    }
+
+    private static double throughput(long count, long nanos) {
+        return nanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    public void reset() {
+        batchedEntities.reset();
+        batchedNanos.reset();
+        batches.reset();
+        unbatchedEntities.reset();
+        unbatchedNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("batched=%d in %d batches (%.1f/s), unbatched=%d (%.1f/s)",
+                getBatchedEntities(), getBatches(), getBatchedThroughput(),
+                getUnbatchedEntities(), getUnbatchedThroughput());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.e6tech.elements.cassandra.async;
+
+import net.e6tech.elements.cassandra.ReadOptions;
+import net.e6tech.elements.cassandra.TableLatency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Carries out a single read according to its ReadOptions.
+ * <ul>
+ *     <li>Speculative reads: once the table's latency at speculativePercentile has passed without a response,
+ *     the same read is issued again, up to speculativeExecutions times.  The first response wins.</li>
+ *     <li>Downgrade: when a read times out, either on the server or after timeout milliseconds, it is retried
+ *     once at downgradeConsistency.</li>
+ * </ul>
+ * Both only apply to idempotent reads.  Speculation is not attempted until the table has enough samples
+ * for a meaningful percentile.
+ */
+public class AdaptiveRead<T> {
+
+    public static final long MIN_SAMPLES = 100;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AdaptiveRead");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReadOptions options;
+    private final TableLatency latency;
+    private final Function<ReadOptions, CompletionStage<T>> reader;
+    private final Predicate<Throwable> timeoutCheck;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicBoolean downgraded = new AtomicBoolean();
+    private final List<ScheduledFuture<?>> timers = new ArrayList<>(2);
+
+    public AdaptiveRead(ReadOptions options, TableLatency latency, Function<ReadOptions, CompletionStage<T>> reader,
+                        Predicate<Throwable> timeoutCheck) {
+        this.options = options;
+        this.latency = latency;
+        this.reader = reader;
+        this.timeoutCheck = timeoutCheck;
+    }
+
+    public static <T> CompletionStage<T> read(ReadOptions options, TableLatency latency,
+                                              Function<ReadOptions, CompletionStage<T>> reader,
+                                              Predicate<Throwable> timeoutCheck) {
+        return new AdaptiveRead<>(options, latency, reader, timeoutCheck).start();
+    }
+
+    public CompletionStage<T> start() {
+        launch(options);
+        synchronized (timers) {
+            if (options.isSpeculative() && latency.getCount() >= MIN_SAMPLES) {
+                long delay = Math.max(1, latency.getHistogram().percentile(options.speculativePercentile));
+                int executions = (options.speculativeExecutions == null) ? 1 : options.speculativeExecutions;
+                for (int i = 1; i <= executions; i++)
+                    timers.add(scheduler.schedule(this::speculate, delay * i, TimeUnit.MICROSECONDS));
+            }
+            if (options.timeout != null && options.timeout > 0)
+                timers.add(scheduler.schedule(this::expire, options.timeout, TimeUnit.MILLISECONDS));
+        }
+        result.whenComplete((value, error) -> {
+            synchronized (timers) {
+                timers.forEach(timer -> timer.cancel(false));
+            }
+        });
+        return result;
+    }
+
+    private void speculate() {
+        if (result.isDone())
+            return;
+        latency.speculated();
+        launch(options);
+    }
+
+    private void expire() {
+        if (result.isDone())
+            return;
+        latency.timedOut();
+        if (!downgrade() && !downgraded.get())
+            result.completeExceptionally(new TimeoutException("Read of " + latency.getTable() + " timed out after " + options.timeout + "ms"));
+    }
+
+    private boolean downgrade() {
+        if (result.isDone() || !options.isIdempotent() || options.downgradeConsistency == null
+                || downgraded.getAndSet(true))
+            return false;
+        latency.downgraded();
+        launch(options.clone().consistency(options.downgradeConsistency));
+        return true;
+    }
+
+    private void launch(ReadOptions readOptions) {
+        outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        CompletionStage<T> stage;
+        try {
+            stage = reader.apply(readOptions);
+        } catch (RuntimeException ex) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            stage = failed;
+        }
+
+        stage.whenComplete((value, error) -> {
+            if (error == null) {
+                latency.record(System.nanoTime() - start);
+                result.complete(value);
+                return;
+            }
+            Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+            if (timeoutCheck.test(cause)) {
+                latency.timedOut();
+                downgrade();
+            }
+            if (outstanding.decrementAndGet() == 0)
+                result.completeExceptionally(cause);
+        });
+    }
+}
@@ -24,6 +24,8 @@ import net.e6tech.elements.cassandra.driver.cql.Prepared;
 import net.e6tech.elements.common.resources.Provision;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
@@ -85,6 +87,23 @@ public class AsyncPrepared<D> extends Async<AsyncResultSet, D> {
         return getResult();
     }
 
+    /**
+     * Binds and executes without registering a Future with this instance, so nothing blocks on the result.
+     */
+    public CompletionStage<AsyncResultSet> executeStage(Consumer<Bound> consumer) {
+        Bound bound = prepared.bind();
+        consumer.accept(bound);
+        return session.executeStage(bound);
+    }
+
+    /**
+     * Executes one statement per item with at most concurrency statements in flight.  Results are in the order of
+     * the collection.
+     */
+    public CompletionStage<List<AsyncResultSet>> executeStage(Collection<D> collection, int concurrency, BiConsumer<D, Bound> biConsumer) {
+        return Stages.allOf(collection, concurrency, t -> executeStage(bound -> biConsumer.accept(t, bound)));
+    }
+
     public AsyncResultSetFutures<D> execute(D[] array, BiConsumer<D, Bound> biConsumer) {
         resizeFuturesData(array.length);
         for (D t : array) {
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.async;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Composition helpers for CompletionStage based calls.  None of the methods block; results are delivered
+ * through the returned stage.
+ */
+public class Stages {
+
+    private Stages() {
+    }
+
+    /**
+     * Completes with the results in the order of the stages, or exceptionally with the first failure.
+     */
+    public static <T> CompletionStage<List<T>> allOf(Collection<? extends CompletionStage<T>> stages) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(stages.size());
+        for (CompletionStage<T> stage : stages)
+            futures.add(stage.toCompletableFuture());
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<T> list = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> f : futures)
+                list.add(f.join());
+            return list;
+        });
+    }
+
+    /**
+     * Applies function to each item with at most concurrency stages outstanding at any time.  A new call is started
+     * from the completion of a previous one, so no thread waits in between.  Results are in the order of items.
+     * After a failure no new calls are started and the returned stage completes exceptionally with the first failure
+     * once the outstanding ones finish.
+     */
+    public static <T, R> CompletionStage<List<R>> allOf(Collection<T> items, int concurrency, Function<T, CompletionStage<R>> function) {
+        if (items.isEmpty())
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        return new Bounded<>(new ArrayList<>(items), Math.max(1, concurrency), function).start();
+    }
+
+    private static class Bounded<T, R> {
+        private final List<T> items;
+        private final Function<T, CompletionStage<R>> function;
+        private final Object[] results;
+        private final int concurrency;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicInteger pending;
+        private final CompletableFuture<List<R>> result = new CompletableFuture<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Bounded(List<T> items, int concurrency, Function<T, CompletionStage<R>> function) {
+            this.items = items;
+            this.function = function;
+            this.concurrency = Math.min(concurrency, items.size());
+            this.results = new Object[items.size()];
+            this.pending = new AtomicInteger(items.size());
+        }
+
+        CompletionStage<List<R>> start() {
+            for (int i = 0; i < concurrency; i++)
+                signal();
+            return result;
+        }
+
+        // Each signal launches one item.  Stages that complete inline only bump wip, so the loop here
+        // launches their successors instead of recursing.
+        private void signal() {
+            if (wip.getAndIncrement() != 0)
+                return;
+            do {
+                launch();
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void launch() {
+            while (true) {
+                int index = next.getAndIncrement();
+                if (index >= items.size())
+                    return;
+                if (failure.get() != null) { // skip the rest
+                    done(1);
+                    continue;
+                }
+
+                CompletionStage<R> stage;
+                try {
+                    stage = function.apply(items.get(index));
+                } catch (RuntimeException ex) {
+                    failure.compareAndSet(null, ex);
+                    done(1);
+                    continue;
+                }
+
+                stage.whenComplete((r, ex) -> {
+                    if (ex != null)
+                        failure.compareAndSet(null, ex);
+                    else
+                        results[index] = r;
+                    done(1);
+                    signal();
+                });
+                return;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void done(int count) {
+            if (pending.addAndGet(-count) != 0)
+                return;
+            if (failure.get() != null)
+                result.completeExceptionally(failure.get());
+            else
+                result.complete((List<R>) Arrays.asList(results));
+        }
+    }
+}
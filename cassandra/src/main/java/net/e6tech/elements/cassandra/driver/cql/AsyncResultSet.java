@@ -16,5 +16,24 @@
 
 package net.e6tech.elements.cassandra.driver.cql;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionStage;
+
 public interface AsyncResultSet extends BaseResultSet {
+
+    /**
+     * Rows of the current page only.  Unlike iterator(), it never fetches the next page.
+     */
+    Iterable<Row> currentPage();
+
+    int remaining();
+
+    boolean hasMorePages();
+
+    CompletionStage<AsyncResultSet> fetchNextPage();
+
+    /**
+     * Paging state that resumes the query after the current page, or null if this is the last page.
+     */
+    ByteBuffer getPagingState();
 }
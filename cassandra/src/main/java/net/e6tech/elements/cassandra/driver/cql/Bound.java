@@ -16,6 +16,7 @@
 
 package net.e6tech.elements.cassandra.driver.cql;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,4 +34,8 @@ public interface Bound {
     <T> Bound setSet(String name, Set<T> v);
 
     <K, V> Bound setMap(String name, Map<K, V> v);
+
+    Bound setPageSize(int pageSize);
+
+    Bound setPagingState(ByteBuffer pagingState);
 }
@@ -25,6 +25,7 @@ public class AbstractTableMetadata implements TableMetadata {
     private List<ColumnMetadata> primaryKey = new LinkedList<>();
     private List<ColumnMetadata> partitionKey = new LinkedList<>();
     private List<ColumnMetadata> clusteringColumns = new LinkedList<>();
+    private List<String> indexes = new LinkedList<>();
 
     @Override
     public String getName() {
@@ -70,4 +71,13 @@ public class AbstractTableMetadata implements TableMetadata {
     public void setClusteringColumns(List<ColumnMetadata> clusteringColumns) {
         this.clusteringColumns = clusteringColumns;
     }
+
+    @Override
+    public List<String> getIndexes() {
+        return indexes;
+    }
+
+    public void setIndexes(List<String> indexes) {
+        this.indexes = indexes;
+    }
 }
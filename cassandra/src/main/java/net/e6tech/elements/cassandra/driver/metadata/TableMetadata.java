@@ -30,4 +30,6 @@ public interface TableMetadata {
 
     List<ColumnMetadata> getClusteringColumns();
 
+    List<String> getIndexes();
+
 }
@@ -20,6 +20,7 @@ import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import net.e6tech.elements.cassandra.driver.Wrapper;
 import net.e6tech.elements.cassandra.driver.cql.Bound;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -94,4 +95,16 @@ public class BoundV4 extends Wrapper<BoundStatement> implements Bound {
 
         return this;
     }
+
+    @Override
+    public Bound setPageSize(int pageSize) {
+        wrap(unwrap().setPageSize(pageSize));
+        return this;
+    }
+
+    @Override
+    public Bound setPagingState(ByteBuffer pagingState) {
+        wrap(unwrap().setPagingState(pagingState));
+        return this;
+    }
 }
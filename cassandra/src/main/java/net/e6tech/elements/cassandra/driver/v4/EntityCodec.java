@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.v4;
+
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.data.GettableByName;
+import com.datastax.oss.driver.api.core.data.SettableByName;
+import com.datastax.oss.driver.api.mapper.entity.saving.NullSavingStrategy;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.e6tech.elements.cassandra.etl.Inspector;
+import net.e6tech.elements.common.util.SystemException;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Per entity mapper between rows, bound statements and entities.  Column names, types and accessors are laid out
+ * in arrays once per class, entities are created through a cached constructor handle and, for rows, column indexes
+ * are resolved once per result layout instead of looking up every column by name.
+ */
+@SuppressWarnings("unchecked")
+public class EntityCodec<T> {
+
+    private static Cache<Inspector, EntityCodec> codecs = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private final Inspector inspector;
+    private final String[] columns;
+    private final Class[] types;
+    private final Inspector.ColumnAccessor[] accessors;
+    private final String[] keyColumns;
+    private final Class[] keyTypes;
+    private final Inspector.ColumnAccessor[] keyAccessors;
+    private volatile Layout layout;
+
+    public static <T> EntityCodec<T> of(Inspector inspector) {
+        try {
+            return codecs.get(inspector, () -> new EntityCodec<>(inspector));
+        } catch (ExecutionException e) {
+            throw new SystemException(e.getCause());
+        }
+    }
+
+    protected EntityCodec(Inspector inspector) {
+        this.inspector = inspector;
+        accessors = inspector.getColumns().toArray(new Inspector.ColumnAccessor[0]);
+        columns = new String[accessors.length];
+        types = new Class[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            columns[i] = accessors[i].getColumnName();
+            types[i] = accessors[i].getType();
+        }
+
+        List<Inspector.ColumnAccessor> keys = inspector.getPrimaryKeyColumns();
+        keyAccessors = keys.toArray(new Inspector.ColumnAccessor[0]);
+        keyColumns = new String[keyAccessors.length];
+        keyTypes = new Class[keyAccessors.length];
+        for (int i = 0; i < keyAccessors.length; i++) {
+            keyColumns[i] = keyAccessors[i].getColumnName();
+            keyTypes[i] = keyAccessors[i].getType();
+        }
+    }
+
+    public T read(GettableByName source) {
+        T entity = inspector.newInstance();
+        if (source instanceof Row) {
+            Row row = (Row) source;
+            int[] indexes = indexes(row.getColumnDefinitions());
+            for (int i = 0; i < accessors.length; i++) {
+                int idx = indexes[i];
+                Object value = (idx >= 0) ? row.get(idx, types[i]) : row.get(columns[i], types[i]);
+                accessors[i].set(entity, value);
+            }
+        } else {
+            for (int i = 0; i < accessors.length; i++)
+                accessors[i].set(entity, source.get(columns[i], types[i]));
+        }
+        return entity;
+    }
+
+    // rows of the same result, or of the same prepared statement, share their ColumnDefinitions
+    private int[] indexes(ColumnDefinitions definitions) {
+        Layout l = layout;
+        if (l != null && l.definitions == definitions)
+            return l.indexes;
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++)
+            indexes[i] = definitions.firstIndexOf(columns[i]);
+        layout = new Layout(definitions, indexes);
+        return indexes;
+    }
+
+    public <S extends SettableByName<S>> S write(T entity, S target, NullSavingStrategy nullSavingStrategy) {
+        S s = target;
+        for (int i = 0; i < accessors.length; i++) {
+            Object value = accessors[i].get(entity);
+            if (value != null || nullSavingStrategy == NullSavingStrategy.SET_TO_NULL)
+                s = (S) s.set(columns[i], value, types[i]);
+        }
+        return s;
+    }
+
+    /**
+     * Binds the entity's primary key columns.
+     */
+    public <S extends SettableByName<S>> S writeKeys(T entity, S target) {
+        S s = target;
+        for (int i = 0; i < keyAccessors.length; i++)
+            s = (S) s.set(keyColumns[i], keyAccessors[i].get(entity), keyTypes[i]);
+        return s;
+    }
+
+    /**
+     * Binds primary key values given in partition key then clustering key order.
+     */
+    public <S extends SettableByName<S>> S writeKeys(Object[] keys, S target) {
+        S s = target;
+        for (int i = 0; i < keyColumns.length; i++)
+            s = (S) s.set(keyColumns[i], keys[i], keyTypes[i]);
+        return s;
+    }
+
+    private static class Layout {
+        final ColumnDefinitions definitions;
+        final int[] indexes;
+
+        Layout(ColumnDefinitions definitions, int[] indexes) {
+            this.definitions = definitions;
+            this.indexes = indexes;
+        }
+    }
+}
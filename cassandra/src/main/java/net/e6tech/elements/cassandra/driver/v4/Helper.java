@@ -34,7 +34,6 @@ import com.datastax.oss.driver.internal.mapper.entity.EntityHelperBase;
 import com.datastax.oss.driver.internal.querybuilder.update.DefaultUpdate;
 import net.e6tech.elements.cassandra.etl.Inspector;
 import net.e6tech.elements.common.logging.Logger;
-import net.e6tech.elements.common.util.SystemException;
 
 import javax.annotation.Nonnull;
 import java.util.HashSet;
@@ -46,6 +45,7 @@ public class Helper<T> extends EntityHelperBase<T> {
     private static final Logger LOG = Logger.getLogger();
     private Class<T> entityClass;
     private Inspector inspector;
+    private EntityCodec<T> codec;
 
     public Helper(MapperContext context, Class<T> entityClass, Inspector inspector) {
         super(context, inspector.tableName(entityClass));
@@ -56,6 +56,11 @@ public class Helper<T> extends EntityHelperBase<T> {
 
         this.entityClass = entityClass;
         this.inspector = inspector;
+        this.codec = EntityCodec.of(inspector);
+    }
+
+    public EntityCodec<T> getCodec() {
+        return codec;
     }
 
     @Override
@@ -63,37 +68,17 @@ public class Helper<T> extends EntityHelperBase<T> {
         return entityClass;
     }
 
-    @SuppressWarnings({"unchecked", "squid:S1905"}) // this is just nonsense from sonarlint.
     @Override
     public <S extends SettableByName<S>> S set(T entity,
                                                S target,
                                                NullSavingStrategy nullSavingStrategy) {
-
-        for (Inspector.ColumnAccessor accessor : inspector.getColumns()) {
-            Object value = accessor.get(entity);
-            if (value != null || nullSavingStrategy == NullSavingStrategy.SET_TO_NULL) {
-                target = (S) target.set(accessor.getColumnName(), value, accessor.getType());
-            }
-        }
-
-        return target;
+        return codec.write(entity, target, nullSavingStrategy);
     }
 
-    @SuppressWarnings("unchecked")
     @Nonnull
     @Override
     public T get(@Nonnull GettableByName source) {
-        T returnValue;
-        try {
-            returnValue = entityClass.getDeclaredConstructor().newInstance();
-        } catch (Exception e) {
-            throw new SystemException(e);
-        }
-
-        for (Inspector.ColumnAccessor accessor : inspector.getColumns()) {
-            accessor.set(returnValue, source.get(accessor.getColumnName(), accessor.getType()));
-        }
-        return returnValue;
+        return codec.read(source);
     }
 
     @Nonnull
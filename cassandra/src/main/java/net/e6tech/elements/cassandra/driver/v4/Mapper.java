@@ -19,11 +19,15 @@ package net.e6tech.elements.cassandra.driver.v4;
 import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
 import com.datastax.oss.driver.api.core.PagingIterable;
 import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import net.e6tech.elements.cassandra.ReadOptions;
 import net.e6tech.elements.cassandra.WriteOptions;
 import net.e6tech.elements.cassandra.driver.cql.Row;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletionStage;
 
 public interface Mapper<T> {
@@ -46,5 +50,17 @@ public interface Mapper<T> {
 
     CompletionStage<Void> saveAsync(WriteOptions options, T entity);
 
+    BoundStatement saveStatement(WriteOptions options, T entity);
+
+    List<BatchStatement> saveBatches(WriteOptions options, Collection<T> entities);
+
+    CompletionStage<Void> executeAsync(BatchStatement batch);
+
+    CompletionStage<Void> executeAsync(BoundStatement statement);
+
     void delete(T entity);
+
+    CompletionStage<Void> deleteAsync(T entity);
+
+    BoundStatement deleteStatement(T entity);
 }
@@ -20,6 +20,7 @@ package net.e6tech.elements.cassandra.driver.v4;
 import com.datastax.oss.driver.api.core.DefaultConsistencyLevel;
 import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
 import com.datastax.oss.driver.api.core.PagingIterable;
+import com.datastax.oss.driver.api.core.context.DriverContext;
 import com.datastax.oss.driver.api.core.cql.*;
 import com.datastax.oss.driver.api.mapper.MapperContext;
 import com.datastax.oss.driver.api.mapper.entity.saving.NullSavingStrategy;
@@ -32,9 +33,8 @@ import net.e6tech.elements.cassandra.WriteOptions;
 import net.e6tech.elements.cassandra.etl.Inspector;
 import net.e6tech.elements.common.logging.Logger;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
@@ -43,6 +43,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class MapperImpl<T> extends DaoBase implements Mapper<T> {
 
     private static final Logger LOG = Logger.getLogger();
+    private static final int DEFAULT_BATCH_BYTES = 5 * 1024; // Cassandra's default batch_size_warn_threshold
 
     private final Helper<T> helper;
     private final PreparedStatement findByIdStatement;
@@ -96,18 +97,14 @@ public class MapperImpl<T> extends DaoBase implements Mapper<T> {
     }
 
     private BoundStatement getBoundStatement(ReadOptions options, Object ... keys) {
-        BoundStatementBuilder boundStatementBuilder = findByIdStatement.boundStatementBuilder();
-
-        int i = 0;
-        for (Inspector.ColumnAccessor accessor : inspector.getPrimaryKeyColumns()) {
-            boundStatementBuilder = boundStatementBuilder.set(accessor.getColumnName(), keys[i], accessor.getType());
-            i++;
-        }
-
+        BoundStatementBuilder boundStatementBuilder = helper.getCodec().writeKeys(keys, findByIdStatement.boundStatementBuilder());
         BoundStatement boundStatement =  boundStatementBuilder.build();
         if (options != null && options.consistency != null) {
             boundStatement = boundStatement.setConsistencyLevel(DefaultConsistencyLevel.valueOf(options.consistency.name()));
         }
+        if (options != null && options.idempotent != null) {
+            boundStatement = boundStatement.setIdempotent(options.idempotent);
+        }
         return boundStatement;
     }
 
@@ -125,8 +122,9 @@ public class MapperImpl<T> extends DaoBase implements Mapper<T> {
         }
     }
 
+    @Override
     @SuppressWarnings("squid:S3776")
-    private BoundStatement saveBoundStatement(WriteOptions options, T entity) {
+    public BoundStatement saveStatement(WriteOptions options, T entity) {
         PreparedStatement save = (options == null) ? saveStatement
                 : saveStatements.computeIfAbsent(options, wo -> {
                     Insert insert = helper.insert();
@@ -165,13 +163,75 @@ public class MapperImpl<T> extends DaoBase implements Mapper<T> {
 
     @Override
     public void save(WriteOptions options, T entity) {
-        execute(saveBoundStatement(options, entity));
+        execute(saveStatement(options, entity));
     }
 
     @Override
     public CompletionStage<Void> saveAsync(WriteOptions options, T entity) {
         try {
-            return executeAsyncAndMapToVoid(saveBoundStatement(options, entity));
+            return executeAsyncAndMapToVoid(saveStatement(options, entity));
+        } catch (Exception t) {
+            return CompletableFutures.failedFuture(t);
+        }
+    }
+
+    /**
+     * Groups the entities' insert statements by routing key, i.e. by partition, into unlogged batches holding at most
+     * options.batchSize statements and about options.batchBytes bytes.  Because every statement in a batch shares the
+     * same routing key, the driver's token aware load balancing sends each batch to a replica that owns the partition.
+     */
+    @Override
+    public List<BatchStatement> saveBatches(WriteOptions options, Collection<T> entities) {
+        int maxStatements = (options.batchSize == null || options.batchSize < 1) ? 1 : options.batchSize;
+        int maxBytes = (options.batchBytes == null || options.batchBytes <= 0) ? DEFAULT_BATCH_BYTES : options.batchBytes;
+        DriverContext driverContext = context.getSession().getContext();
+
+        Map<ByteBuffer, List<BoundStatement>> partitions = new LinkedHashMap<>();
+        for (T entity : entities) {
+            BoundStatement bound = saveStatement(options, entity);
+            partitions.computeIfAbsent(bound.getRoutingKey(), k -> new ArrayList<>()).add(bound);
+        }
+
+        List<BatchStatement> batches = new ArrayList<>();
+        for (List<BoundStatement> statements : partitions.values()) {
+            List<BatchableStatement<?>> batch = new ArrayList<>();
+            int bytes = 0;
+            for (BoundStatement statement : statements) {
+                int size = statement.computeSizeInBytes(driverContext);
+                if (!batch.isEmpty() && (batch.size() >= maxStatements || bytes + size > maxBytes)) {
+                    batches.add(newBatch(options, batch));
+                    batch = new ArrayList<>();
+                    bytes = 0;
+                }
+                batch.add(statement);
+                bytes += size;
+            }
+            if (!batch.isEmpty())
+                batches.add(newBatch(options, batch));
+        }
+        return batches;
+    }
+
+    private BatchStatement newBatch(WriteOptions options, List<BatchableStatement<?>> statements) {
+        BatchStatement batch = BatchStatement.newInstance(BatchType.UNLOGGED, statements);
+        if (options.consistency != null)
+            batch = batch.setConsistencyLevel(DefaultConsistencyLevel.valueOf(options.consistency.name()));
+        return batch;
+    }
+
+    @Override
+    public CompletionStage<Void> executeAsync(BatchStatement batch) {
+        try {
+            return executeAsyncAndMapToVoid(batch);
+        } catch (Exception t) {
+            return CompletableFutures.failedFuture(t);
+        }
+    }
+
+    @Override
+    public CompletionStage<Void> executeAsync(BoundStatement statement) {
+        try {
+            return executeAsyncAndMapToVoid(statement);
         } catch (Exception t) {
             return CompletableFutures.failedFuture(t);
         }
@@ -179,15 +239,21 @@ public class MapperImpl<T> extends DaoBase implements Mapper<T> {
 
     @Override
     public void delete(T entity) {
-        BoundStatementBuilder boundStatementBuilder = deleteStatement.boundStatementBuilder();
+        execute(deleteStatement(entity));
+    }
 
-        for (Inspector.ColumnAccessor accessor : inspector.getPrimaryKeyColumns()) {
-            Object key = accessor.get(entity);
-            boundStatementBuilder = boundStatementBuilder.set(accessor.getColumnName(), key, accessor.getType());
+    @Override
+    public CompletionStage<Void> deleteAsync(T entity) {
+        try {
+            return executeAsyncAndMapToVoid(deleteStatement(entity));
+        } catch (Exception t) {
+            return CompletableFutures.failedFuture(t);
         }
+    }
 
-        BoundStatement boundStatement = boundStatementBuilder.build();
-        execute(boundStatement);
+    @Override
+    public BoundStatement deleteStatement(T entity) {
+        return helper.getCodec().writeKeys(entity, deleteStatement.boundStatementBuilder()).build();
     }
 
     @SuppressWarnings("squid:S00117")
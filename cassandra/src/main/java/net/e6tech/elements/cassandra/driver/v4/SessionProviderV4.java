@@ -35,6 +35,7 @@ import net.e6tech.elements.common.util.TextBuilder;
 import java.net.InetSocketAddress;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 public class SessionProviderV4 extends SessionProvider {
 
@@ -69,6 +70,11 @@ public class SessionProviderV4 extends SessionProvider {
         return (tableMetadata == null) ? null : new TableMetadataV4(generator, tableMetadata);
     }
 
+    @Override
+    public CompletionStage<Boolean> checkSchemaAgreementAsync() {
+        return session.checkSchemaAgreementAsync();
+    }
+
     @Override
     public Generator getGenerator() {
         return generator;
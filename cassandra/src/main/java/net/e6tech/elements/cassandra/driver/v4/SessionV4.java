@@ -39,7 +39,7 @@ public class SessionV4 extends Wrapper<CqlSession> implements net.e6tech.element
         if (StringUtil.isNullOrEmpty(keyspace))
             return execute(query);
         SimpleStatement stmt = SimpleStatement.newInstance(query);
-        stmt.setKeyspace(keyspace);
+        stmt = stmt.setKeyspace(keyspace);
         return Wrapper.wrap(new ResultSetV4(), unwrap().execute(stmt));
     }
 
@@ -53,7 +53,7 @@ public class SessionV4 extends Wrapper<CqlSession> implements net.e6tech.element
         if (StringUtil.isNullOrEmpty(keyspace))
             return executeAsync(query);
         SimpleStatement stmt = SimpleStatement.newInstance(query);
-        stmt.setKeyspace(keyspace);
+        stmt = stmt.setKeyspace(keyspace);
         return new FutureAsyncResultSet(unwrap().executeAsync(stmt).toCompletableFuture());
     }
 
@@ -68,11 +68,39 @@ public class SessionV4 extends Wrapper<CqlSession> implements net.e6tech.element
         return new FutureAsyncResultSet(future);
     }
 
+    @Override
+    public CompletionStage<AsyncResultSet> executeStage(String query) {
+        return unwrap().executeAsync(query)
+                .thenApply(rs -> Wrapper.wrap(new AsyncResultSetV4(), rs));
+    }
+
+    @Override
+    public CompletionStage<AsyncResultSet> executeStage(String keyspace, String query) {
+        if (StringUtil.isNullOrEmpty(keyspace))
+            return executeStage(query);
+        SimpleStatement stmt = SimpleStatement.newInstance(query);
+        stmt = stmt.setKeyspace(keyspace);
+        return unwrap().executeAsync(stmt)
+                .thenApply(rs -> Wrapper.wrap(new AsyncResultSetV4(), rs));
+    }
+
+    @Override
+    public CompletionStage<AsyncResultSet> executeStage(Bound bound) {
+        return unwrap().executeAsync(((BoundV4) bound).unwrap())
+                .thenApply(rs -> Wrapper.wrap(new AsyncResultSetV4(), rs));
+    }
+
     @Override
     public Prepared prepare(String query) {
         return Wrapper.wrap(new PreparedV4(), unwrap().prepare(query));
     }
 
+    @Override
+    public CompletionStage<Prepared> prepareStage(String query) {
+        return unwrap().prepareAsync(query)
+                .thenApply(p -> Wrapper.wrap(new PreparedV4(), p));
+    }
+
     private static class FutureAsyncResultSet implements Future<AsyncResultSet> {
 
         CompletableFuture<com.datastax.oss.driver.api.core.cql.AsyncResultSet> future;
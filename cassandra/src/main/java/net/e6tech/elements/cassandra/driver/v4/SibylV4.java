@@ -16,20 +16,33 @@
 
 package net.e6tech.elements.cassandra.driver.v4;
 
+import com.datastax.oss.driver.api.core.DefaultConsistencyLevel;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.servererrors.ReadTimeoutException;
+import com.datastax.oss.driver.api.core.servererrors.UnavailableException;
+import com.datastax.oss.driver.internal.core.util.concurrent.CompletableFutures;
 import net.e6tech.elements.cassandra.ReadOptions;
 import net.e6tech.elements.cassandra.Sibyl;
+import net.e6tech.elements.cassandra.TableLatency;
 import net.e6tech.elements.cassandra.WriteOptions;
+import net.e6tech.elements.cassandra.async.AdaptiveRead;
 import net.e6tech.elements.cassandra.async.Async;
 import net.e6tech.elements.cassandra.async.AsyncFutures;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
 import net.e6tech.elements.cassandra.driver.cql.BaseResultSet;
 import net.e6tech.elements.cassandra.driver.cql.ResultSet;
+import net.e6tech.elements.cassandra.etl.ChangeLog;
 import net.e6tech.elements.cassandra.etl.PrimaryKey;
 import net.e6tech.elements.common.inject.Inject;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
 public class SibylV4 extends Sibyl {
 
@@ -49,9 +62,27 @@ public class SibylV4 extends Sibyl {
         return options.merge(getWriteOptions());
     }
 
-    private ReadOptions readOptions(ReadOptions userOptions) {
+    private ReadOptions readOptions(Class cls, ReadOptions userOptions) {
         ReadOptions options = ReadOptions.from(userOptions);
-        return options.merge(getReadOptions());
+        return options.merge(getReadOptions()).merge(getReadPolicy(cls));
+    }
+
+    @Override
+    protected boolean isReadTimeout(Throwable throwable) {
+        return throwable instanceof DriverTimeoutException
+                || throwable instanceof ReadTimeoutException
+                || throwable instanceof UnavailableException;
+    }
+
+    private <T> CompletionStage<T> read(Class<T> cls, Mapper<T> mapper, ReadOptions options, Object[] keys) {
+        TableLatency latency = getTableLatency(cls);
+        if (options.isAdaptive())
+            return AdaptiveRead.read(options, latency, opts -> mapper.getAsync(opts, keys), this::isReadTimeout);
+        long start = System.nanoTime();
+        return mapper.getAsync(options, keys).whenComplete((value, error) -> {
+            if (error == null)
+                latency.record(System.nanoTime() - start);
+        });
     }
 
     @Override
@@ -66,15 +97,28 @@ public class SibylV4 extends Sibyl {
 
     @Override
     public <T> T get(Class<T> cls, PrimaryKey primaryKey, ReadOptions readOptions) {
-        return mappingManager.getMapper(cls).get(readOptions(readOptions), primaryKey.getKeys());
+        ReadOptions options = readOptions(cls, readOptions);
+        Mapper<T> mapper = mappingManager.getMapper(cls);
+        if (options.isAdaptive())
+            return CompletableFutures.getUninterruptibly(read(cls, mapper, options, primaryKey.getKeys()));
+        long start = System.nanoTime();
+        T value = mapper.get(options, primaryKey.getKeys());
+        getTableLatency(cls).record(System.nanoTime() - start);
+        return value;
+    }
+
+    @Override
+    public <T> CompletionStage<T> getAsync(Class<T> cls, PrimaryKey primaryKey, ReadOptions readOptions) {
+        return read(cls, mappingManager.getMapper(cls), readOptions(cls, readOptions), primaryKey.getKeys());
     }
 
     @Override
     public <X> AsyncFutures<X, PrimaryKey> get(Collection<PrimaryKey> list, Class<X> cls, ReadOptions userOptions) {
         Async<X, PrimaryKey> async = createAsync();
         Mapper<X> mapper = mappingManager.getMapper(cls);
+        ReadOptions options = readOptions(cls, userOptions);
         return async.accept(list, item ->
-            mapper.getAsync(readOptions(userOptions), item.getKeys()).toCompletableFuture()
+            read(cls, mapper, options, item.getKeys()).toCompletableFuture()
         );
     }
 
@@ -85,12 +129,53 @@ public class SibylV4 extends Sibyl {
 
     @Override
     public <T> void save(Class<T> cls, T entity, WriteOptions options) {
-        mappingManager.getMapper(cls).save(writeOptions(options), entity);
+        if (captures(cls))
+            CompletableFutures.getUninterruptibly(saveAsync(cls, entity, options));
+        else
+            mappingManager.getMapper(cls).save(writeOptions(options), entity);
+    }
+
+    @Override
+    public <T> CompletionStage<Void> saveAsync(Class<T> cls, T entity, WriteOptions options) {
+        WriteOptions writeOptions = writeOptions(options);
+        Mapper<T> mapper = mappingManager.getMapper(cls);
+        ChangeLog change = change(ChangeLog.SAVE, cls, entity);
+        if (change == null)
+            return mapper.saveAsync(writeOptions, entity);
+        return writeCaptured(mapper, mapper.saveStatement(writeOptions, entity), writeOptions, change);
     }
 
     @Override
     public <T> void delete(Class<T> cls, T entity) {
-        mappingManager.getMapper(cls).delete(entity);
+        if (captures(cls))
+            CompletableFutures.getUninterruptibly(deleteAsync(cls, entity));
+        else
+            mappingManager.getMapper(cls).delete(entity);
+    }
+
+    @Override
+    public <T> CompletionStage<Void> deleteAsync(Class<T> cls, T entity) {
+        Mapper<T> mapper = mappingManager.getMapper(cls);
+        ChangeLog change = change(ChangeLog.DELETE, cls, entity);
+        if (change == null)
+            return mapper.deleteAsync(entity);
+        return writeCaptured(mapper, mapper.deleteStatement(entity), null, change);
+    }
+
+    /**
+     * Writes the entity statement and its change_log row in one logged batch so that a change is recorded if and
+     * only if the entity write is applied.  A conditional write cannot be batched with another table, so with
+     * ifNotExists the change_log row is written after the entity instead and may be lost if that second write fails.
+     */
+    private CompletionStage<Void> writeCaptured(Mapper<?> mapper, BoundStatement statement, WriteOptions options, ChangeLog change) {
+        Mapper<ChangeLog> changeMapper = mappingManager.getMapper(ChangeLog.class);
+        BoundStatement changeStatement = changeMapper.saveStatement(getChangeCapture().getWriteOptions(), change);
+        if (options != null && Boolean.TRUE.equals(options.ifNotExists))
+            return mapper.executeAsync(statement).thenCompose(v -> changeMapper.executeAsync(changeStatement));
+        BatchStatement batch = BatchStatement.newInstance(BatchType.LOGGED, statement, changeStatement);
+        if (options != null && options.consistency != null)
+            batch = batch.setConsistencyLevel(DefaultConsistencyLevel.valueOf(options.consistency.name()));
+        return mapper.executeAsync(batch);
     }
 
     @Override
@@ -100,12 +185,33 @@ public class SibylV4 extends Sibyl {
 
     @Override
     public <X> void save(Collection<X> list, Class<X> cls, WriteOptions userOptions) {
-        Async<Void, X> async = createAsync();
+        WriteOptions options = writeOptions(userOptions);
         Mapper<X> mapper = mappingManager.getMapper(cls);
-        AsyncFutures futures = async.accept(list, item -> mapper.saveAsync(writeOptions(userOptions), item).toCompletableFuture());
+        long start = System.nanoTime();
+        if (captures(cls)) {
+            // each entity is written with its change_log row, see writeCaptured.
+            Async<Void, X> async = createAsync();
+            AsyncFutures futures = async.accept(list, item -> saveAsync(cls, item, userOptions).toCompletableFuture());
             if (userOptions != null && userOptions.timeout != null && userOptions.timeout > 0)
                 futures.timeout(userOptions.timeout);
-        futures.inExecutionOrder();
+            futures.inExecutionOrder();
+            getWriteStats().recordUnbatched(list.size(), System.nanoTime() - start);
+        } else if (options.isBatched()) {
+            Async<Void, BatchStatement> async = createAsync();
+            List<BatchStatement> batches = mapper.saveBatches(options, list);
+            AsyncFutures futures = async.accept(batches, batch -> mapper.executeAsync(batch).toCompletableFuture());
+            if (userOptions != null && userOptions.timeout != null && userOptions.timeout > 0)
+                futures.timeout(userOptions.timeout);
+            futures.inExecutionOrder();
+            getWriteStats().recordBatched(list.size(), batches.size(), System.nanoTime() - start);
+        } else {
+            Async<Void, X> async = createAsync();
+            AsyncFutures futures = async.accept(list, item -> mapper.saveAsync(options, item).toCompletableFuture());
+            if (userOptions != null && userOptions.timeout != null && userOptions.timeout > 0)
+                futures.timeout(userOptions.timeout);
+            futures.inExecutionOrder();
+            getWriteStats().recordUnbatched(list.size(), System.nanoTime() - start);
+        }
     }
 
     @Override
@@ -123,11 +229,15 @@ public class SibylV4 extends Sibyl {
     @Override
     public <X> List<X> mapAll(Class<X> cls, BaseResultSet resultSet) {
         Mapper<X> mapper = mappingManager.getMapper(cls);
-        List<net.e6tech.elements.cassandra.driver.cql.Row> all = resultSet.all();
-        List<X> list = new LinkedList<>();
-        for (net.e6tech.elements.cassandra.driver.cql.Row row : all) {
+        List<X> list = new ArrayList<>();
+        for (net.e6tech.elements.cassandra.driver.cql.Row row : resultSet) {
             list.add(mapper.map(row));
         }
         return list;
     }
+
+    @Override
+    protected <X> Function<net.e6tech.elements.cassandra.driver.cql.Row, X> rowMapper(Class<X> cls) {
+        return mappingManager.getMapper(cls)::map;
+    }
 }
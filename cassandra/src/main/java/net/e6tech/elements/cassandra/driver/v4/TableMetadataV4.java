@@ -37,5 +37,9 @@ public class TableMetadataV4 extends AbstractTableMetadata {
         for (com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata column : metadata.getClusteringColumns().keySet()) {
             getClusteringColumns().add(new ColumnMetadataV4(generator, column));
         }
+
+        for (com.datastax.oss.driver.api.core.CqlIdentifier index : metadata.getIndexes().keySet()) {
+            getIndexes().add(index.asInternal());
+        }
     }
 }
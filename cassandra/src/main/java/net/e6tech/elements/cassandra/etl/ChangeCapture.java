@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.etl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.e6tech.elements.cassandra.WriteOptions;
+import net.e6tech.elements.common.serialization.ObjectMapperFactory;
+import net.e6tech.elements.common.util.SystemException;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Installed on Sibyl to record saves and deletes of the captured classes into the change_log table so that
+ * a ChangeLogStrategy can apply them to derived tables without rescanning the source.
+ *
+ * The change_log row is written in the same logged batch as the entity, so a change is recorded exactly when the
+ * entity write is applied.  Conditional (ifNotExists) writes cannot share a batch with another table; their change
+ * is written afterwards and is lost if that second write fails.
+ *
+ * Change times come from the writer's clock.  They only increase within one process, so readers rely on
+ * ChangeLogContext's settleTime to cover clock skew between writers; see ChangeLogContext.setSettleTime.
+ */
+public class ChangeCapture {
+    private static final AtomicLong clock = new AtomicLong();
+
+    private final ObjectMapper mapper = ObjectMapperFactory.newInstance();
+    private Set<Class> classes = new CopyOnWriteArraySet<>();
+    private long bucketSize = ETLContext.MINUTE;
+    private WriteOptions writeOptions;
+
+    public Set<Class> getClasses() {
+        return classes;
+    }
+
+    public void setClasses(Set<Class> classes) {
+        this.classes = new CopyOnWriteArraySet<>(classes);
+    }
+
+    public ChangeCapture capture(Class ... classList) {
+        classes.addAll(Arrays.asList(classList));
+        return this;
+    }
+
+    public boolean captures(Class cls) {
+        return cls != ChangeLog.class && classes.contains(cls);
+    }
+
+    public long getBucketSize() {
+        return bucketSize;
+    }
+
+    /**
+     * @param bucketSize width of a change_log partition in milliseconds.  Readers must use the same value.
+     */
+    public void setBucketSize(long bucketSize) {
+        this.bucketSize = bucketSize;
+    }
+
+    public WriteOptions getWriteOptions() {
+        return writeOptions;
+    }
+
+    public void setWriteOptions(WriteOptions writeOptions) {
+        this.writeOptions = writeOptions;
+    }
+
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    public <T> List<ChangeLog> changes(String operation, String tableName, Collection<T> entities) {
+        List<ChangeLog> changes = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            long time = nextChangeTime();
+            ChangeLog change = new ChangeLog();
+            change.setTableName(tableName);
+            change.setBucket(bucket(time, bucketSize));
+            change.setChangeTime(time);
+            change.setChangeId(UUID.randomUUID());
+            change.setOperation(operation);
+            change.setEntityClass(entity.getClass().getName());
+            try {
+                change.setPayload(mapper.writeValueAsString(entity));
+            } catch (JsonProcessingException e) {
+                throw new SystemException(e);
+            }
+            changes.add(change);
+        }
+        return changes;
+    }
+
+    /**
+     * Current time in microseconds, strictly increasing within this process.
+     */
+    public static long nextChangeTime() {
+        long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        return clock.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    public static long bucket(long changeTime, long bucketSize) {
+        return TimeUnit.MICROSECONDS.toMillis(changeTime) / bucketSize;
+    }
+}
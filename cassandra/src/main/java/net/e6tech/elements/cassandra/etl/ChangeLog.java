@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.etl;
+
+import net.e6tech.elements.cassandra.annotations.ClusteringColumn;
+import net.e6tech.elements.cassandra.annotations.PartitionKey;
+import net.e6tech.elements.cassandra.annotations.Table;
+
+import java.util.UUID;
+
+/**
+ * A change recorded by Sibyl's save and delete calls when a ChangeCapture is installed.  Changes are partitioned by
+ * table and time bucket and ordered by changeTime, which is in microseconds from the writer's clock and strictly
+ * increasing per process only.  Across processes the order is only as good as the clocks are synchronized.
+ */
+@Table(name = "change_log")
+public class ChangeLog {
+    public static final String SAVE = "save";
+    public static final String DELETE = "delete";
+
+    @PartitionKey(0)
+    private String tableName;
+
+    @PartitionKey(1)
+    private Long bucket;
+
+    @ClusteringColumn(0)
+    private Long changeTime;
+
+    @ClusteringColumn(1)
+    private UUID changeId;
+
+    private String operation;
+    private String entityClass;
+    private String payload;
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public Long getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(Long bucket) {
+        this.bucket = bucket;
+    }
+
+    public Long getChangeTime() {
+        return changeTime;
+    }
+
+    public void setChangeTime(Long changeTime) {
+        this.changeTime = changeTime;
+    }
+
+    public UUID getChangeId() {
+        return changeId;
+    }
+
+    public void setChangeId(UUID changeId) {
+        this.changeId = changeId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public boolean isDelete() {
+        return DELETE.equals(operation);
+    }
+
+    public String getEntityClass() {
+        return entityClass;
+    }
+
+    public void setEntityClass(String entityClass) {
+        this.entityClass = entityClass;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+}
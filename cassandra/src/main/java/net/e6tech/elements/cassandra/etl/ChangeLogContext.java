@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.etl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.e6tech.elements.cassandra.SessionProvider;
+import net.e6tech.elements.cassandra.Sibyl;
+import net.e6tech.elements.common.serialization.ObjectMapperFactory;
+import net.e6tech.elements.common.util.SystemException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Context for ChangeLogStrategy.  The source class is the captured entity class whose changes are read from the
+ * change_log table.  The offset, i.e. the (bucket, changeTime, changeId) of the last applied change, is stored
+ * through LastUpdate under the extractor name so that a restart resumes where it left off.
+ */
+public class ChangeLogContext extends ETLContext {
+    private static final UUID MIN_UUID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final ObjectMapper mapper = ObjectMapperFactory.newInstance();
+
+    private long bucketSize = MINUTE;
+    private long settleTime = SECOND;
+    private LastUpdate offset;
+    private long bucket;
+    private long changeTime;
+    private UUID changeId;
+    private boolean moved;
+
+    public long getBucketSize() {
+        return bucketSize;
+    }
+
+    /**
+     * Must be the same as the ChangeCapture's bucket size.
+     */
+    public void setBucketSize(long bucketSize) {
+        this.bucketSize = bucketSize;
+    }
+
+    public long getSettleTime() {
+        return settleTime;
+    }
+
+    /**
+     * Changes younger than settleTime milliseconds are left for the next round so that writes still in flight from
+     * other nodes are not skipped.  This replaces the time lag used by the scanning strategies.
+     *
+     * Change times are stamped by the writers' clocks, so settleTime must be larger than the maximum clock skew
+     * between any writer and this reader plus the write latency.  A change stamped further behind than that
+     * arrives after the offset has passed it and is skipped without notice.  The default of one second assumes
+     * NTP synchronized hosts; raise it if the clocks cannot be bounded that tightly.
+     */
+    public void setSettleTime(long settleTime) {
+        this.settleTime = settleTime;
+    }
+
+    @Override
+    public String extractor() {
+        return getExtractorName() != null ? getExtractorName() : "change_log:" + tableName();
+    }
+
+    @Override
+    public void reset() {
+        offset = null;
+    }
+
+    @Override
+    public LastUpdate getLastUpdate() {
+        if (offset != null)
+            return offset;
+        LastUpdate lastUpdate = lookupLastUpdate();
+        if (lastUpdate == null) {
+            try {
+                lastUpdate = getProvision().getInstance(SessionProvider.class).getLastUpdateClass().getDeclaredConstructor().newInstance();
+            } catch (Exception e) {
+                throw new SystemException(e);
+            }
+            lastUpdate.setExtractor(extractor());
+            if (getInitialUpdate() != null) {
+                lastUpdate.setLastUpdate(getInitialUpdate());
+            } else {
+                long start = TimeUnit.MILLISECONDS.toMicros(getStartTime()) - 1;
+                lastUpdate.setLastUpdate(format(ChangeCapture.bucket(start, bucketSize), start, MIN_UUID));
+            }
+            lastUpdate.setDataType("text");
+            lastUpdate.setUnit("change_log");
+        }
+
+        String[] parts = lastUpdate.getLastUpdate().split(",");
+        bucket = Long.parseLong(parts[0]);
+        changeTime = Long.parseLong(parts[1]);
+        changeId = UUID.fromString(parts[2]);
+        offset = lastUpdate;
+        return offset;
+    }
+
+    private static String format(long bucket, long changeTime, UUID changeId) {
+        return bucket + "," + changeTime + "," + changeId;
+    }
+
+    /**
+     * Returns the next batch of settled changes after the offset, in change order.  Empty buckets that are
+     * entirely settled are skipped.  The offset only moves forward through commit.
+     */
+    public List<ChangeLog> extract(Sibyl sibyl) {
+        getLastUpdate();
+        long upper = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis() - settleTime);
+        long upperBucket = ChangeCapture.bucket(upper, bucketSize);
+        Inspector inspector = getInspector(ChangeLog.class);
+        String changeTimeColumn = inspector.getClusteringKeyColumn(0);
+        String changeIdColumn = inspector.getClusteringKeyColumn(1);
+        String query = "select * from " + inspector.tableName() +
+                " where " + inspector.getPartitionKeyColumn(0) + " = :table_name" +
+                " and " + inspector.getPartitionKeyColumn(1) + " = :bucket" +
+                " and (" + changeTimeColumn + ", " + changeIdColumn + ") > (:change_time, :change_id)" +
+                " and (" + changeTimeColumn + ") <= (:upper)" +
+                " limit " + getBatchSize();
+
+        while (true) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("table_name", tableName());
+            map.put("bucket", bucket);
+            map.put("change_time", changeTime);
+            map.put("change_id", changeId);
+            map.put("upper", upper);
+            List<ChangeLog> changes = sibyl.all(ChangeLog.class, query, map);
+            if (!changes.isEmpty() || bucket >= upperBucket)
+                return changes;
+            // the bucket is settled and has nothing left, move on to the next one.
+            bucket++;
+            changeTime = Long.MIN_VALUE;
+            changeId = MIN_UUID;
+            moved = true;
+        }
+    }
+
+    /**
+     * Durably records last as the offset.  If last is null, the current bucket position is saved if it has moved.
+     */
+    public void commit(ChangeLog last) {
+        LastUpdate lastUpdate = getLastUpdate();
+        if (last == null && !moved)
+            return;
+        moved = false;
+        if (last != null) {
+            bucket = last.getBucket();
+            changeTime = last.getChangeTime();
+            changeId = last.getChangeId();
+        }
+        lastUpdate.setLastUpdate(format(bucket, changeTime, changeId));
+        saveLastUpdate(lastUpdate);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <S> S entity(ChangeLog change) {
+        try {
+            Class cls = getSourceClass();
+            if (cls == null || !cls.getName().equals(change.getEntityClass()))
+                cls = Class.forName(change.getEntityClass(), true, Thread.currentThread().getContextClassLoader());
+            return (S) mapper.readValue(change.getPayload(), cls);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    public ChangeLogContext run(Class<? extends ChangeLogStrategy> cls) {
+        try {
+            ChangeLogStrategy strategy = cls.getDeclaredConstructor().newInstance();
+            setImportedCount(strategy.run(this));
+        } catch (Exception ex) {
+            throw new SystemException(ex);
+        }
+        return this;
+    }
+
+    /**
+     * Applies changes continuously, polling every pollInterval milliseconds while running returns true.
+     */
+    public ChangeLogContext follow(Class<? extends ChangeLogStrategy> cls, long pollInterval, BooleanSupplier running) {
+        ChangeLogStrategy strategy;
+        try {
+            strategy = cls.getDeclaredConstructor().newInstance();
+        } catch (Exception ex) {
+            throw new SystemException(ex);
+        }
+        int total = 0;
+        while (running.getAsBoolean()) {
+            total += strategy.run(this);
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        setImportedCount(total);
+        return this;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.etl;
+
+import net.e6tech.elements.cassandra.Sibyl;
+
+import java.util.List;
+
+/**
+ * Applies changes recorded by ChangeCapture instead of rescanning the source table.  Each batch is applied
+ * and then the offset is committed, so a batch may be applied again after a failure; load should be idempotent.
+ *
+ * @param <S> captured source type
+ */
+public interface ChangeLogStrategy<S> extends Strategy<ChangeLogContext> {
+
+    /**
+     * Applies changes, in change order.  Use context.entity(change) to get the source entity and
+     * change.isDelete() to tell deletes from saves.
+     */
+    int load(ChangeLogContext context, List<ChangeLog> changes);
+
+    @Override
+    default int run(ChangeLogContext context) {
+        if (context.getSourceClass() == null)
+            throw new IllegalStateException("sourceClass not set in context");
+        return context.open().apply(Sibyl.class, sibyl -> {
+            context.initialize();
+            int importedCount = 0;
+            List<ChangeLog> changes;
+            while (!(changes = context.extract(sibyl)).isEmpty()) {
+                importedCount += load(context, changes);
+                context.commit(changes.get(changes.size() - 1));
+            }
+            context.commit(null);
+            if (importedCount > 0)
+                logger.info("Applied {} change(s) with {}", importedCount, getClass());
+            return importedCount;
+        });
+    }
+}
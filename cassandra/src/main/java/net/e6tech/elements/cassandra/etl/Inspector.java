@@ -25,6 +25,9 @@ import net.e6tech.elements.common.util.SystemException;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -41,6 +44,7 @@ public class Inspector {
     private List<ColumnAccessor> primaryKeyColumns = new LinkedList<>();
     private List<ColumnAccessor> columns;
     private Map<String, ColumnAccessor> columnMap;
+    private MethodHandle constructor;
 
     public Inspector(Class sourceClass, Generator generator) {
         this.sourceClass = sourceClass;
@@ -122,7 +126,8 @@ public class Inspector {
         return (Comparable) checkpoints.get(n).get(object);
     }
 
-    public synchronized void setCheckpoint(Object object, int n, Comparable value) {
+    // the accessor lists are not modified after initialize, so there is nothing to lock here.
+    public void setCheckpoint(Object object, int n, Comparable value) {
         if (checkpoints.size() <= n)
             return;
         checkpoints.get(n).set(object, value);
@@ -198,6 +203,23 @@ public class Inspector {
         }
     }
 
+    /**
+     * Creates a new instance of the source class through a cached constructor handle.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T newInstance() {
+        try {
+            if (constructor == null) {
+                constructor = MethodHandles.publicLookup()
+                        .findConstructor(sourceClass, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(Object.class));
+            }
+            return (T) (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new SystemException(e);
+        }
+    }
+
     public List<ColumnAccessor> getPrimaryKeyColumns() {
         return primaryKeyColumns;
     }
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.etl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.e6tech.elements.common.serialization.ObjectMapperFactory;
+import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.common.util.datastructure.Pair;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Append only store for Transformer entries that keeps extracted entities out of the heap.  Entities are serialized
+ * into a direct buffer of offHeapLimit bytes; once it is full, further entities are appended to a temporary file
+ * under spillDirectory, which is memory mapped for reading.  Only the distinct primary keys and a compact
+ * (key, offset, length) index stay on the heap.
+ *
+ * The store is bounded: adding more than maxEntries entities or spilling more than maxSpillSize bytes throws an
+ * IllegalStateException.  The spill file is deleted by clear() and close().
+ *
+ * @param <E> extracted type
+ */
+@SuppressWarnings("unchecked")
+public class SpillStore<E> implements Iterable<Pair<PrimaryKey, E>>, AutoCloseable {
+    private static final ObjectMapper mapper = ObjectMapperFactory.newInstance();
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 20;
+    public static final long DEFAULT_MAX_SPILL_SIZE = Integer.MAX_VALUE; // largest file that can be mapped
+
+    private final int offHeapLimit;
+    private final File spillDirectory;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long maxSpillSize = DEFAULT_MAX_SPILL_SIZE;
+    private ByteBuffer offHeap;
+    private File spillFile;
+    private FileChannel spillChannel;
+    private MappedByteBuffer mapped;
+    private long spillSize = 0;
+
+    // on-heap index.  Entities of the same primary key share one key instance.
+    private Map<PrimaryKey, Integer> keyIndexes = new HashMap<>();
+    private List<PrimaryKey> keys = new ArrayList<>();
+    private int size = 0;
+    private int[] entryKeys = new int[64];
+    private long[] offsets = new long[64]; // offsets below offHeapLimit are in the buffer, the rest in the file
+    private int[] lengths = new int[64];
+    private byte[] types = new byte[64];
+    private List<Class> classes = new ArrayList<>();
+
+    public SpillStore(int offHeapLimit, File spillDirectory) {
+        this.offHeapLimit = offHeapLimit;
+        this.spillDirectory = spillDirectory;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getMaxSpillSize() {
+        return maxSpillSize;
+    }
+
+    public void setMaxSpillSize(long maxSpillSize) {
+        this.maxSpillSize = Math.min(maxSpillSize, DEFAULT_MAX_SPILL_SIZE);
+    }
+
+    public synchronized void add(PrimaryKey key, E entity) {
+        if (size >= maxEntries)
+            throw new IllegalStateException("SpillStore is limited to " + maxEntries + " entries");
+
+        byte[] bytes;
+        try {
+            bytes = mapper.writeValueAsBytes(entity);
+        } catch (IOException e) {
+            throw new SystemException(e);
+        }
+
+        if (size == offsets.length) {
+            int capacity = (int) Math.min((long) size * 2, maxEntries);
+            entryKeys = Arrays.copyOf(entryKeys, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+
+        int type = classes.indexOf(entity.getClass());
+        if (type < 0) {
+            classes.add(entity.getClass());
+            type = classes.size() - 1;
+        }
+
+        offsets[size] = append(bytes);
+        Integer keyIndex = keyIndexes.get(key);
+        if (keyIndex == null) {
+            keyIndex = keys.size();
+            keys.add(key);
+            keyIndexes.put(key, keyIndex);
+        }
+        entryKeys[size] = keyIndex;
+        lengths[size] = bytes.length;
+        types[size] = (byte) type;
+        size++;
+    }
+
+    private long append(byte[] bytes) {
+        if (offHeap == null)
+            offHeap = ByteBuffer.allocateDirect(offHeapLimit);
+
+        if (spillChannel == null && offHeap.remaining() >= bytes.length) {
+            long offset = offHeap.position();
+            offHeap.put(bytes);
+            return offset;
+        }
+
+        if (spillSize + bytes.length > maxSpillSize)
+            throw new IllegalStateException("SpillStore is limited to " + maxSpillSize + " spilled bytes");
+
+        try {
+            if (spillChannel == null) {
+                spillFile = File.createTempFile("etl", ".spill", spillDirectory);
+                spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining())
+                spillChannel.write(buffer, spillSize + buffer.position());
+            long offset = offHeapLimit + spillSize;
+            spillSize += bytes.length;
+            mapped = null;
+            return offset;
+        } catch (IOException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isSpilled() {
+        return spillChannel != null;
+    }
+
+    public synchronized long getSpillSize() {
+        return spillSize;
+    }
+
+    public synchronized PrimaryKey key(int index) {
+        checkIndex(index);
+        return keys.get(entryKeys[index]);
+    }
+
+    public synchronized E get(int index) {
+        checkIndex(index);
+        byte[] bytes = new byte[lengths[index]];
+        long offset = offsets[index];
+        if (offset < offHeapLimit) {
+            ByteBuffer view = offHeap.duplicate();
+            view.position((int) offset);
+            view.get(bytes);
+        } else {
+            ByteBuffer view = mapped().duplicate();
+            view.position((int) (offset - offHeapLimit));
+            view.get(bytes);
+        }
+
+        try {
+            return (E) mapper.readValue(bytes, classes.get(types[index]));
+        } catch (IOException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    private MappedByteBuffer mapped() {
+        if (mapped == null) {
+            if (spillSize > Integer.MAX_VALUE)
+                throw new IllegalStateException("Spill file " + spillFile + " exceeds " + Integer.MAX_VALUE + " bytes");
+            try {
+                mapped = spillChannel.map(FileChannel.MapMode.READ_ONLY, 0, spillSize);
+            } catch (IOException e) {
+                throw new SystemException(e);
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * Entities are deserialized one at a time as the iterator advances.
+     */
+    @Override
+    public Iterator<Pair<PrimaryKey, E>> iterator() {
+        int count = size();
+        return new Iterator<Pair<PrimaryKey, E>>() {
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public Pair<PrimaryKey, E> next() {
+                if (index >= count)
+                    throw new NoSuchElementException();
+                Pair<PrimaryKey, E> pair = new Pair<>(key(index), get(index));
+                index++;
+                return pair;
+            }
+        };
+    }
+
+    /**
+     * Distinct primary keys as a read-only view rather than a copy.  The view must not be iterated while entries
+     * are being added and is not valid after clear().
+     */
+    public synchronized Set<PrimaryKey> keySet() {
+        return Collections.unmodifiableSet(keyIndexes.keySet());
+    }
+
+    /**
+     * Drops all entries.  The direct buffer is kept for reuse while the spill file is deleted.
+     */
+    public synchronized void clear() {
+        keyIndexes = new HashMap<>();
+        keys = new ArrayList<>();
+        size = 0;
+        classes.clear();
+        if (offHeap != null)
+            offHeap.clear();
+        closeSpill();
+    }
+
+    @Override
+    public synchronized void close() {
+        clear();
+        offHeap = null;
+    }
+
+    private void closeSpill() {
+        mapped = null;
+        spillSize = 0;
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+                Files.deleteIfExists(spillFile.toPath());
+            } catch (IOException e) {
+                throw new SystemException(e);
+            } finally {
+                spillChannel = null;
+                spillFile = null;
+            }
+        }
+    }
+}
@@ -18,9 +18,9 @@ package net.e6tech.elements.cassandra.etl;
 
 import net.e6tech.elements.cassandra.*;
 import net.e6tech.elements.common.resources.Resources;
-import net.e6tech.elements.common.util.SystemException;
 import net.e6tech.elements.common.util.datastructure.Pair;
 
+import java.io.File;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.stream.Stream;
@@ -34,11 +34,12 @@ import java.util.stream.Stream;
  * @param <T> Transformed type
  * @param <E> Extracted type
  */
-public class Transformer<T, E> {
+public class Transformer<T, E> implements AutoCloseable {
     private Resources resources;
     private Map<PrimaryKey, T> map = new HashMap<>();
     private Class<T> tableClass;
     private List<Pair<PrimaryKey, E>> entries = Collections.synchronizedList(new LinkedList<>());
+    private SpillStore<E> spillStore;
     private boolean hasCheckpoint;
     private Inspector tableInspector;
     private Consistency readConsistency = null;
@@ -104,6 +105,30 @@ public class Transformer<T, E> {
         return this;
     }
 
+    public SpillStore<E> getSpillStore() {
+        return spillStore;
+    }
+
+    public void setSpillStore(SpillStore<E> spillStore) {
+        this.spillStore = spillStore;
+    }
+
+    /**
+     * Keeps extracted entities in an off-heap buffer of offHeapLimit bytes, spilling to a temporary file under
+     * spillDirectory beyond that.  Must be called before entries are added.  The spill file is released by save()
+     * or close(); a Transformer that is not saved should be closed, e.g. with try-with-resources.
+     */
+    public Transformer<T, E> spill(int offHeapLimit, File spillDirectory) {
+        setSpillStore(new SpillStore<>(offHeapLimit, spillDirectory));
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (spillStore != null)
+            spillStore.close();
+    }
+
     public Transformer<T, E> addPrimaryKey(PrimaryKey key, E e) {
         if (key == null)
             return this;
@@ -114,17 +139,25 @@ public class Transformer<T, E> {
                     "the provided primary key has " + key.getKeys().length + " componenets.");
         }
 
-        entries.add(new Pair<>(key, e));
+        if (spillStore != null)
+            spillStore.add(key, e);
+        else
+            entries.add(new Pair<>(key, e));
         return this;
     }
 
     private Transformer<T, E> load() {
         Sibyl s = resources.getInstance(Sibyl.class);
-        map = new HashMap<>(Math.max((int) (entries.size()/.75f) + 1, 16));
-        Set<PrimaryKey> keys = new HashSet<>(Math.max((int) (entries.size()/.75f) + 1, 16));
-        for (Pair<PrimaryKey, E> e : entries()) {
-            keys.add(e.key());
+        Set<PrimaryKey> keys;
+        if (spillStore != null) {
+            keys = spillStore.keySet();
+        } else {
+            keys = new HashSet<>(Math.max((int) (entries.size()/.75f) + 1, 16));
+            for (Pair<PrimaryKey, E> e : entries()) {
+                keys.add(e.key());
+            }
         }
+        map = new HashMap<>(Math.max((int) (keys.size()/.75f) + 1, 16));
 
         ReadOptions readOptions = new ReadOptions();
         readOptions.consistency = readConsistency;
@@ -134,8 +167,8 @@ public class Transformer<T, E> {
         return this;
     }
 
-    private Collection<Pair<PrimaryKey, E>> entries() {
-        return entries;
+    private Iterable<Pair<PrimaryKey, E>> entries() {
+        return (spillStore != null) ? spillStore : entries;
     }
 
     private Inspector getInspector(Class cls) {
@@ -144,13 +177,9 @@ public class Transformer<T, E> {
 
     private T computeIfAbsent(PrimaryKey key) {
         return map.computeIfAbsent(key, k -> {
-            try {
-                T t = tableClass.getDeclaredConstructor().newInstance();
-                tableInspector.setPrimaryKey(key, t);
-                return t;
-            } catch (Exception e) {
-                throw new SystemException(e);
-            }
+            T t = tableInspector.newInstance();
+            tableInspector.setPrimaryKey(key, t);
+            return t;
         });
     }
 
@@ -192,9 +221,9 @@ public class Transformer<T, E> {
         }
 
         // update checkpoints.
-        for (Pair<PrimaryKey, E> e : entries()) {
-            E extracted = e.value();
-            if (hasCheckpoint) {
+        if (hasCheckpoint) {
+            for (Pair<PrimaryKey, E> e : entries()) {
+                E extracted = e.value();
                 T t = computeIfAbsent(e.key());
                 Comparable extractedPartitionKey = (Comparable) extractedInspector.getPartitionKey(extracted, 0);
                 if (extractedPartitionKey != null)
@@ -221,6 +250,8 @@ public class Transformer<T, E> {
 
         s.save(values(), tableClass, options);
 
+        // extracted entries are not needed once the transformed values are saved.
+        close();
         return this;
     }
 
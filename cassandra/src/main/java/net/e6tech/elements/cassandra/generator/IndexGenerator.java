@@ -115,11 +115,23 @@ public class IndexGenerator extends AbstractGenerator{
     }
 
     public List<String> generate() {
+        return generate(Collections.emptyList());
+    }
+
+    /**
+     * Generates statements only for indexes whose names are not in existing.
+     */
+    public List<String> generate(Collection<String> existing) {
+        Set<String> skip = new HashSet<>();
+        for (String name : existing)
+            skip.add(name.toLowerCase());
         List<String> statements = new ArrayList<>();
         StringBuilder builder = new StringBuilder();
 
         for (Map.Entry<String, Index> entry : indexes.entrySet()) {
             Index index = entry.getValue();
+            if (skip.contains((getTableName() + "__" + entry.getKey()).toLowerCase()))
+                continue;
             builder.append("CREATE INDEX IF NOT EXISTS ");
             builder.append(getTableName()).append("__").append(entry.getKey());
             builder.append(" ON ");
@@ -138,6 +150,8 @@ public class IndexGenerator extends AbstractGenerator{
         }
 
         for (String column : implicitIndexes.keySet()) {
+            if (skip.contains((getTableName() + "__" + column + "_idx").toLowerCase()))
+                continue;
             builder.append("CREATE CUSTOM INDEX IF NOT EXISTS ");
             builder.append(getTableName()).append("__").append(column).append("_idx");
             builder.append(" ON ");
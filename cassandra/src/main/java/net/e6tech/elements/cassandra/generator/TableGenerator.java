@@ -22,6 +22,7 @@ import net.e6tech.elements.cassandra.driver.metadata.TableMetadata;
 import net.e6tech.elements.common.logging.Logger;
 
 import java.beans.IntrospectionException;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -104,6 +105,15 @@ public class TableGenerator extends AbstractGenerator {
     public void diff(Session session, String keyspace, TableMetadata tableMetadata, boolean dropColumns) {
         if (logger.isInfoEnabled())
             logger.info("Diff table {}", fullyQualifiedTableName());
+        for (String cql : alterStatements(tableMetadata, dropColumns))
+            session.execute(keyspace, cql);
+    }
+
+    /**
+     * ALTER TABLE statements that bring tableMetadata in line with the entity class.  Empty if nothing changed.
+     */
+    public List<String> alterStatements(TableMetadata tableMetadata, boolean dropColumns) {
+        List<String> statements = new ArrayList<>();
         List<ColumnMetadata> columns = tableMetadata.getColumns();
         Map<String, ColumnGenerator> toAdd = new LinkedHashMap<>();
         Map<String, ColumnMetadata> toRemove = new LinkedHashMap<>();
@@ -123,7 +133,7 @@ public class TableGenerator extends AbstractGenerator {
         }
 
         if (toAdd.isEmpty() && toRemove.isEmpty())
-            return;
+            return statements;
 
         StringBuilder builder = new StringBuilder();
         for (ColumnGenerator col : toAdd.values()) {
@@ -131,7 +141,7 @@ public class TableGenerator extends AbstractGenerator {
             builder.append(fullyQualifiedTableName());
             builder.append(" ADD ");
             builder.append(col.generate());
-            session.execute(keyspace, builder.toString());
+            statements.add(builder.toString());
             builder.setLength(0);
         }
 
@@ -141,9 +151,10 @@ public class TableGenerator extends AbstractGenerator {
                 builder.append(fullyQualifiedTableName());
                 builder.append(" DROP ");
                 builder.append("\"" + col.getName() + "\"");
-                session.execute(keyspace, builder.toString());
+                statements.add(builder.toString());
                 builder.setLength(0);
             }
         }
+        return statements;
     }
 }
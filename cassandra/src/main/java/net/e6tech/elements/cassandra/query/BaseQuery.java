@@ -16,7 +16,10 @@
 
 package net.e6tech.elements.cassandra.query;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import net.e6tech.elements.cassandra.Sibyl;
+import net.e6tech.elements.cassandra.driver.cql.Bound;
 import net.e6tech.elements.cassandra.etl.Inspector;
 import net.e6tech.elements.cassandra.generator.KeyColumn;
 import net.e6tech.elements.cassandra.generator.TableGenerator;
@@ -25,10 +28,14 @@ import net.e6tech.elements.common.interceptor.Interceptor;
 import net.e6tech.elements.common.interceptor.InterceptorHandler;
 import net.e6tech.elements.common.reflection.Primitives;
 import net.e6tech.elements.common.reflection.Reflection;
+import net.e6tech.elements.common.resources.Provision;
+import net.e6tech.elements.common.util.SystemException;
 import net.e6tech.elements.common.util.datastructure.Triplet;
 
 import java.beans.PropertyDescriptor;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -36,6 +43,15 @@ import java.util.function.Consumer;
 @SuppressWarnings("unchecked")
 public abstract class BaseQuery<T, Q extends BaseQuery<T, Q>> {
     protected static final String AND = " and ";
+    // bind marker for the limit.  Relation markers always end with _<n> so this cannot collide with them.
+    protected static final String LIMIT_MARKER = "row_limit";
+
+    // query shape to its CQL and bind slots.  Prepared statements are resolved through Sibyl's cache.
+    private static Cache<QueryShape, QueryPlan> queryPlans = CacheBuilder.newBuilder()
+            .concurrencyLevel(Provision.cacheBuilderConcurrencyLevel)
+            .initialCapacity(200)
+            .maximumSize(2000)
+            .build();
 
     protected Sibyl sibyl;
     protected T partitionTemplate;
@@ -48,6 +64,9 @@ public abstract class BaseQuery<T, Q extends BaseQuery<T, Q>> {
     protected List<Relation> orderBy = new ArrayList<>();
     protected List<Relation> clusteringRelations = new ArrayList<>();
     protected int limit = -1;
+    protected int pageSize = -1;
+    protected ByteBuffer pagingState;
+    protected boolean cachePlan = true;
     protected Class<T> entityClass;
     protected TableGenerator table;
     protected Inspector inspector;
@@ -74,6 +93,33 @@ public abstract class BaseQuery<T, Q extends BaseQuery<T, Q>> {
         return limit;
     }
 
+    /**
+     * When true (the default), the CQL and bind slots are cached under the shape of the query, i.e. its keyspace,
+     * table, relations, comparisons, order by and whether it has a limit, so that a repeated shape only needs to
+     * bind values.  The limit itself is a bind value.
+     */
+    public Q cachePlan(boolean cachePlan) {
+        this.cachePlan = cachePlan;
+        return (Q) this;
+    }
+
+    public Q pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return (Q) this;
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Resumes a stream from the paging state of a previous PagingIterator.
+     */
+    public Q pagingState(ByteBuffer pagingState) {
+        this.pagingState = pagingState;
+        return (Q) this;
+    }
+
     protected <R> Q newRelation(BiConsumer<T, R> consumer, R value, Comparison comparison, List<Relation> list, boolean partition) {
         T template = partition ? partitionTemplate : clusteringTemplate;
         RelationHandler relationHandler = partition ? partitionHandler : clusteringHandler;
@@ -240,11 +286,54 @@ public abstract class BaseQuery<T, Q extends BaseQuery<T, Q>> {
     }
 
     protected List<T> select() {
+        if (cachePlan) {
+            Bound bound = plan().bind(sibyl, values());
+            return sibyl.mapAll(entityClass, sibyl.getSession().execute(bound));
+        }
         Map<String, Object> map = new HashMap<>();
         StringBuilder query = buildQuery(map);
         return sibyl.all(entityClass, query.toString(), map);
     }
 
+    protected QueryPlan plan() {
+        QueryShape shape = new QueryShape(sibyl.getKeyspace(), table.getTableName(), partitionRelations, clusteringRelations, orderBy, limit > 0);
+        try {
+            return queryPlans.get(shape, () -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                String cql = buildQuery(map).toString();
+                return new QueryPlan(cql, map.keySet().toArray(new String[0]));
+            });
+        } catch (ExecutionException e) {
+            throw new SystemException(e.getCause());
+        }
+    }
+
+    // values in the same order as the bind markers generated by buildQuery
+    protected Object[] values() {
+        Object[] values = new Object[partitionRelations.size() + clusteringRelations.size() + (limit > 0 ? 1 : 0)];
+        int i = 0;
+        for (Relation relation : partitionRelations)
+            values[i++] = relation.checkedValue();
+        for (Relation relation : clusteringRelations)
+            values[i++] = relation.checkedValue();
+        if (limit > 0)
+            values[i] = limit;
+        return values;
+    }
+
+    /**
+     * Streams the result page by page instead of loading it into a list.  Boundary patching done by query()
+     * is not needed because pages are resumed with the driver's paging state.
+     */
+    public PagingIterator<T> stream() {
+        validate();
+        if (cachePlan)
+            return sibyl.stream(entityClass, plan().bind(sibyl, values()), pageSize, pagingState);
+        Map<String, Object> map = new HashMap<>();
+        StringBuilder query = buildQuery(map);
+        return sibyl.stream(entityClass, query.toString(), map, pageSize, pagingState);
+    }
+
     protected StringBuilder buildQuery(Map<String, Object> map) {
         StringBuilder query = new StringBuilder("select * from ");
         query.append(table.getTableName())
@@ -257,7 +346,8 @@ public abstract class BaseQuery<T, Q extends BaseQuery<T, Q>> {
         buildOrderBy(query);
 
         if (limit > 0) {
-            query.append(" ").append("limit ").append(limit);
+            query.append(" ").append("limit :").append(LIMIT_MARKER);
+            map.put(LIMIT_MARKER, limit);
         }
 
         return query;
@@ -319,6 +409,73 @@ public abstract class BaseQuery<T, Q extends BaseQuery<T, Q>> {
             Object v2 = accessor.get(t2);
             return Objects.equals(v1, v2);
         }
+
+        Object checkedValue() {
+            if (value == null)
+                throw new IllegalArgumentException("comparision value for " + keyColumn.getName() + " cannot be null");
+            return value;
+        }
+    }
+
+    protected static class QueryShape {
+        private final String keyspace;
+        private final String tableName;
+        private final int[] shape;
+        private final int hash;
+
+        QueryShape(String keyspace, String tableName, List<? extends BaseQuery.Relation> partition, List<? extends BaseQuery.Relation> clustering,
+                   List<? extends BaseQuery.Relation> orderBy, boolean limited) {
+            this.keyspace = keyspace;
+            this.tableName = tableName;
+            shape = new int[partition.size() + clustering.size() + orderBy.size() + 3];
+            int i = 0;
+            i = encode(partition, i);
+            shape[i++] = -1;
+            i = encode(clustering, i);
+            shape[i++] = -1;
+            i = encode(orderBy, i);
+            shape[i] = limited ? 1 : 0;
+            hash = 31 * (31 * Objects.hashCode(keyspace) + tableName.hashCode()) + Arrays.hashCode(shape);
+        }
+
+        private int encode(List<? extends BaseQuery.Relation> relations, int start) {
+            int i = start;
+            for (BaseQuery.Relation r : relations)
+                shape[i++] = r.keyColumn.getPosition() * Comparison.values().length + r.comparison.ordinal();
+            return i;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof QueryShape))
+                return false;
+            QueryShape other = (QueryShape) object;
+            return hash == other.hash && Objects.equals(keyspace, other.keyspace) && tableName.equals(other.tableName)
+                    && Arrays.equals(shape, other.shape);
+        }
+    }
+
+    protected static class QueryPlan {
+        private final String cql;
+        private final String[] bindNames;
+
+        QueryPlan(String cql, String[] bindNames) {
+            this.cql = cql;
+            this.bindNames = bindNames;
+        }
+
+        public String getCql() {
+            return cql;
+        }
+
+        Bound bind(Sibyl sibyl, Object[] values) {
+            return sibyl.bind(sibyl.prepare(cql), bindNames, values);
+        }
     }
 
     protected class KeyColumnValue {
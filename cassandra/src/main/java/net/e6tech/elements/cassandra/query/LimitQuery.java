@@ -72,6 +72,35 @@ public class LimitQuery<T> extends BaseQuery<T, LimitQuery<T>> {
         return list;
     }
 
+    /**
+     * Streams like query(): a stream resumed with previous(...) starts at the last order by values and
+     * skips the rows already seen there.  Unlike query(), those rows are skipped with or without a limit.
+     */
+    @Override
+    public PagingIterator<T> stream() {
+        validate();
+        lastOrderBy.sort(Comparator.comparingInt(c -> c.keyColumn.getPosition()));
+        validateLastOrderBy();
+
+        if (subQuery || lastOrderBy.isEmpty())
+            return super.stream();
+
+        List<T> duplicates = new LinkedList<>(subQuery().query());
+        if (duplicates.isEmpty())
+            return super.stream();
+
+        int tmp = limit;
+        if (limit > 0)
+            limit += duplicates.size();
+        PagingIterator<T> iterator;
+        try {
+            iterator = super.stream();
+        } finally {
+            limit = tmp;
+        }
+        return iterator.filter(t -> removeFirstSame(duplicates, t), limit);
+    }
+
     private void validateLastOrderBy() {
         if (lastOrderBy.isEmpty())
             return;
@@ -135,22 +164,27 @@ public class LimitQuery<T> extends BaseQuery<T, LimitQuery<T>> {
     }
 
     private void removeDuplicate(List<T> list, List<T> duplicates) {
-        for (T t : duplicates) {
-            Iterator<T> iterator = list.iterator();
-            while (iterator.hasNext()) {
-                T t2 = iterator.next();
-                boolean same = true;
-                for (Relation relation : orderBy) {
-                    if (!relation.isRelated(t, t2)) {
-                        same = false;
-                        break;
-                    }
-                }
-                if (same) {
-                    iterator.remove();
+        for (T t : duplicates)
+            removeFirstSame(list, t);
+    }
+
+    // removes the first element with the same order by values as t
+    private boolean removeFirstSame(List<T> list, T t) {
+        Iterator<T> iterator = list.iterator();
+        while (iterator.hasNext()) {
+            T t2 = iterator.next();
+            boolean same = true;
+            for (Relation relation : orderBy) {
+                if (!relation.isRelated(t, t2)) {
+                    same = false;
                     break;
                 }
             }
+            if (same) {
+                iterator.remove();
+                return true;
+            }
         }
+        return false;
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.query;
+
+import net.e6tech.elements.cassandra.driver.cql.AsyncResultSet;
+import net.e6tech.elements.cassandra.driver.cql.Row;
+import net.e6tech.elements.common.util.SystemException;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Iterates over a query result one page at a time so that only the current page and the one being
+ * fetched are held in memory.  As soon as a page arrives, the next page is requested asynchronously so
+ * that it is usually ready by the time the current page has been consumed.
+ *
+ * <pre>
+ * <code>
+ * PagingIterator&lt;X&gt; iterator = new RangeQuery&lt;&gt;(sibyl, X.class)
+ *      .partition(X::setPartitionKey, 1L)
+ *      .ascending(X::setCreationTime, 0L, 9999999999999L)
+ *      .pageSize(500)
+ *      .stream();
+ * while (iterator.hasNext()) { ... }
+ * ByteBuffer resume = iterator.getPagingState();
+ * </code>
+ * </pre>
+ *
+ * @param <T> entity type
+ */
+public class PagingIterator<T> implements Iterator<T> {
+    private final Function<Row, T> mapper;
+    private AsyncResultSet page;
+    private Iterator<Row> rows;
+    private CompletableFuture<AsyncResultSet> nextPage;
+    private int pageCount = 0;
+    private Predicate<T> exclude;
+    private int max = -1;
+    private int returned;
+    private T pending;
+    private boolean hasPending;
+
+    public PagingIterator(CompletionStage<AsyncResultSet> firstPage, Function<Row, T> mapper) {
+        this.mapper = mapper;
+        this.nextPage = firstPage.toCompletableFuture();
+    }
+
+    /**
+     * Skips rows for which exclude returns true and stops after max rows if max is positive.  With an
+     * exclude, hasNext() reads ahead one row, which may be the first row of the next page.
+     */
+    PagingIterator<T> filter(Predicate<T> exclude, int max) {
+        this.exclude = exclude;
+        this.max = max;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (hasPending)
+            return true;
+        if (max > 0 && returned >= max)
+            return false;
+        if (exclude == null)
+            return nextRow();
+        while (nextRow()) {
+            T t = mapper.apply(rows.next());
+            if (!exclude.test(t)) {
+                pending = t;
+                hasPending = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean nextRow() {
+        while (rows == null || !rows.hasNext()) {
+            if (nextPage == null)
+                return false;
+            advance();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        returned++;
+        if (hasPending) {
+            T t = pending;
+            pending = null;
+            hasPending = false;
+            return t;
+        }
+        return mapper.apply(rows.next());
+    }
+
+    private void advance() {
+        try {
+            page = nextPage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException(e);
+        } catch (ExecutionException e) {
+            throw new SystemException(e.getCause());
+        }
+        pageCount++;
+        rows = page.currentPage().iterator();
+        // prefetch while the current page is being consumed
+        nextPage = page.hasMorePages() ? page.fetchNextPage().toCompletableFuture() : null;
+    }
+
+    /**
+     * Number of pages received so far.
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Rows left in the current page.
+     */
+    public int getPageRemaining() {
+        return page == null ? 0 : page.remaining();
+    }
+
+    /**
+     * Paging state for resuming the scan after the current page, or null if there are no more pages.
+     * Rows not yet consumed from the current page are not included when resuming, so it is
+     * best read when getPageRemaining() is 0.
+     */
+    public ByteBuffer getPagingState() {
+        return page == null ? null : page.getPagingState();
+    }
+}
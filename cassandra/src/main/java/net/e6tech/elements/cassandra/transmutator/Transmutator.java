@@ -16,23 +16,60 @@
 
 package net.e6tech.elements.cassandra.transmutator;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import net.e6tech.elements.cassandra.Sibyl;
 import net.e6tech.elements.cassandra.driver.cql.ResultSet;
 import net.e6tech.elements.cassandra.driver.cql.Row;
 import net.e6tech.elements.cassandra.etl.*;
+import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.util.MapBuilder;
 import net.e6tech.elements.common.util.SystemException;
 
+import java.lang.invoke.*;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 
 @SuppressWarnings("unchecked")
 public abstract class Transmutator implements Strategy<PartitionContext> {
+    private static final Logger LOG = Logger.getLogger();
+    private static final Cache<Method, LoaderInvoker> invokers = CacheBuilder.newBuilder().weakValues().build();
 
     private LinkedList<Descriptor> descriptors = new LinkedList<>();
     private Customizer customizer = null;
     private Map<String, ETLSettings> settings = new HashMap<>();
+    private int parallelism = 1;
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Loaders with the same order are independent of each other.  When parallelism is greater than 1, they run
+     * concurrently on at most parallelism threads; different orders still run one after another.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public Transmutator parallelism(int parallelism) {
+        setParallelism(parallelism);
+        return this;
+    }
+
+    /**
+     * Statistics of the loaders from the last run, keyed by loader method name.
+     */
+    public Map<String, LoaderStats> getStats() {
+        Map<String, LoaderStats> map = new LinkedHashMap<>();
+        for (Descriptor descriptor : descriptors)
+            map.put(descriptor.stats.getName(), descriptor.stats);
+        return map;
+    }
 
     public Map<String, ETLSettings> getSettings() {
         return settings;
@@ -132,19 +169,22 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
                 throw new SystemException("Invalid loader (" + getClass() + ") argument type declaration for method " + method
                         + ": expecting " +  context.getClass() + " but declared as " + method.getParameterTypes()[0]);
             }
-                        PartitionStrategy strategy = context.createStrategy();
+            PartitionStrategy strategy = context.createStrategy();
             context.setExtractorName(sourceClass.getName() + "_" + getClass().getSimpleName());
+            LoaderInvoker invoker = invokers.get(method, () -> invoker(method));
+            Object[] empty = (Object[]) Array.newInstance(componentType, 0);
+            LoaderStats stats = new LoaderStats(method.getName());
             context.setLoadDelegate(list -> {
-                try {
-                    return (Integer) method.invoke(Transmutator.this, context, list.toArray((Object[]) Array.newInstance(componentType, 0)));
-                } catch (Exception e) {
-                    throw new SystemException("Unable to invoke " + method, e);
-                }
+                long start = System.nanoTime();
+                int loaded = invoker.load(Transmutator.this, context, list.toArray(empty));
+                stats.record(list.size(), loaded, System.nanoTime() - start);
+                return loaded;
             });
 
             ETLSettings s = settings.get("" + order);
 
             Descriptor entry = new Descriptor(order, context, strategy, runType, s);
+            entry.stats = stats;
 
             descriptors.addLast(entry);
         } catch (Exception e) {
@@ -152,6 +192,53 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
         }
     }
 
+    /**
+     * Creates a LoaderInvoker that calls method directly.  A LambdaMetafactory generated class is used when the method
+     * is public and the generated class can link against the loader's classes; otherwise an exact method handle is used.
+     * The choice is made here, once, so that a loader is never invoked twice.
+     */
+    static LoaderInvoker invoker(Method method) throws IllegalAccessException {
+        method.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        // loaders are usually varargs; a variable arity handle would wrap the entries array into another array.
+        MethodHandle handle = lookup.unreflect(method).asFixedArity();
+        if (Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers())
+                && linkable(method)) {
+            try {
+                CallSite site = LambdaMetafactory.metafactory(lookup, "load",
+                        MethodType.methodType(LoaderInvoker.class),
+                        MethodType.methodType(int.class, Transmutator.class, PartitionContext.class, Object[].class),
+                        handle,
+                        handle.type());
+                return (LoaderInvoker) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                LOG.debug("Cannot generate dispatch for {}, using method handle", method);
+            }
+        }
+        return new HandleInvoker(handle, method);
+    }
+
+    // the generated class resolves the loader's types through Transmutator's class loader, which must see the same classes.
+    static boolean linkable(Method method) {
+        ClassLoader loader = Transmutator.class.getClassLoader();
+        List<Class> types = new ArrayList<>(Arrays.asList(method.getParameterTypes()));
+        types.add(method.getDeclaringClass());
+        for (Class type : types) {
+            Class cls = type;
+            while (cls.isArray())
+                cls = cls.getComponentType();
+            if (cls.isPrimitive())
+                continue;
+            try {
+                if (Class.forName(cls.getName(), false, loader) != cls)
+                    return false;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public List<Descriptor> describe() {
         return descriptors;
     }
@@ -161,7 +248,6 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
     public int run(PartitionContext context) {
         context.setSourceClass(getClass());
         analyze();
-        int count = 0;
 
         for (Descriptor entry : descriptors) {
             entry.context.setStartTime(context.getStartTime());
@@ -188,25 +274,59 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
             }
         }
 
-        for (Descriptor entry : descriptors) {
-            switch (entry.runType) {
-                case EACH_ENTRY:
-                    count += entry.strategy.run(entry.context);
-                    break;
-                case PARTITION:
-                    count += entry.strategy.runPartitions(entry.context);
-                    break;
+        return runDescriptors(descriptors);
+    }
+
+    // descriptors must be sorted by order.
+    int runDescriptors(List<Descriptor> list) {
+        int count = 0;
+        if (parallelism <= 1) {
+            for (Descriptor entry : list)
+                count += entry.run();
+            return count;
+        }
+
+        // each group of the same order runs concurrently.
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            Iterator<Descriptor> iterator = list.iterator();
+            Descriptor next = iterator.hasNext() ? iterator.next() : null;
+            while (next != null) {
+                int order = next.order;
+                List<Future<Integer>> group = new ArrayList<>();
+                while (next != null && next.order == order) {
+                    group.add(executor.submit(next::run));
+                    next = iterator.hasNext() ? iterator.next() : null;
+                }
+                for (Future<Integer> future : group)
+                    count += await(future);
             }
+        } finally {
+            executor.shutdownNow();
         }
         return count;
     }
 
+    private int await(Future<Integer> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new SystemException(e.getCause());
+        }
+    }
+
     public static class Descriptor {
         int order;
         PartitionContext context;
         PartitionStrategy strategy;
         RunType runType;
         ETLSettings settings;
+        LoaderStats stats;
 
 
         Descriptor(int order, PartitionContext context, PartitionStrategy strategy, RunType runType, ETLSettings settings) {
@@ -216,13 +336,107 @@ public abstract class Transmutator implements Strategy<PartitionContext> {
             this.runType = runType;
             this.settings = settings;
         }
+
+        public LoaderStats getStats() {
+            return stats;
+        }
+
+        int run() {
+            switch (runType) {
+                case EACH_ENTRY:
+                    return strategy.run(context);
+                case PARTITION:
+                    return strategy.runPartitions(context);
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    public static class LoaderStats {
+        private final String name;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder loaded = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        LoaderStats(String name) {
+            this.name = name;
+        }
+
+        void record(int entryCount, int loadedCount, long elapsed) {
+            invocations.increment();
+            entries.add(entryCount);
+            loaded.add(loadedCount);
+            nanos.add(elapsed);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getInvocations() {
+            return invocations.sum();
+        }
+
+        public long getEntries() {
+            return entries.sum();
+        }
+
+        public long getLoaded() {
+            return loaded.sum();
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos.sum());
+        }
+
+        /**
+         * @return entries per second spent inside the loader.
+         */
+        public double getThroughput() {
+            long n = nanos.sum();
+            return n == 0 ? 0 : entries.sum() * (double) TimeUnit.SECONDS.toNanos(1) / n;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d invocations, %d entries, %d loaded, %.1f entries/s",
+                    name, getInvocations(), getEntries(), getLoaded(), getThroughput());
+        }
+    }
+
+    @FunctionalInterface
+    interface LoaderInvoker {
+        int load(Transmutator transmutator, PartitionContext context, Object[] entries);
+    }
+
+    private static class HandleInvoker implements LoaderInvoker {
+        private final MethodHandle handle;
+        private final Method method;
+
+        HandleInvoker(MethodHandle handle, Method method) {
+            this.handle = handle.asType(MethodType.methodType(int.class, Transmutator.class, PartitionContext.class, Object[].class));
+            this.method = method;
+        }
+
+        @Override
+        public int load(Transmutator transmutator, PartitionContext context, Object[] entries) {
+            try {
+                return (int) handle.invokeExact(transmutator, context, entries);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SystemException("Unable to invoke " + method, e);
+            }
+        }
     }
 
     public interface Customizer {
         void customize(PartitionContext context, Descriptor descriptor);
     }
 
-    private enum RunType {
+    enum RunType {
         EACH_ENTRY,
         PARTITION;
     }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void buckets() {
+        for (long v = 0; v < 8; v++)
+            assertEquals(v, LatencyHistogram.index(v));
+        assertEquals(0, LatencyHistogram.index(-5));
+
+        int last = LatencyHistogram.index(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(last));
+        for (int i = 0; i <= last; i++) {
+            long upper = LatencyHistogram.upperBound(i);
+            // buckets are contiguous: the upper bound belongs to the bucket and the next value starts the next one
+            assertEquals(i, LatencyHistogram.index(upper));
+            if (i < last)
+                assertEquals(i + 1, LatencyHistogram.index(upper + 1));
+        }
+
+        // bucket width is at most 1/8 of its lower bound
+        for (long v = 8; v < 1_000_000; v = v * 3 / 2 + 1) {
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.index(v));
+            assertTrue(upper >= v);
+            assertTrue(upper - v <= v / 8, "value " + v + " upper " + upper);
+        }
+    }
+
+    @Test
+    void percentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+        assertEquals(1000, histogram.getMax());
+        assertWithin(500, histogram.percentile(50));
+        assertWithin(990, histogram.percentile(99));
+        assertEquals(1000, histogram.percentile(100));
+        assertEquals(1, histogram.percentile(0));
+    }
+
+    @Test
+    void window() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(50, TimeUnit.MILLISECONDS);
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        assertEquals(1, histogram.getCount());
+        // samples survive one rotation and are dropped after two windows
+        Thread.sleep(150);
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentile(50));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 8, "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra;
+
+import net.e6tech.elements.cassandra.driver.cql.PagedTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SibylTest {
+
+    @Test
+    void firstSkipsEmptyPages() {
+        PagedTable table = new PagedTable(PagedTable.values(10), 2).emptyPage(0).emptyPage(1).emptyPage(2);
+        assertEquals(Integer.valueOf(0), Sibyl.first(table.first(null), PagedTable::value).toCompletableFuture().join());
+        // stops at the first row, the page after it is not requested
+        assertEquals(4, table.getFetches());
+    }
+
+    @Test
+    void firstOfNothing() {
+        PagedTable table = new PagedTable(PagedTable.values(0), 2);
+        assertNull(Sibyl.first(table.first(null), PagedTable::value).toCompletableFuture().join());
+        assertEquals(1, table.getFetches());
+    }
+
+    @Test
+    void firstFailure() {
+        PagedTable table = new PagedTable(PagedTable.values(10), 2).emptyPage(0).failAt(0);
+        CompletableFuture<Integer> first = Sibyl.first(table.first(null), PagedTable::value).toCompletableFuture();
+        ExecutionException ex = assertThrows(ExecutionException.class, first::get);
+        assertEquals("read timeout", ex.getCause().getMessage());
+    }
+}
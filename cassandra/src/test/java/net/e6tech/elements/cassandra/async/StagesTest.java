@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.async;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StagesTest {
+
+    private static List<Integer> items(int n) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            list.add(i);
+        return list;
+    }
+
+    @Test
+    void empty() {
+        CompletableFuture<List<Integer>> result = Stages.allOf(Collections.<Integer>emptyList(), 4, i -> CompletableFuture.completedFuture(i))
+                .toCompletableFuture();
+        assertTrue(result.isDone());
+        assertTrue(result.join().isEmpty());
+        assertTrue(Stages.<Integer>allOf(Collections.emptyList()).toCompletableFuture().join().isEmpty());
+    }
+
+    @Test
+    void concurrencyCap() {
+        List<CompletableFuture<Integer>> outstanding = new ArrayList<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CompletableFuture<List<Integer>> result = Stages.allOf(items(20), 3, i -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            outstanding.add(future);
+            return future.thenApply(v -> {
+                inFlight.decrementAndGet();
+                return v * 10;
+            });
+        }).toCompletableFuture();
+
+        assertEquals(3, outstanding.size());
+        // complete out of order; each completion launches exactly one more call
+        int completed = 0;
+        while (completed < outstanding.size()) {
+            int index = outstanding.size() - 1;
+            while (outstanding.get(index).isDone())
+                index--;
+            outstanding.get(index).complete(index);
+            completed++;
+            assertTrue(outstanding.size() - completed <= 3);
+        }
+        assertEquals(3, maxInFlight.get());
+        assertEquals(20, outstanding.size());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            expected.add(i * 10);
+        assertEquals(expected, result.join());
+    }
+
+    @Test
+    void inlineCompletion() {
+        // stages that are already complete must not recurse one frame per item
+        List<Integer> result = Stages.allOf(items(100000), 2, i -> CompletableFuture.completedFuture(i + 1))
+                .toCompletableFuture().join();
+        assertEquals(100000, result.size());
+        assertEquals(Integer.valueOf(100000), result.get(99999));
+    }
+
+    @Test
+    void firstFailure() {
+        List<CompletableFuture<Integer>> outstanding = new ArrayList<>();
+        CompletableFuture<List<Integer>> result = Stages.allOf(items(10), 2, i -> {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            outstanding.add(future);
+            return future;
+        }).toCompletableFuture();
+
+        IllegalStateException first = new IllegalStateException("first");
+        outstanding.get(0).completeExceptionally(first);
+        // no new call after the failure, the outstanding one still has to finish
+        assertEquals(2, outstanding.size());
+        assertFalse(result.isDone());
+        outstanding.get(1).completeExceptionally(new IllegalStateException("second"));
+
+        ExecutionException ex = assertThrows(ExecutionException.class, result::get);
+        assertSame(first, ex.getCause());
+    }
+
+    @Test
+    void functionThrows() {
+        AtomicInteger calls = new AtomicInteger();
+        CompletionStage<List<Integer>> result = Stages.allOf(items(10), 1, i -> {
+            calls.incrementAndGet();
+            if (i == 3)
+                throw new IllegalArgumentException("bad item");
+            return CompletableFuture.completedFuture(i);
+        });
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> result.toCompletableFuture().get());
+        assertTrue(ex.getCause() instanceof IllegalArgumentException);
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void allOfStages() {
+        CompletableFuture<Integer> a = new CompletableFuture<>();
+        CompletableFuture<Integer> b = new CompletableFuture<>();
+        CompletableFuture<List<Integer>> result = Stages.allOf(Arrays.asList(a, b)).toCompletableFuture();
+        b.complete(2);
+        assertFalse(result.isDone());
+        a.complete(1);
+        assertEquals(Arrays.asList(1, 2), result.join());
+    }
+}
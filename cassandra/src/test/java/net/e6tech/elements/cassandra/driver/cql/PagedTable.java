@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.driver.cql;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A paged table of ints for tests; the paging state is the offset of the next page.
+ */
+public class PagedTable {
+    private final List<Integer> values;
+    private final int pageSize;
+    private Set<Integer> emptyPages = new HashSet<>(); // page numbers that come back without rows
+    private int failAt = -1;
+    private int fetches;
+
+    public PagedTable(List<Integer> values, int pageSize) {
+        this.values = values;
+        this.pageSize = pageSize;
+    }
+
+    public static List<Integer> values(int n) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            list.add(i);
+        return list;
+    }
+
+    public static Integer value(Row row) {
+        return (Integer) row.getObject(0);
+    }
+
+    // page numbers start at 0
+    public PagedTable emptyPage(int number) {
+        emptyPages.add(number);
+        return this;
+    }
+
+    // the page starting at offset fails
+    public PagedTable failAt(int offset) {
+        failAt = offset;
+        return this;
+    }
+
+    public int getFetches() {
+        return fetches;
+    }
+
+    public CompletionStage<AsyncResultSet> first(ByteBuffer state) {
+        return page(state == null ? 0 : state.getInt(0), 0);
+    }
+
+    private CompletionStage<AsyncResultSet> page(int offset, int number) {
+        fetches++;
+        CompletableFuture<AsyncResultSet> future = new CompletableFuture<>();
+        if (offset == failAt) {
+            future.completeExceptionally(new IllegalStateException("read timeout"));
+            return future;
+        }
+        boolean empty = emptyPages.contains(number);
+        int end = empty ? offset : Math.min(offset + pageSize, values.size());
+        future.complete(new Page(values.subList(offset, end), end, number));
+        return future;
+    }
+
+    private class Page implements AsyncResultSet {
+        private final List<Integer> rows;
+        private final int next;
+        private final int number;
+        private int consumed;
+
+        Page(List<Integer> rows, int next, int number) {
+            this.rows = rows;
+            this.next = next;
+            this.number = number;
+        }
+
+        @Override
+        public Iterable<Row> currentPage() {
+            return () -> new Iterator<Row>() {
+                @Override
+                public boolean hasNext() {
+                    return consumed < rows.size();
+                }
+
+                @Override
+                public Row next() {
+                    return new IntRow(rows.get(consumed++));
+                }
+            };
+        }
+
+        @Override
+        public int remaining() {
+            return rows.size() - consumed;
+        }
+
+        @Override
+        public boolean hasMorePages() {
+            return next < values.size();
+        }
+
+        @Override
+        public CompletionStage<AsyncResultSet> fetchNextPage() {
+            return page(next, number + 1);
+        }
+
+        @Override
+        public ByteBuffer getPagingState() {
+            if (!hasMorePages())
+                return null;
+            ByteBuffer state = ByteBuffer.allocate(4);
+            state.putInt(0, next);
+            return state;
+        }
+
+        @Override
+        public Row one() {
+            return currentPage().iterator().next();
+        }
+
+        @Override
+        public Iterator<Row> iterator() {
+            return currentPage().iterator();
+        }
+    }
+
+    private static class IntRow implements Row {
+        private final Integer value;
+
+        IntRow(Integer value) {
+            this.value = value;
+        }
+
+        @Override
+        public int columnSize() {
+            return 1;
+        }
+
+        @Override
+        public Object getObject(int i) {
+            return value;
+        }
+
+        @Override
+        public Object getObject(String name) {
+            return value;
+        }
+
+        @Override
+        public <T> T get(int i, Class<T> targetClass) {
+            return targetClass.cast(value);
+        }
+
+        @Override
+        public <T> T get(String name, Class<T> targetClass) {
+            return targetClass.cast(value);
+        }
+
+        @Override
+        public long getLong(int i) {
+            return value;
+        }
+
+        @Override
+        public long getLong(String name) {
+            return value;
+        }
+
+        @Override
+        public boolean isNull(int i) {
+            return value == null;
+        }
+
+        @Override
+        public boolean isNull(String name) {
+            return value == null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeCaptureTest {
+
+    @Test
+    void changeTime() throws Exception {
+        Set<Long> times = ConcurrentHashMap.newKeySet();
+        AtomicBoolean increasing = new AtomicBoolean(true);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                long last = 0;
+                for (int j = 0; j < 10000; j++) {
+                    long time = ChangeCapture.nextChangeTime();
+                    if (time <= last)
+                        increasing.set(false);
+                    last = time;
+                    times.add(time);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertTrue(increasing.get());
+        // unique across threads
+        assertEquals(40000, times.size());
+    }
+
+    @Test
+    void bucket() {
+        long minute = ETLContext.MINUTE;
+        assertEquals(0, ChangeCapture.bucket(TimeUnit.MILLISECONDS.toMicros(minute - 1), minute));
+        assertEquals(1, ChangeCapture.bucket(TimeUnit.MILLISECONDS.toMicros(minute), minute));
+        assertEquals(2, ChangeCapture.bucket(TimeUnit.MILLISECONDS.toMicros(minute * 2 + 1), minute));
+    }
+
+    @Test
+    void changes() throws Exception {
+        ChangeCapture capture = new ChangeCapture().capture(Item.class);
+        assertTrue(capture.captures(Item.class));
+        assertFalse(capture.captures(ChangeLog.class));
+
+        List<ChangeLog> changes = capture.changes(ChangeLog.SAVE, "item", Arrays.asList(new Item(1), new Item(2)));
+        assertEquals(2, changes.size());
+        assertTrue(changes.get(0).getChangeTime() < changes.get(1).getChangeTime());
+        assertNotEquals(changes.get(0).getChangeId(), changes.get(1).getChangeId());
+        for (ChangeLog change : changes) {
+            assertEquals("item", change.getTableName());
+            assertEquals(ChangeCapture.bucket(change.getChangeTime(), capture.getBucketSize()), (long) change.getBucket());
+            assertEquals(Item.class.getName(), change.getEntityClass());
+            assertFalse(change.isDelete());
+        }
+        assertEquals(2, capture.getMapper().readValue(changes.get(1).getPayload(), Item.class).getId());
+    }
+
+    public static class Item {
+        private int id;
+
+        public Item() {
+        }
+
+        Item(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.etl;
+
+import net.e6tech.elements.common.util.datastructure.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpillStoreTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void spill() {
+        SpillStore<Item> store = new SpillStore<>(256, dir);
+        for (int i = 0; i < 100; i++)
+            store.add(new PrimaryKey(i / 2), new Item(i, "item " + i));
+        assertTrue(store.isSpilled());
+        assertEquals(1, dir.listFiles().length);
+        assertEquals(100, store.size());
+        // two entries per key
+        assertEquals(50, store.keySet().size());
+
+        int i = 0;
+        for (Pair<PrimaryKey, Item> pair : store) {
+            assertEquals(new PrimaryKey(i / 2), pair.key());
+            assertEquals(new Item(i, "item " + i), pair.value());
+            i++;
+        }
+        assertEquals(100, i);
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertFalse(store.isSpilled());
+        assertEquals(0, dir.listFiles().length);
+
+        // the buffer is reused after clear
+        store.add(new PrimaryKey(1), new Item(1, "again"));
+        assertEquals(new Item(1, "again"), store.get(0));
+        store.close();
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    void bounded() {
+        SpillStore<Item> store = new SpillStore<>(64, dir);
+        store.setMaxEntries(3);
+        for (int i = 0; i < 3; i++)
+            store.add(new PrimaryKey(i), new Item(i, "item"));
+        assertThrows(IllegalStateException.class, () -> store.add(new PrimaryKey(3), new Item(3, "item")));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(3));
+        store.close();
+
+        SpillStore<Item> small = new SpillStore<>(0, dir);
+        small.setMaxSpillSize(40);
+        small.add(new PrimaryKey(0), new Item(0, "item"));
+        assertThrows(IllegalStateException.class, () -> small.add(new PrimaryKey(1), new Item(1, "a much longer description")));
+        assertEquals(1, small.size());
+        small.close();
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    public static class Item {
+        private int id;
+        private String description;
+
+        public Item() {
+        }
+
+        Item(int id, String description) {
+            this.id = id;
+            this.description = description;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Item))
+                return false;
+            Item other = (Item) object;
+            return id == other.id && Objects.equals(description, other.description);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, description);
+        }
+    }
+}
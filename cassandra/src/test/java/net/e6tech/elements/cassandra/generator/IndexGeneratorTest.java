@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.generator;
+
+import net.e6tech.elements.cassandra.driver.v4.GeneratorV4;
+import org.junit.jupiter.api.Test;
+
+import java.beans.IntrospectionException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexGeneratorTest {
+
+    private static IndexGenerator generator() throws IntrospectionException {
+        return new GeneratorV4().createIndexes("ks", TableGeneratorTest.Account.class);
+    }
+
+    @Test
+    void all() throws IntrospectionException {
+        assertEquals(Arrays.asList(
+                "CREATE INDEX IF NOT EXISTS account__name_idx ON ks.account(name)",
+                "CREATE INDEX IF NOT EXISTS account__by_balance ON ks.account(balance)"),
+                generator().generate());
+    }
+
+    @Test
+    void skipExisting() throws IntrospectionException {
+        // names reported by the table metadata, compared case insensitively
+        assertEquals(Collections.singletonList("CREATE INDEX IF NOT EXISTS account__by_balance ON ks.account(balance)"),
+                generator().generate(Collections.singletonList("ACCOUNT__NAME_IDX")));
+        assertTrue(generator().generate(Arrays.asList("account__name_idx", "account__by_balance")).isEmpty());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.generator;
+
+import net.e6tech.elements.cassandra.annotations.*;
+import net.e6tech.elements.cassandra.driver.datatype.DataType;
+import net.e6tech.elements.cassandra.driver.metadata.ColumnMetadata;
+import net.e6tech.elements.cassandra.driver.metadata.TableMetadata;
+import net.e6tech.elements.cassandra.driver.v4.GeneratorV4;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableGeneratorTest {
+
+    private static TableMetadata existing(String... columns) {
+        List<ColumnMetadata> list = new ArrayList<>();
+        for (String column : columns)
+            list.add(new Column(column));
+        return new Table(list);
+    }
+
+    private static TableGenerator generator() {
+        return new GeneratorV4().getTable("ks", Account.class);
+    }
+
+    @Test
+    void unchanged() {
+        assertTrue(generator().alterStatements(existing("id", "seq", "name", "balance"), true).isEmpty());
+        // column names are compared case insensitively
+        assertTrue(generator().alterStatements(existing("ID", "Seq", "NAME", "balance"), true).isEmpty());
+    }
+
+    @Test
+    void addColumns() {
+        List<String> statements = generator().alterStatements(existing("id", "seq"), false);
+        assertEquals(Arrays.asList(
+                "ALTER TABLE ks.account ADD \"balance\" bigint",
+                "ALTER TABLE ks.account ADD \"name\" varchar"), statements);
+    }
+
+    @Test
+    void dropColumns() {
+        TableMetadata table = existing("id", "seq", "name", "balance", "obsolete");
+        // extra columns are left alone unless dropColumns is set
+        assertTrue(generator().alterStatements(table, false).isEmpty());
+        assertEquals(Collections.singletonList("ALTER TABLE ks.account DROP \"obsolete\""),
+                generator().alterStatements(table, true));
+    }
+
+    @Test
+    void addAndDrop() {
+        List<String> statements = generator().alterStatements(existing("id", "seq", "name", "legacy"), true);
+        assertEquals(Arrays.asList(
+                "ALTER TABLE ks.account ADD \"balance\" bigint",
+                "ALTER TABLE ks.account DROP \"legacy\""), statements);
+    }
+
+    @net.e6tech.elements.cassandra.annotations.Table(name = "account")
+    @Indexes({@Index(column = "name"), @Index(name = "by_balance", column = "balance")})
+    public static class Account {
+        private String id;
+        private long seq;
+        private String name;
+        private Long balance;
+
+        @PartitionKey
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        @ClusteringColumn
+        public long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(long seq) {
+            this.seq = seq;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Long getBalance() {
+            return balance;
+        }
+
+        public void setBalance(Long balance) {
+            this.balance = balance;
+        }
+    }
+
+    private static class Column implements ColumnMetadata {
+        private final String name;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public DataType getDataType() {
+            return null;
+        }
+    }
+
+    private static class Table implements TableMetadata {
+        private final List<ColumnMetadata> columns;
+
+        Table(List<ColumnMetadata> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public String getName() {
+            return "account";
+        }
+
+        @Override
+        public List<ColumnMetadata> getColumns() {
+            return columns;
+        }
+
+        @Override
+        public List<ColumnMetadata> getPrimaryKey() {
+            return columns.subList(0, 2);
+        }
+
+        @Override
+        public List<ColumnMetadata> getPartitionKey() {
+            return columns.subList(0, 1);
+        }
+
+        @Override
+        public List<ColumnMetadata> getClusteringColumns() {
+            return columns.subList(1, 2);
+        }
+
+        @Override
+        public List<String> getIndexes() {
+            return Collections.emptyList();
+        }
+    }
+}
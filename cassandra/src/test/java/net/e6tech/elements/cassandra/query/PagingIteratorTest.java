@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.query;
+
+import net.e6tech.elements.cassandra.driver.cql.PagedTable;
+import net.e6tech.elements.common.util.SystemException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PagingIteratorTest {
+
+    private static PagingIterator<Integer> stream(PagedTable table, ByteBuffer state) {
+        return new PagingIterator<>(table.first(state), PagedTable::value);
+    }
+
+    private static <T> List<T> drain(Iterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    @Test
+    void pageBoundaries() {
+        for (int n : new int[] {0, 1, 9, 10, 11, 30}) {
+            PagedTable table = new PagedTable(PagedTable.values(n), 10);
+            PagingIterator<Integer> iterator = stream(table, null);
+            assertEquals(PagedTable.values(n), drain(iterator));
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+            assertEquals(Math.max(1, (n + 9) / 10), iterator.getPageCount());
+            assertNull(iterator.getPagingState());
+        }
+    }
+
+    @Test
+    void emptyPages() {
+        PagedTable table = new PagedTable(PagedTable.values(5), 2);
+        table.emptyPage(1).emptyPage(2);
+        assertEquals(PagedTable.values(5), drain(stream(table, null)));
+    }
+
+    @Test
+    void prefetch() {
+        PagedTable table = new PagedTable(PagedTable.values(30), 10);
+        PagingIterator<Integer> iterator = stream(table, null);
+        assertTrue(iterator.hasNext());
+        // the second page is requested as soon as the first arrives
+        assertEquals(2, table.getFetches());
+        assertEquals(1, iterator.getPageCount());
+    }
+
+    @Test
+    void resume() {
+        PagedTable table = new PagedTable(PagedTable.values(25), 10);
+        PagingIterator<Integer> iterator = stream(table, null);
+        List<Integer> seen = new ArrayList<>();
+        ByteBuffer state = null;
+        while (iterator.hasNext()) {
+            seen.add(iterator.next());
+            if (iterator.getPageRemaining() == 0) {
+                state = iterator.getPagingState();
+                break;
+            }
+        }
+        assertEquals(PagedTable.values(10), seen);
+        assertNotNull(state);
+
+        seen.addAll(drain(stream(table, state)));
+        assertEquals(PagedTable.values(25), seen);
+    }
+
+    @Test
+    void filter() {
+        PagedTable table = new PagedTable(PagedTable.values(25), 10);
+        // excluded rows spanning a page boundary
+        Set<Integer> excluded = new HashSet<>(Arrays.asList(0, 9, 10, 11));
+        List<Integer> list = drain(stream(table, null).filter(excluded::contains, 5));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), list);
+
+        list = drain(stream(new PagedTable(PagedTable.values(12), 10), null).filter(excluded::contains, -1));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), list);
+    }
+
+    @Test
+    void failure() {
+        PagedTable table = new PagedTable(PagedTable.values(25), 10);
+        table.failAt(10);
+        PagingIterator<Integer> iterator = stream(table, null);
+        for (int i = 0; i < 10; i++)
+            iterator.next();
+        assertThrows(SystemException.class, iterator::hasNext);
+    }
+}
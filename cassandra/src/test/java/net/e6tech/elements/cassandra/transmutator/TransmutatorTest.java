@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.cassandra.transmutator;
+
+import net.e6tech.elements.cassandra.etl.PartitionContext;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransmutatorTest {
+
+    @Test
+    void generatedDispatch() throws Exception {
+        Method method = Loaders.class.getMethod("loadPublic", PartitionContext.class, Item[].class);
+        Transmutator.LoaderInvoker invoker = Transmutator.invoker(method);
+        // public loaders go through the LambdaMetafactory generated class
+        assertFalse(invoker.getClass().getSimpleName().equals("HandleInvoker"));
+        Loaders loaders = new Loaders();
+        assertEquals(2, invoker.load(loaders, null, new Item[] { new Item(), new Item() }));
+        assertEquals(2, loaders.count);
+    }
+
+    @Test
+    void handleDispatch() throws Exception {
+        Method method = Loaders.class.getDeclaredMethod("loadPrivate", PartitionContext.class, Item[].class);
+        Transmutator.LoaderInvoker invoker = Transmutator.invoker(method);
+        // non-public loaders fall back to a method handle
+        assertEquals("HandleInvoker", invoker.getClass().getSimpleName());
+        Loaders loaders = new Loaders();
+        assertEquals(3, invoker.load(loaders, null, new Item[] { new Item(), new Item(), new Item() }));
+        assertEquals(-3, loaders.count);
+
+        // exceptions from the loader are not wrapped
+        assertThrows(IllegalArgumentException.class, () -> invoker.load(loaders, null, new Item[0]));
+    }
+
+    @Test
+    void foreignLoader() throws Exception {
+        // the same loader class defined by another class loader cannot be linked from the generated class,
+        // so the handle is chosen up front instead of on the first failed call.
+        Class<?> cls = new ChildFirstLoader(Loaders.class).loadClass(Loaders.class.getName());
+        assertNotSame(Loaders.class, cls);
+        Method method = cls.getMethod("loadPublic", PartitionContext.class, Item[].class);
+        assertFalse(Transmutator.linkable(method));
+        assertTrue(Transmutator.linkable(Loaders.class.getMethod("loadPublic", PartitionContext.class, Item[].class)));
+
+        Transmutator.LoaderInvoker invoker = Transmutator.invoker(method);
+        assertEquals("HandleInvoker", invoker.getClass().getSimpleName());
+        Transmutator loaders = (Transmutator) cls.newInstance();
+        assertEquals(2, invoker.load(loaders, null, new Item[] { new Item(), new Item() }));
+        Field count = cls.getDeclaredField("count");
+        count.setAccessible(true); // a different runtime package now
+        assertEquals(2, count.getInt(loaders));
+    }
+
+    @Test
+    void parallelOrder() {
+        Loaders loaders = new Loaders();
+        loaders.setParallelism(4);
+        List<String> events = new CopyOnWriteArrayList<>();
+        // both loaders of order 0 must run at the same time to get past the latch
+        CountDownLatch together = new CountDownLatch(2);
+        List<Transmutator.Descriptor> descriptors = new ArrayList<>();
+        descriptors.add(descriptor(0, () -> {
+            together.countDown();
+            events.add(together.await(5, TimeUnit.SECONDS) ? "0a" : "timeout");
+        }));
+        descriptors.add(descriptor(0, () -> {
+            together.countDown();
+            events.add(together.await(5, TimeUnit.SECONDS) ? "0b" : "timeout");
+        }));
+        descriptors.add(descriptor(1, () -> events.add("1")));
+
+        assertEquals(3, loaders.runDescriptors(descriptors));
+        assertEquals(3, events.size());
+        assertFalse(events.contains("timeout"));
+        // the next order starts only after the previous one is done
+        assertEquals("1", events.get(2));
+
+        events.clear();
+        loaders.setParallelism(1);
+        assertEquals(2, loaders.runDescriptors(Arrays.asList(descriptor(0, () -> events.add("a")), descriptor(1, () -> events.add("b")))));
+        assertEquals(Arrays.asList("a", "b"), events);
+    }
+
+    private Transmutator.Descriptor descriptor(int order, Task task) {
+        return new Transmutator.Descriptor(order, null, null, Transmutator.RunType.EACH_ENTRY, null) {
+            @Override
+            int run() {
+                try {
+                    task.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }
+        };
+    }
+
+    interface Task {
+        void run() throws InterruptedException;
+    }
+
+    // defines one class itself and delegates everything else
+    private static class ChildFirstLoader extends ClassLoader {
+        private final Class<?> target;
+
+        ChildFirstLoader(Class<?> target) {
+            super(target.getClassLoader());
+            this.target = target;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(target.getName()))
+                return super.loadClass(name, resolve);
+            Class<?> cls = findLoadedClass(name);
+            if (cls != null)
+                return cls;
+            try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = in.read(buffer)) > 0)
+                    out.write(buffer, 0, n);
+                byte[] bytes = out.toByteArray();
+                return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    public static class Item {
+    }
+
+    public static class Loaders extends Transmutator {
+        int count;
+
+        public int loadPublic(PartitionContext context, Item... items) {
+            count += items.length;
+            return items.length;
+        }
+
+        private int loadPrivate(PartitionContext context, Item... items) {
+            if (items.length == 0)
+                throw new IllegalArgumentException();
+            count -= items.length;
+            return items.length;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.notification;
+
+import net.e6tech.elements.common.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers notifications to a delegate listener off the publishing thread.  Notifications are put into a
+ * bounded queue and drained in batches by at most one task at a time, so the delegate sees them in the
+ * order they were fired.  When the queue is full, the publishing thread waits up to overflowTimeout
+ * milliseconds for room; if the queue is still full the notification is dropped and counted.  Notifications
+ * are never delivered on the publishing thread, so ordering holds and the delegate is never called
+ * concurrently.
+ */
+@SuppressWarnings("unchecked")
+public class AsyncNotificationListener<T extends Notification> implements NotificationListener<T> {
+    private static Logger logger = Logger.getLogger();
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final long DEFAULT_OVERFLOW_TIMEOUT = 1000L;
+
+    private final NotificationListener<T> delegate;
+    private final Executor executor;
+    private final BlockingQueue<T> queue;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong overflowCount = new AtomicLong();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long overflowTimeout = DEFAULT_OVERFLOW_TIMEOUT;
+
+    public AsyncNotificationListener(NotificationListener<T> delegate, Executor executor, int capacity) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public NotificationListener<T> getDelegate() {
+        return delegate;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getOverflowTimeout() {
+        return overflowTimeout;
+    }
+
+    public void setOverflowTimeout(long overflowTimeout) {
+        this.overflowTimeout = overflowTimeout;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    // number of notifications dropped because the queue stayed full for overflowTimeout.
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    @Override
+    public Class<? extends Notification>[] getNotificationTypes() {
+        return delegate.getNotificationTypes();
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public void onEvent(T notification) {
+        if (!queue.offer(notification)) {
+            // make sure a drain is running before waiting on it.
+            schedule();
+            if (!offer(notification)) {
+                long dropped = overflowCount.incrementAndGet();
+                logger.warn("Notification queue full, dropped {} for {}, total dropped {}",
+                        notification.getClass().getName(), delegate.getDescription(), dropped);
+                return;
+            }
+        }
+        schedule();
+    }
+
+    private boolean offer(T notification) {
+        try {
+            return overflowTimeout > 0 && queue.offer(notification, overflowTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RuntimeException ex) {
+                scheduled.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    private void drain() {
+        List<T> batch = new ArrayList<>(batchSize);
+        try {
+            while (queue.drainTo(batch, batchSize) > 0) {
+                for (T notification : batch)
+                    deliver(notification);
+                batch.clear();
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        // a notification may have been queued after the last drainTo but before scheduled was reset.
+        if (!queue.isEmpty())
+            schedule();
+    }
+
+    private void deliver(T notification) {
+        try {
+            delegate.onEvent(notification);
+        } catch (Exception ex) {
+            logger.warn(ex.getMessage(), ex);
+        }
+    }
+}
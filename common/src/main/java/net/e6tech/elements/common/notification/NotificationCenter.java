@@ -18,6 +18,7 @@ package net.e6tech.elements.common.notification;
 
 import net.e6tech.elements.common.subscribe.Broadcast;
 import net.e6tech.elements.common.subscribe.Subscriber;
+import net.e6tech.elements.common.util.concurrent.ThreadPool;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -26,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * Created by futeh on 1/21/16.
@@ -36,10 +38,38 @@ public class NotificationCenter implements Broadcast {
     private Map<Object, List<NotificationListener>> srcNotificationListeners = new ConcurrentHashMap<>();
     private Map<Class, List<NotificationListener>> notificationListeners = new ConcurrentHashMap<>();
 
+    // notification class to the listeners resolved by walking its class hierarchy.  Replaced whenever
+    // notificationListeners changes.
+    private volatile Map<Class, List<NotificationListener>> index = new ConcurrentHashMap<>();
+    private boolean indexed = true;
+    private Executor executor;
+
     // for broadcasting
     Map<Object, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
     List<Broadcast> broadcasts = new CopyOnWriteArrayList<>();
 
+    /**
+     * When true (the default), the listeners for a notification class are resolved once and cached until a
+     * listener is added or removed.  Otherwise the class hierarchy is walked on every fire.
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+    }
+
+    public synchronized Executor getExecutor() {
+        if (executor == null)
+            executor = ThreadPool.cachedThreadPool(NotificationCenter.class.getName());
+        return executor;
+    }
+
+    public synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
     public void addSourceNotificationListener(Object src, NotificationListener listener) {
         List<NotificationListener> listeners = srcNotificationListeners.computeIfAbsent(src, n -> new CopyOnWriteArrayList<>());
         listeners.add(listener);
@@ -53,11 +83,26 @@ public class NotificationCenter implements Broadcast {
     public <T extends Notification> void addNotificationListener(Class<T> cls, NotificationListener<T> listener) {
         List<NotificationListener> listeners = notificationListeners.computeIfAbsent(cls, n -> new CopyOnWriteArrayList<>());
         listeners.add(listener);
+        invalidateIndex();
+    }
+
+    /**
+     * Registers a listener that receives notifications on the center's executor rather than on the thread
+     * that fires them.  Each listener has its own queue bounded by capacity.
+     */
+    public <T extends Notification> void addAsyncNotificationListener(Class<T> cls, NotificationListener<T> listener, int capacity) {
+        addNotificationListener(cls, new AsyncNotificationListener<>(listener, getExecutor(), capacity));
     }
 
     public <T extends Notification> void removeNotificationListener(Class<T> cls, NotificationListener<T> listener) {
         List<NotificationListener> listeners = notificationListeners.computeIfAbsent(cls, n -> new CopyOnWriteArrayList<>());
-        listeners.remove(listener);
+        listeners.removeIf(l -> l == listener
+                || (l instanceof AsyncNotificationListener && ((AsyncNotificationListener) l).getDelegate() == listener));
+        invalidateIndex();
+    }
+
+    private void invalidateIndex() {
+        index = new ConcurrentHashMap<>();
     }
 
     public void fireNotification(Notification notification) {
@@ -68,15 +113,21 @@ public class NotificationCenter implements Broadcast {
             }
         }
 
-        Class cls = notification.getClass();
+        List<NotificationListener> listeners = indexed
+                ? index.computeIfAbsent(notification.getClass(), this::resolveListeners)
+                : resolveListeners(notification.getClass());
+        listeners.forEach(listener -> listener.onEvent(notification));
+    }
+
+    // the listeners of the nearest class in the hierarchy that has been registered.
+    private List<NotificationListener> resolveListeners(Class cls) {
         while (!cls.equals(Object.class)) {
             List<NotificationListener> listeners = notificationListeners.get(cls);
-            if (listeners != null) {
-                listeners.forEach(listener -> listener.onEvent(notification));
-                break;
-            }
+            if (listeners != null)
+                return listeners;
             cls = cls.getSuperclass();
         }
+        return Collections.emptyList();
     }
 
     public List<NotificationListener> getNotificationListeners(Notification notification) {
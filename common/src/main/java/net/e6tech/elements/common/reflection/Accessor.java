@@ -22,6 +22,7 @@ import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.*;
 import java.util.HashMap;
 import java.util.Map;
@@ -30,6 +31,8 @@ import java.util.function.Function;
 
 public class Accessor {
     private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
 
     private MethodHandle setter;
     private MethodHandle getter;
@@ -105,7 +108,7 @@ public class Accessor {
             name = descriptor.getName();
             type = descriptor.getPropertyType();
             if (descriptor.getWriteMethod() != null) {
-                setter = lookup.unreflect(descriptor.getWriteMethod());
+                setter = lookup.unreflect(descriptor.getWriteMethod()).asType(SETTER_TYPE);
                 lambdaSetter = Lambda.reflectSetter(lookup, descriptor.getWriteMethod());
             }
         } catch (Exception ex) {
@@ -114,7 +117,7 @@ public class Accessor {
 
         try {
             if (descriptor.getReadMethod() != null) {
-                getter = lookup.unreflect(descriptor.getReadMethod());
+                getter = lookup.unreflect(descriptor.getReadMethod()).asType(GETTER_TYPE);
                 lambdaGetter = Lambda.reflectGetter(lookup, descriptor.getReadMethod());
             }
         } catch (Exception ex) {
@@ -132,9 +135,16 @@ public class Accessor {
         if (!Modifier.isPublic(field.getModifiers()))
             field.setAccessible(true);
 
+        // handles are erased to (Object)Object and (Object,Object)void so that get and set can use invokeExact
         try {
-            this.setter = lookup.unreflectSetter(field);
-            this.getter = lookup.unreflectGetter(field);
+            MethodHandle set = lookup.unreflectSetter(field);
+            MethodHandle get = lookup.unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                set = MethodHandles.dropArguments(set, 0, Object.class);
+                get = MethodHandles.dropArguments(get, 0, Object.class);
+            }
+            this.setter = set.asType(SETTER_TYPE);
+            this.getter = get.asType(GETTER_TYPE);
         } catch (Exception e) {
             throw new SystemException(e);
         }
@@ -155,7 +165,7 @@ public class Accessor {
                     lambdaGetter = null;
                 }
             }
-            return getter.invoke(target);
+            return (Object) getter.invokeExact(target);
         } catch (InvocationTargetException e) {
             throw new SystemException(e.getTargetException());
         } catch (Throwable e) {
@@ -167,7 +177,6 @@ public class Accessor {
     public void set(Object target, Object value) {
         try {
             if (lambdaSetter != null) {
-                lambdaSetter.accept(target, value);
                 try {
                     lambdaSetter.accept(target, value);
                     return;
@@ -176,7 +185,7 @@ public class Accessor {
                 }
             }
 
-            setter.invoke(target, value);
+            setter.invokeExact(target, value);
         } catch (InvocationTargetException e) {
             throw new SystemException(e.getTargetException());
         } catch (Throwable e) {
@@ -19,11 +19,15 @@ package net.e6tech.elements.common.subscribe;
 import net.e6tech.elements.common.logging.Logger;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by futeh.
@@ -31,22 +35,32 @@ import java.util.concurrent.ExecutorService;
 public class DefaultBroadcast implements Broadcast {
 
     Logger logger = Logger.getLogger();
-    Map<String, List<Subscriber>> subscribers = new HashMap<>();
-    Map<String, List<Subscriber>> copy = new HashMap<>();
+    Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
     ExecutorService threadPool;
+    private int batchSize = 0;
+    private Queue<Notice> pending = new ConcurrentLinkedQueue<>();
+    private AtomicBoolean draining = new AtomicBoolean(false);
 
     public void setThreadPool(ExecutorService threadPool) {
         this.threadPool = threadPool;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * When batchSize is greater than 0, published notices are queued and delivered by a single drain task
+     * that handles up to batchSize notices before yielding the thread.  Otherwise, each publish is
+     * submitted to the thread pool as its own task.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     @Override
     public void subscribe(String topic, Subscriber subscriber) {
-        List<Subscriber> list = subscribers.computeIfAbsent(topic, key -> new LinkedList<Subscriber>());
-        synchronized (list) {
-            list.add(subscriber);
-            List<Subscriber> copyList = new LinkedList<>(list);
-            copy.put(topic, copyList);
-        }
+        subscribers.computeIfAbsent(topic, key -> new CopyOnWriteArrayList<>()).add(subscriber);
     }
 
     @Override
@@ -56,12 +70,9 @@ public class DefaultBroadcast implements Broadcast {
 
     @Override
     public void unsubscribe(String topic, Subscriber subscriber) {
-        List<Subscriber> list = subscribers.computeIfAbsent(topic, key -> new LinkedList<Subscriber>());
-        synchronized (list) {
+        List<Subscriber> list = subscribers.get(topic);
+        if (list != null)
             list.remove(subscriber);
-            List<Subscriber> copyList = new LinkedList<>(list);
-            copy.put(topic, copyList);
-        }
     }
 
     @Override
@@ -72,20 +83,13 @@ public class DefaultBroadcast implements Broadcast {
     @SuppressWarnings("unchecked")
     @Override
     public void publish(String topic, Serializable object) {
-        threadPool.execute(()-> {
-            try {
-                Notice notice = new Notice(topic, object);
-                List<Subscriber> list = subscribers.computeIfAbsent(topic, key -> new LinkedList<Subscriber>());
-                synchronized (list) {
-                    list = copy.computeIfAbsent(topic, key -> new LinkedList<Subscriber>());
-                }
-                for (Subscriber subscriber : list) {
-                    subscriber.receive(notice);
-                }
-            } catch (Exception e) {
-                logger.warn(e.getMessage(), e);
-            }
-        });
+        Notice notice = new Notice(topic, object);
+        if (batchSize > 0) {
+            pending.offer(notice);
+            scheduleDrain();
+        } else {
+            threadPool.execute(() -> deliver(notice));
+        }
     }
 
     @Override
@@ -93,4 +97,41 @@ public class DefaultBroadcast implements Broadcast {
         publish(cls.getName(), object);
     }
 
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                threadPool.execute(this::drain);
+            } catch (RuntimeException ex) {
+                draining.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Notice notice;
+            int count = 0;
+            while (count < batchSize && (notice = pending.poll()) != null) {
+                deliver(notice);
+                count++;
+            }
+        } finally {
+            draining.set(false);
+        }
+        if (!pending.isEmpty())
+            scheduleDrain();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(Notice notice) {
+        try {
+            // CopyOnWriteArrayList iterates over a snapshot so no copy is needed.
+            for (Subscriber subscriber : subscribers.getOrDefault(notice.getTopic(), Collections.emptyList())) {
+                subscriber.receive(notice);
+            }
+        } catch (Exception e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
 }
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.util.concurrent;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.implementation.MethodDelegation;
+import net.bytebuddy.implementation.bind.annotation.AllArguments;
+import net.bytebuddy.implementation.bind.annotation.RuntimeType;
+import net.bytebuddy.matcher.ElementMatchers;
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.common.reflection.Reflection;
+import net.e6tech.elements.common.util.ExceptionMapper;
+import net.e6tech.elements.common.util.SystemException;
+import net.e6tech.elements.common.util.function.FunctionWithException;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Balancer whose services are shared by concurrent callers instead of being checked out one caller at
+ * a time.  Live services are kept in an immutable array that is replaced when a service dies or recovers,
+ * so selecting a service never takes a lock.  A service is picked round robin, by weight, or by the least
+ * number of calls in flight.
+ *
+ * Dead services are probed concurrently every recoveryPeriod.  The default probe simply tries to start the
+ * service again, as Balancer does.  getService returns a generated implementation of T that calls the
+ * selected service through method handles instead of a reflective Proxy.
+ */
+@SuppressWarnings("unchecked")
+public abstract class ConcurrentBalancer<T> {
+
+    private static Logger logger = Logger.getLogger();
+
+    public enum Selection {
+        ROUND_ROBIN,
+        WEIGHTED,
+        LEAST_ACTIVE
+    }
+
+    @FunctionalInterface
+    public interface HealthProbe<T> {
+        boolean isHealthy(T service) throws Exception;
+    }
+
+    private final List<Node<T>> nodes = new CopyOnWriteArrayList<>();
+    private volatile Snapshot<T> live = new Snapshot<>(new Node[0]);
+    private final AtomicInteger next = new AtomicInteger();
+    private Selection selection = Selection.LEAST_ACTIVE;
+    private HealthProbe<T> healthProbe;
+    private boolean probeLive = false;
+    private long recoveryPeriod = 60000L;
+    private ExecutorService probeExecutor;
+    private ScheduledExecutorService scheduler;
+    private volatile T service;
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+    }
+
+    public HealthProbe<T> getHealthProbe() {
+        return healthProbe;
+    }
+
+    public void setHealthProbe(HealthProbe<T> healthProbe) {
+        this.healthProbe = healthProbe;
+    }
+
+    /**
+     * When true, live services are probed as well and taken out of rotation when the probe fails.  Has no
+     * effect unless a health probe is set.
+     */
+    public boolean isProbeLive() {
+        return probeLive;
+    }
+
+    public void setProbeLive(boolean probeLive) {
+        this.probeLive = probeLive;
+    }
+
+    public long getRecoveryPeriod() {
+        return recoveryPeriod;
+    }
+
+    public void setRecoveryPeriod(long recoveryPeriod) {
+        this.recoveryPeriod = recoveryPeriod;
+    }
+
+    public ExecutorService getProbeExecutor() {
+        if (probeExecutor == null)
+            probeExecutor = ThreadPool.cachedThreadPool(ConcurrentBalancer.class.getName());
+        return probeExecutor;
+    }
+
+    public void setProbeExecutor(ExecutorService probeExecutor) {
+        this.probeExecutor = probeExecutor;
+    }
+
+    public void addService(T service) {
+        addService(service, 1);
+    }
+
+    public synchronized void addService(T service, int weight) {
+        if (weight <= 0)
+            throw new IllegalArgumentException("weight must be positive");
+        Node<T> node = new Node<>(service, weight);
+        nodes.add(node);
+        node.alive = true;
+        rebuild();
+    }
+
+    public int getAvailable() {
+        return live.nodes.length;
+    }
+
+    public synchronized void start() {
+        for (Node<T> node : nodes) {
+            if (!node.alive)
+                continue;
+            try {
+                start(node.service);
+            } catch (Exception th) {
+                logger.warn("Cannot start service " + node.service.getClass(), th);
+                node.alive = false;
+            }
+        }
+        rebuild();
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, getClass().getSimpleName() + "-probe");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::probe, recoveryPeriod, recoveryPeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    protected abstract void start(T service) throws IOException;
+
+    protected abstract void stop(T service) throws IOException;
+
+    protected boolean shouldRecover(Exception exception) {
+        Throwable throwable = ExceptionMapper.unwrap(exception);
+        return throwable instanceof IOException;
+    }
+
+    public <R> R execute(FunctionWithException<T, R, Exception> submit) throws IOException {
+        try {
+            return call(submit::apply);
+        } catch (IOException | SystemException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw new SystemException(ex.getCause() == null ? ex : ex.getCause());
+        } catch (Exception ex) {
+            throw new SystemException(ex);
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable th) {
+            throw new SystemException(th);
+        }
+    }
+
+    // exceptions other than recoverable ones are thrown as is so that the generated service can rethrow them.
+    <R> R call(Invocation<T, R> invocation) throws Throwable {
+        while (true) {
+            Node<T> node = select();
+            if (node == null)
+                throw new IOException("No service available");
+            node.active.incrementAndGet();
+            try {
+                return invocation.invoke(node.service);
+            } catch (Exception ex) {
+                if (!shouldRecover(ex))
+                    throw ex;
+                recover(node);
+            } finally {
+                node.active.decrementAndGet();
+            }
+        }
+    }
+
+    Node<T> select() {
+        Node<T>[] array = live.nodes;
+        int length = array.length;
+        if (length == 0)
+            return null;
+        if (length == 1)
+            return array[0];
+
+        switch (selection) {
+            case WEIGHTED: {
+                int[] cumulative = live.cumulative;
+                int r = ThreadLocalRandom.current().nextInt(cumulative[length - 1]);
+                int index = 0;
+                while (cumulative[index] <= r)
+                    index++;
+                return array[index];
+            }
+            case LEAST_ACTIVE: {
+                // start at a random offset so that ties do not always favor the first service.
+                int start = ThreadLocalRandom.current().nextInt(length);
+                Node<T> best = array[start];
+                for (int i = 1; i < length; i++) {
+                    Node<T> candidate = array[(start + i) % length];
+                    // compare active/weight without division
+                    if ((long) candidate.active.get() * best.weight < (long) best.active.get() * candidate.weight)
+                        best = candidate;
+                }
+                return best;
+            }
+            default:
+                return array[(next.getAndIncrement() & Integer.MAX_VALUE) % length];
+        }
+    }
+
+    protected void recover(Node<T> node) {
+        synchronized (this) {
+            if (!node.alive)
+                return;
+            node.alive = false;
+            rebuild();
+        }
+        try {
+            stop(node.service);
+        } catch (Exception e) {
+            Logger.suppress(e);
+        }
+    }
+
+    private synchronized void rebuild() {
+        List<Node<T>> list = new ArrayList<>(nodes.size());
+        for (Node<T> node : nodes)
+            if (node.alive)
+                list.add(node);
+        live = new Snapshot<>(list.toArray(new Node[0]));
+    }
+
+    private void probe() {
+        for (Node<T> node : nodes) {
+            if ((node.alive && !isProbingLive()) || !node.probing.compareAndSet(false, true))
+                continue;
+            try {
+                getProbeExecutor().execute(() -> {
+                    try {
+                        probe(node);
+                    } finally {
+                        node.probing.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                node.probing.set(false);
+                logger.warn("Cannot schedule health probe", ex);
+            }
+        }
+    }
+
+    private boolean isProbingLive() {
+        return probeLive && healthProbe != null;
+    }
+
+    private void probe(Node<T> node) {
+        if (node.alive) {
+            if (!isProbingLive())
+                return;
+            boolean healthy;
+            try {
+                healthy = healthProbe.isHealthy(node.service);
+            } catch (Exception ex) {
+                healthy = false;
+            }
+            if (!healthy)
+                recover(node);
+            return;
+        }
+
+        try {
+            if (healthProbe != null && !healthProbe.isHealthy(node.service))
+                return;
+            start(node.service);
+            synchronized (this) {
+                node.alive = true;
+                rebuild();
+            }
+        } catch (Exception ex) {
+            logger.warn("Cannot restart service " + node.service.getClass(), ex);
+            try {
+                stop(node.service);
+            } catch (Exception e) {
+                Logger.suppress(e);
+            }
+        }
+    }
+
+    /**
+     * Returns an implementation of T, generated once per balancer, that routes each call to a selected service.
+     */
+    public T getService() {
+        if (service == null) {
+            synchronized (this) {
+                if (service == null)
+                    service = newService((Class<T>) Reflection.getParametrizedType(getClass(), 0));
+            }
+        }
+        return service;
+    }
+
+    private T newService(Class<T> cls) {
+        if (!cls.isInterface())
+            throw new IllegalArgumentException(cls + " is not an interface");
+        DynamicType.Builder<T> builder = (DynamicType.Builder<T>) new ByteBuddy()
+                .subclass(Object.class)
+                .implement(cls);
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (Method method : cls.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()))
+                continue;
+            MethodHandle handle;
+            try {
+                handle = lookup.unreflect(method)
+                        .asSpreader(Object[].class, method.getParameterCount())
+                        .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+            } catch (IllegalAccessException e) {
+                throw new SystemException(e);
+            }
+            builder = builder.method(ElementMatchers.is(method))
+                    .intercept(MethodDelegation.to(new Dispatcher<>(this, handle)));
+        }
+        Class<? extends T> generated = builder.make()
+                .load(cls.getClassLoader() == null ? getClass().getClassLoader() : cls.getClassLoader())
+                .getLoaded();
+        try {
+            return generated.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    @FunctionalInterface
+    interface Invocation<T, R> {
+        @SuppressWarnings("squid:S00112")
+        R invoke(T service) throws Throwable;
+    }
+
+    // must be public static for the generated class to call it
+    public static class Dispatcher<T> {
+        private final ConcurrentBalancer<T> balancer;
+        private final MethodHandle handle;
+
+        Dispatcher(ConcurrentBalancer<T> balancer, MethodHandle handle) {
+            this.balancer = balancer;
+            this.handle = handle;
+        }
+
+        @SuppressWarnings("squid:S00112")
+        @RuntimeType
+        public Object dispatch(@AllArguments Object[] arguments) throws Throwable {
+            return balancer.call(service -> (Object) handle.invokeExact((Object) service, arguments));
+        }
+    }
+
+    static class Node<T> {
+        final T service;
+        final int weight;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicBoolean probing = new AtomicBoolean(false);
+        volatile boolean alive;
+
+        Node(T service, int weight) {
+            this.service = service;
+            this.weight = weight;
+        }
+    }
+
+    private static class Snapshot<T> {
+        final Node<T>[] nodes;
+        final int[] cumulative;
+
+        Snapshot(Node<T>[] nodes) {
+            this.nodes = nodes;
+            cumulative = new int[nodes.length];
+            int sum = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                sum += nodes[i].weight;
+                cumulative[i] = sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Same contract as Wait but without a global lock.  Entries live in a ConcurrentHashMap and are expired
+ * by a hashed timer wheel: each entry is placed in the bucket of its expiration tick, and the wheel thread
+ * only visits the buckets whose tick has come instead of scanning the whole table.  A thread waiting in
+ * poll parks and is unparked directly by offer.
+ *
+ * Each entry is meant to be polled by a single thread.
+ */
+public class ConcurrentWait<K, V> {
+    public static final long DEFAULT_TICK = 10L;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final Map<K, Entry<K, V>> table = new ConcurrentHashMap<>();
+    private final long tick;
+    private final Queue<Entry<K, V>>[] wheel;
+    private final int mask;
+    private volatile Thread thread;
+
+    public ConcurrentWait() {
+        this(DEFAULT_TICK, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tick resolution of expirations in milliseconds
+     * @param wheelSize number of buckets, rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentWait(long tick, int wheelSize) {
+        if (tick <= 0)
+            throw new IllegalArgumentException("tick must be positive");
+        this.tick = tick;
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        wheel = new Queue[size];
+        for (int i = 0; i < size; i++)
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        mask = size - 1;
+    }
+
+    public void offer(K key, V value) {
+        Entry<K, V> entry = table.get(key);
+        if (entry != null && entry.value.compareAndSet(null, value)) {
+            Thread waiter = entry.waiter;
+            if (waiter != null)
+                LockSupport.unpark(waiter);
+        }
+    }
+
+    public void newEntry(K key, long expired) {
+        newEntry(key, null, expired);
+    }
+
+    public void extendExpiration(K key, long time) {
+        Entry<K, V> entry = table.get(key);
+        if (entry != null) {
+            // the wheel reschedules the entry when its old bucket comes up.
+            entry.deadline.addAndGet(time);
+        }
+    }
+
+    public void newEntry(K key, Object userData, long expired) {
+        Entry<K, V> entry = new Entry<>(key, userData, System.currentTimeMillis() + expired);
+        table.put(key, entry);
+        schedule(entry);
+        Thread t = thread;
+        if (t == null) {
+            start();
+        } else {
+            LockSupport.unpark(t); // the wheel thread parks while the table is empty
+        }
+    }
+
+    public V remove(K key) {
+        Entry<K, V> entry = table.remove(key);
+        if (entry == null)
+            return null;
+        return entry.value.get();
+    }
+
+    public V poll(K key, long timeout) {
+        Entry<K, V> entry = table.get(key);
+        if (entry == null)
+            return null;
+        try {
+            V value = entry.value.get();
+            if (value != null)
+                return value;
+            entry.waiter = Thread.currentThread();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            while ((value = entry.value.get()) == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    break;
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return value;
+        } finally {
+            entry.waiter = null;
+            table.remove(key, entry);
+        }
+    }
+
+    public V peek(K key) {
+        Entry<K, V> entry = table.get(key);
+        if (entry == null)
+            return null;
+        return entry.value.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T peekUserData(K key) {
+        Entry<K, V> entry = table.get(key);
+        if (entry == null)
+            return null;
+        return (T) entry.userData;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    private void schedule(Entry<K, V> entry) {
+        // never schedule into a tick that the wheel may have already passed
+        long due = Math.max(entry.deadline.get() / tick, System.currentTimeMillis() / tick + 1);
+        wheel[(int) (due & mask)].offer(entry);
+    }
+
+    private synchronized void start() {
+        if (thread != null)
+            return;
+        Thread t = new Thread(this::turn, getClass().getSimpleName() + "-wheel");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    @SuppressWarnings("squid:S3776")
+    private void turn() {
+        long lastTick = System.currentTimeMillis() / tick;
+        List<Entry<K, V>> expiring = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            if (table.isEmpty()) {
+                LockSupport.park(this);
+                lastTick = System.currentTimeMillis() / tick - 1;
+                continue;
+            }
+
+            long now = System.currentTimeMillis();
+            long currentTick = now / tick;
+            // visit every bucket passed since the last turn, but each bucket at most once.
+            long from = Math.max(lastTick + 1, currentTick - mask);
+            for (long t = from; t <= currentTick; t++) {
+                Queue<Entry<K, V>> bucket = wheel[(int) (t & mask)];
+                Entry<K, V> entry;
+                while ((entry = bucket.poll()) != null)
+                    expiring.add(entry);
+                for (Entry<K, V> e : expiring) {
+                    if (table.get(e.key) != e) {
+                        // already removed or replaced by a newer entry
+                    } else if (e.deadline.get() < now) {
+                        table.remove(e.key, e);
+                    } else {
+                        schedule(e); // not due yet: a later round or an extended expiration
+                    }
+                }
+                expiring.clear();
+            }
+            lastTick = currentTick;
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(tick));
+        }
+    }
+
+    private static class Entry<K, V> {
+        final K key;
+        final Object userData;
+        final AtomicLong deadline;
+        final AtomicReference<V> value = new AtomicReference<>();
+        volatile Thread waiter;
+
+        Entry(K key, Object userData, long deadline) {
+            this.key = key;
+            this.userData = userData;
+            this.deadline = new AtomicLong(deadline);
+        }
+    }
+}
@@ -16,15 +16,42 @@
 
 package net.e6tech.elements.common.util.concurrent;
 
+import com.lmax.disruptor.*;
+import com.lmax.disruptor.dsl.ProducerType;
+
 public class DisruptorConfig {
     private int bufferSize = 1024;
     private int handlerSize = Runtime.getRuntime().availableProcessors();
+    private ProducerType producerType = ProducerType.MULTI;
+    private WaitStrategyType waitStrategy = WaitStrategyType.YIELDING;
+    private String objectName;
+
+    public enum WaitStrategyType {
+        BLOCKING,
+        SLEEPING,
+        YIELDING,
+        BUSY_SPIN;
+
+        WaitStrategy create() {
+            switch (this) {
+                case BLOCKING: return new BlockingWaitStrategy();
+                case SLEEPING: return new SleepingWaitStrategy();
+                case BUSY_SPIN: return new BusySpinWaitStrategy();
+                default: return new YieldingWaitStrategy();
+            }
+        }
+    }
 
+    /**
+     * Size of the ring buffer.  It must be a power of 2.
+     */
     public int getBufferSize() {
         return bufferSize;
     }
 
     public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1)
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
         this.bufferSize = bufferSize;
     }
 
@@ -35,4 +62,34 @@ public class DisruptorConfig {
     public void setHandlerSize(int handlerSize) {
         this.handlerSize = handlerSize;
     }
+
+    /**
+     * Use ProducerType.SINGLE only when exactly one thread publishes to the pool.
+     */
+    public ProducerType getProducerType() {
+        return producerType;
+    }
+
+    public void setProducerType(ProducerType producerType) {
+        this.producerType = producerType;
+    }
+
+    public WaitStrategyType getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(WaitStrategyType waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * When set, the pool registers a DisruptorPoolMXBean under this name with the platform MBeanServer.
+     */
+    public String getObjectName() {
+        return objectName;
+    }
+
+    public void setObjectName(String objectName) {
+        this.objectName = objectName;
+    }
 }
@@ -18,25 +18,35 @@ package net.e6tech.elements.common.util.concurrent;
 
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.WorkHandler;
-import com.lmax.disruptor.YieldingWaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
-import com.lmax.disruptor.dsl.ProducerType;
 import com.lmax.disruptor.util.DaemonThreadFactory;
 import net.e6tech.elements.common.util.SystemException;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 @SuppressWarnings("unchecked")
-public class DisruptorPool {
+public class DisruptorPool implements DisruptorPoolMXBean {
     private DisruptorConfig config = new DisruptorConfig();
     Disruptor<Event> disruptor;
+    private ObjectName objectName;
 
     public DisruptorPool() {
         start();
     }
 
+    public DisruptorPool(DisruptorConfig config) {
+        this.config = config;
+        start();
+    }
+
     public DisruptorConfig getConfig() {
         return config;
     }
@@ -53,9 +63,15 @@ public class DisruptorPool {
         this.disruptor = disruptor;
     }
 
-    public void start() {
+    /**
+     * Starts the ring buffer using the current config.  If the pool is already running, the running
+     * disruptor is drained and shut down first so that a changed config can be applied.
+     */
+    public synchronized void start() {
+        if (disruptor != null)
+            shutdown();
         disruptor = new Disruptor<>(Event::new, config.getBufferSize(), DaemonThreadFactory.INSTANCE,
-                ProducerType.SINGLE, new YieldingWaitStrategy());
+                config.getProducerType(), config.getWaitStrategy().create());
         WorkHandler<Event> handler = Event::handle;
         WorkHandler<Event>[] workers = new WorkHandler[config.getHandlerSize()];
         for (int i = 0; i < workers.length; i++) {
@@ -64,6 +80,82 @@ public class DisruptorPool {
         disruptor.handleEventsWithWorkerPool(workers)
                 .then((event, sequence, endOfBatch) -> event.clear());
         disruptor.start();
+        registerMBean();
+    }
+
+    public synchronized void shutdown() {
+        unregisterMBean();
+        if (disruptor != null) {
+            disruptor.shutdown();
+            disruptor = null;
+        }
+    }
+
+    private void registerMBean() {
+        if (config.getObjectName() == null)
+            return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(config.getObjectName());
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (JMException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName == null)
+            return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new SystemException(e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    @Override
+    public int getBufferSize() {
+        return config.getBufferSize();
+    }
+
+    @Override
+    public int getHandlerSize() {
+        return config.getHandlerSize();
+    }
+
+    @Override
+    public String getProducerType() {
+        return config.getProducerType().name();
+    }
+
+    @Override
+    public String getWaitStrategy() {
+        return config.getWaitStrategy().name();
+    }
+
+    @Override
+    public long getCursor() {
+        Disruptor<Event> d = disruptor;
+        return d == null ? -1L : d.getRingBuffer().getCursor();
+    }
+
+    @Override
+    public long getRemainingCapacity() {
+        Disruptor<Event> d = disruptor;
+        return d == null ? 0L : d.getRingBuffer().remainingCapacity();
+    }
+
+    @Override
+    public long getOccupancy() {
+        Disruptor<Event> d = disruptor;
+        return d == null ? 0L : d.getRingBuffer().getBufferSize() - d.getRingBuffer().remainingCapacity();
     }
 
     public RunnableWait run(Runnable runnable) {
@@ -117,29 +209,27 @@ public class DisruptorPool {
             this.result = result;
         }
 
+        /**
+         * Parks the calling thread until the event is handled or the timeout expires.  The handler unparks
+         * the waiting thread directly, so only one thread should complete a given Wait.
+         */
         protected void await(long timeout)  throws TimeoutException {
-            long start = System.currentTimeMillis();
-            boolean first = true;
-            synchronized (result) {
+            if (!result.done) {
+                result.waiter = Thread.currentThread();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
                 while (!result.done) {
-                    if (!first && System.currentTimeMillis() - start > timeout) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
                         throw new TimeoutException();
-                    }
-                    if (first)
-                        first = false;
-                    try {
-                        long wait = timeout - (System.currentTimeMillis() - start);
-                        if (wait > 0)
-                            result.wait(wait);
-                        if (result.exception != null)
-                            throw new SystemException(result.exception);
-
-                    } catch (InterruptedException e) {
+                    LockSupport.parkNanos(this, remaining);
+                    if (Thread.interrupted()) {
                         Thread.currentThread().interrupt();
-                        throw new SystemException(e);
+                        throw new SystemException(new InterruptedException());
                     }
                 }
             }
+            if (result.exception != null)
+                throw new SystemException(result.exception);
         }
     }
 
@@ -168,6 +258,15 @@ public class DisruptorPool {
         private Exception exception;
         private V returnValue;
         private volatile boolean done = false;
+        private volatile Thread waiter;
+
+        // exception and returnValue are published by the volatile write to done.
+        void complete() {
+            done = true;
+            Thread t = waiter;
+            if (t != null)
+                LockSupport.unpark(t);
+        }
     }
 
     private static class Event<V> {
@@ -189,12 +288,8 @@ public class DisruptorPool {
             } else {
                 call();
             }
-            if (result != null) {
-                synchronized (result) {
-                    result.notifyAll();
-                    result.done = true;
-                }
-            }
+            if (result != null)
+                result.complete();
         }
 
         void run() {
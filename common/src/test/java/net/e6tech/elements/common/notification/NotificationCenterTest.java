@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.notification;
+
+import net.e6tech.elements.common.Tags;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tags.Common
+public class NotificationCenterTest {
+
+    @Test
+    void indexInvalidatedOnSubscribe() {
+        NotificationCenter center = new NotificationCenter();
+        AtomicInteger base = new AtomicInteger();
+        AtomicInteger derived = new AtomicInteger();
+
+        center.addNotificationListener(BaseNotification.class, n -> base.incrementAndGet());
+        center.fireNotification(new DerivedNotification());
+        assertEquals(1, base.get());
+
+        // a listener on the subclass now takes precedence over the cached resolution
+        center.addNotificationListener(DerivedNotification.class, n -> derived.incrementAndGet());
+        center.fireNotification(new DerivedNotification());
+        assertEquals(1, base.get());
+        assertEquals(1, derived.get());
+    }
+
+    @Test
+    void asyncListener() throws Exception {
+        NotificationCenter center = new NotificationCenter();
+        int count = 1000;
+        CountDownLatch latch = new CountDownLatch(count);
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        NotificationListener<BaseNotification> listener = n -> {
+            threads.add(Thread.currentThread());
+            latch.countDown();
+        };
+        center.addAsyncNotificationListener(BaseNotification.class, listener, 16);
+        for (int i = 0; i < count; i++)
+            center.fireNotification(new BaseNotification());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(threads.stream().anyMatch(t -> t != Thread.currentThread()));
+
+        center.removeNotificationListener(BaseNotification.class, listener);
+        center.fireNotification(new BaseNotification());
+        assertEquals(count, threads.size());
+    }
+
+    @Test
+    void asyncListenerOverflow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        NotificationListener<IndexedNotification> blocking = n -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(n.index);
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AsyncNotificationListener<IndexedNotification> async = new AsyncNotificationListener<>(blocking, executor, 2);
+        async.setOverflowTimeout(50);
+
+        // the first is taken by the drain task, two fill the queue, the rest time out and are dropped.
+        for (int i = 0; i < 6; i++)
+            async.onEvent(new IndexedNotification(i));
+        assertTrue(async.getOverflowCount() > 0);
+        assertTrue(received.isEmpty());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.size() + async.getOverflowCount() < 6 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(6, received.size() + async.getOverflowCount());
+        for (int i = 1; i < received.size(); i++)
+            assertTrue(received.get(i - 1) < received.get(i));
+        executor.shutdown();
+    }
+
+    private static class IndexedNotification implements Notification {
+        final int index;
+
+        IndexedNotification(int index) {
+            this.index = index;
+        }
+    }
+
+    private static class BaseNotification implements Notification {
+    }
+
+    private static class DerivedNotification extends BaseNotification {
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.util.concurrent;
+
+import net.e6tech.elements.common.Tags;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("all")
+@Tags.Common
+public class ConcurrentBalancerTest {
+
+    @Test
+    void basic() throws Exception {
+        MyBalancer balancer = new MyBalancer();
+        balancer.setRecoveryPeriod(50L);
+        for (int i = 0; i < 5; i++)
+            balancer.addService(new FlakyService(), i + 1);
+        balancer.start();
+        int available = balancer.getAvailable();
+        Service service = balancer.getService();
+        assertSame(service, balancer.getService());
+
+        AtomicInteger success = new AtomicInteger();
+        Thread[] threads = new Thread[50];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    try {
+                        assertEquals(7, service.echo(7));
+                        success.incrementAndGet();
+                    } catch (IOException ex) {
+                        // all services are down
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertTrue(success.get() > 0);
+
+        long start = System.currentTimeMillis();
+        while (balancer.getAvailable() < available && System.currentTimeMillis() - start < 5000L)
+            Thread.sleep(10L);
+        assertEquals(available, balancer.getAvailable());
+
+        // non-recoverable exceptions are rethrown as is
+        assertThrows(IllegalArgumentException.class, () -> service.echo(-1));
+        balancer.stop();
+    }
+
+    @Test
+    void selection() throws Exception {
+        for (ConcurrentBalancer.Selection selection : ConcurrentBalancer.Selection.values()) {
+            MyBalancer balancer = new MyBalancer();
+            balancer.setSelection(selection);
+            balancer.setHealthProbe(s -> true);
+            balancer.addService(new FlakyService(), 1);
+            balancer.addService(new FlakyService(), 3);
+            balancer.start();
+            // at most one of the services fails within 40 calls, and the call is retried on the other one.
+            for (int i = 0; i < 40; i++) {
+                int value = i;
+                assertEquals(value, (int) balancer.execute(s -> s.echo(value)));
+            }
+            balancer.stop();
+        }
+    }
+
+    @Test
+    void probeLiveWithoutProbe() throws Exception {
+        AtomicInteger stopped = new AtomicInteger();
+        MyBalancer balancer = new MyBalancer() {
+            @Override
+            protected void stop(Service service) {
+                stopped.incrementAndGet();
+            }
+        };
+        balancer.setRecoveryPeriod(20L);
+        balancer.setProbeLive(true);
+        balancer.addService(new FlakyService(), 1);
+        balancer.addService(new FlakyService(), 1);
+        balancer.start();
+        Thread.sleep(200L);
+        // without a health probe, live services stay in rotation
+        assertEquals(0, stopped.get());
+        assertEquals(2, balancer.getAvailable());
+        balancer.stop();
+    }
+
+    public interface Service {
+        int echo(int value) throws IOException;
+    }
+
+    public static class MyBalancer extends ConcurrentBalancer<Service> {
+
+        @Override
+        protected void start(Service service) throws IOException {
+            ((FlakyService) service).count.set(0);
+        }
+
+        @Override
+        protected void stop(Service service) throws IOException {
+        }
+    }
+
+    public static class FlakyService implements Service {
+        AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public int echo(int value) throws IOException {
+            if (value < 0)
+                throw new IllegalArgumentException();
+            if (count.incrementAndGet() % 25 == 0)
+                throw new IOException();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.common.util.concurrent;
+
+import net.e6tech.elements.common.Tags;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tags.Common
+public class ConcurrentWaitTest {
+
+    @Test
+    void offerAndPoll() throws Exception {
+        ConcurrentWait<String, String> wait = new ConcurrentWait<>();
+        wait.newEntry("a", "user data", 10000L);
+        assertEquals("user data", wait.peekUserData("a"));
+
+        Thread responder = new Thread(() -> {
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            wait.offer("a", "response");
+        });
+        responder.start();
+        assertEquals("response", wait.poll("a", 5000L));
+        assertEquals(0, wait.size());
+
+        wait.newEntry("b", 10000L);
+        assertNull(wait.poll("b", 20L));
+        assertNull(wait.peek("b"));
+    }
+
+    @Test
+    void expiration() throws Exception {
+        ConcurrentWait<Integer, String> wait = new ConcurrentWait<>(5L, 64);
+        for (int i = 0; i < 1000; i++)
+            wait.newEntry(i, 50L + i % 100);
+        wait.newEntry(-1, 50L);
+        wait.extendExpiration(-1, 2000L);
+        assertEquals(1001, wait.size());
+
+        long start = System.currentTimeMillis();
+        while (wait.size() > 1 && System.currentTimeMillis() - start < 5000L)
+            Thread.sleep(10L);
+        assertEquals(1, wait.size());
+        wait.offer(-1, "late");
+        assertEquals("late", wait.remove(-1));
+    }
+}
@@ -16,12 +16,19 @@
 
 package net.e6tech.elements.common.util.concurrent;
 
+import com.lmax.disruptor.dsl.ProducerType;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SuppressWarnings("squid:S2925")
 public class DisruptorPoolTest {
@@ -71,4 +78,44 @@ public class DisruptorPoolTest {
 
         Thread.sleep(2000L); // wait for runAsync
     }
+
+    @Test
+    void multiProducer() throws Exception {
+        DisruptorConfig config = new DisruptorConfig();
+        config.setProducerType(ProducerType.MULTI);
+        config.setWaitStrategy(DisruptorConfig.WaitStrategyType.BLOCKING);
+        config.setBufferSize(64);
+        config.setHandlerSize(4);
+        config.setObjectName("net.e6tech:type=DisruptorPool,name=DisruptorPoolTest");
+        DisruptorPool pool = new DisruptorPool(config);
+
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(config.getObjectName())));
+
+        AtomicInteger count = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    try {
+                        int ret = pool.call(count::incrementAndGet).complete(5000L);
+                        assertTrue(ret > 0);
+                    } catch (TimeoutException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : producers)
+            thread.join();
+
+        assertEquals(4000, count.get());
+        long start = System.currentTimeMillis();
+        while (pool.getOccupancy() > 0 && System.currentTimeMillis() - start < 1000L)
+            Thread.sleep(10L); // the clean up handler trails the workers
+        assertEquals(0L, pool.getOccupancy());
+        pool.shutdown();
+        Assertions.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(config.getObjectName())));
+    }
 }
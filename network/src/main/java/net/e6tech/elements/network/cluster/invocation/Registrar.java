@@ -92,6 +92,7 @@ public class Registrar extends Receptor<InvocationEvents, Registrar> {
                                                 }
                                             }
                                             actors.put(registration.getPath(), new LinkedHashSet<>(msg.getServiceInstances(key)));
+                                            registry.getRouteTable().update(registration.getPath(), msg.getServiceInstances(key));
                                         }
                                         return Behaviors.same();
                                     })
@@ -141,8 +142,10 @@ public class Registrar extends Receptor<InvocationEvents, Registrar> {
             actorKeys.remove(actor);
         }
 
-        if (key != null)
+        if (key != null) {
+            registry.getRouteTable().remove(key, actor);
             registry.onTerminated(key, actor);
+        }
     }
 
     @SuppressWarnings("unchecked")
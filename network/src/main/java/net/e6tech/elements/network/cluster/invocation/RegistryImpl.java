@@ -44,6 +44,8 @@ public class RegistryImpl implements Registry {
     private ExecutionContextExecutor dispatcher;
     private long timeout = ClusterNode.DEFAULT_TIME_OUT;
     private List<RouteListener> listeners = Collections.synchronizedList(new ArrayList<>());
+    private RouteTable routeTable = new RouteTable();
+    private boolean localRoutes = true;
 
     public static String getPath() {
         return path;
@@ -61,6 +63,22 @@ public class RegistryImpl implements Registry {
         this.timeout = timeout;
     }
 
+    public RouteTable getRouteTable() {
+        return routeTable;
+    }
+
+    /**
+     * When true (the default), routes are read from the local RouteTable maintained by the Registrar.
+     * When false, each call asks the Registrar actor and waits for its answer.
+     */
+    public boolean isLocalRoutes() {
+        return localRoutes;
+    }
+
+    public void setLocalRoutes(boolean localRoutes) {
+        this.localRoutes = localRoutes;
+    }
+
     public void addRouteListener(RouteListener listener) {
         listeners.add(listener);
     }
@@ -96,9 +114,12 @@ public class RegistryImpl implements Registry {
 
     public void shutdown() {
         registrar.talk().stop();
+        routeTable.clear();
     }
 
     public Collection routes(String path) {
+        if (localRoutes)
+            return routeTable.routes(path);
         return (Collection) registrar.talk(timeout).askAndWait(InvocationEvents.Response.class,
                 ref -> new InvocationEvents.Routes(ref, path)).getValue();
     }
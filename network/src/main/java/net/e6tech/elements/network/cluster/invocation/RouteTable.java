@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.network.cluster.invocation;
+
+import akka.actor.typed.ActorRef;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local, eventually consistent copy of the routes known to the Registrar.  The Registrar pushes
+ * Receptionist listings and terminations into the table so that lookups are plain in-memory reads
+ * instead of an ask round trip to the actor.
+ *
+ * Each path maps to an immutable snapshot that is replaced on every change, so readers never lock.
+ */
+public class RouteTable {
+
+    private final Map<String, Set<ActorRef<InvocationEvents.Request>>> routes = new ConcurrentHashMap<>(); // key is the context@method
+
+    public Set<ActorRef<InvocationEvents.Request>> routes(String path) {
+        return routes.getOrDefault(path, Collections.emptySet());
+    }
+
+    public Set<String> paths() {
+        return Collections.unmodifiableSet(routes.keySet());
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    // replaces the routes for path with the latest Receptionist listing.
+    void update(String path, Collection<ActorRef<InvocationEvents.Request>> actors) {
+        if (actors == null || actors.isEmpty()) {
+            routes.remove(path);
+        } else {
+            routes.put(path, Collections.unmodifiableSet(new LinkedHashSet<>(actors)));
+        }
+    }
+
+    void remove(String path, ActorRef actor) {
+        routes.computeIfPresent(path, (k, set) -> {
+            if (!set.contains(actor))
+                return set;
+            Set<ActorRef<InvocationEvents.Request>> copy = new LinkedHashSet<>(set);
+            copy.remove(actor);
+            return copy.isEmpty() ? null : Collections.unmodifiableSet(copy);
+        });
+    }
+
+    void clear() {
+        routes.clear();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.security.hsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frames terminated by a delimiter, e.g. the line based Atalla protocol.  The delimiter is not
+ * part of the returned frame; for '\n' a preceding '\r' is dropped as well.
+ */
+public class DelimiterFrameDecoder implements FrameDecoder {
+
+    private byte delimiter;
+    private int scanned; // bytes after position already known not to contain the delimiter
+
+    public DelimiterFrameDecoder() {
+        this((byte) '\n');
+    }
+
+    public DelimiterFrameDecoder(byte delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public byte getDelimiter() {
+        return delimiter;
+    }
+
+    @Override
+    public byte[] decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        for (int i = start + scanned; i < limit; i++) {
+            if (buffer.get(i) != delimiter)
+                continue;
+            int end = i;
+            if (delimiter == '\n' && end > start && buffer.get(end - 1) == '\r')
+                end--;
+            byte[] frame = new byte[end - start];
+            buffer.get(frame);
+            buffer.position(i + 1);
+            scanned = 0;
+            return frame;
+        }
+        scanned = limit - start;
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.security.hsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits the bytes read from a connection into request frames.  A decoder belongs to a single
+ * connection and may keep state between calls.
+ */
+public interface FrameDecoder {
+
+    /**
+     * Returns the next complete frame in buffer, which is in read mode, and advances the buffer's
+     * position past it.  Returns null, leaving the position unchanged, when more bytes are needed.
+     */
+    byte[] decode(ByteBuffer buffer);
+}
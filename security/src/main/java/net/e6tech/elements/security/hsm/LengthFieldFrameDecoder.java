@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.security.hsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frames prefixed by a big endian, unsigned length field, e.g. the two byte length of a Thales
+ * command.  A frame may be enveloped, i.e. have a fixed number of bytes before the length field
+ * (STX) and after the payload (LRC and ETX).  The returned frame includes the envelope and the
+ * length field.
+ */
+public class LengthFieldFrameDecoder implements FrameDecoder {
+
+    private int lengthBytes;
+    private int prefix;
+    private int suffix;
+
+    public LengthFieldFrameDecoder(int lengthBytes) {
+        this(lengthBytes, 0, 0);
+    }
+
+    public LengthFieldFrameDecoder(int lengthBytes, int prefix, int suffix) {
+        if (lengthBytes < 1 || lengthBytes > 4)
+            throw new IllegalArgumentException("lengthBytes must be between 1 and 4: " + lengthBytes);
+        this.lengthBytes = lengthBytes;
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    public int getLengthBytes() {
+        return lengthBytes;
+    }
+
+    public int getPrefix() {
+        return prefix;
+    }
+
+    public int getSuffix() {
+        return suffix;
+    }
+
+    @Override
+    public byte[] decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < prefix + lengthBytes)
+            return null;
+
+        long length = 0;
+        for (int i = 0; i < lengthBytes; i++)
+            length = (length << 8) | (buffer.get(start + prefix + i) & 0xff);
+
+        long frameLength = prefix + lengthBytes + length + suffix;
+        if (frameLength > Integer.MAX_VALUE)
+            throw new IllegalStateException("Frame too large: " + frameLength);
+        if (buffer.remaining() < frameLength)
+            return null;
+
+        byte[] frame = new byte[(int) frameLength];
+        buffer.get(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.security.hsm;
+
+import net.e6tech.elements.common.logging.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Selector based server core for simulators.  A single thread accepts, reads and writes; complete
+ * frames are handed to a bounded worker pool.  Requests on a connection are pipelined: a client may
+ * send more requests before the first response arrives, they are processed one at a time in arrival
+ * order and responses are written back in the same order.  Reading from a connection is suspended
+ * while maxPipeline requests are outstanding, and frames stay queued on their connection while the
+ * worker pool is saturated.  A connection's read buffer starts small and doubles, up to maxFrameSize,
+ * only while a frame does not fit; it goes back to the small size once the large frame is consumed.
+ */
+class SelectorServer {
+
+    static final int INITIAL_READ_BUFFER = 1024;
+
+    private static Logger logger = Logger.getLogger();
+
+    private final Simulator simulator;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private ThreadPoolExecutor workers;
+    private final Queue<Connection> updates = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> stalled = new LinkedHashSet<>(); // only touched by the selector thread
+    private volatile boolean stopped = true;
+
+    SelectorServer(Simulator simulator) {
+        this.simulator = simulator;
+    }
+
+    void start(int port) throws IOException {
+        int workerCount = simulator.getWorkers();
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(simulator.getWorkQueueSize()),
+                runnable -> {
+                    Thread thread = new Thread(null, runnable, simulator.getClass().getSimpleName());
+                    thread.setName(simulator.getClass().getSimpleName() + "-worker-" + thread.getId());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port), simulator.getBacklog());
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        stopped = false;
+        Thread thread = new Thread(this::run, simulator.getClass().getSimpleName() + "-selector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        stopped = true;
+        if (selector != null)
+            selector.wakeup();
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    @SuppressWarnings("squid:S1141")
+    private void run() {
+        try {
+            while (!stopped) {
+                selector.select(stalled.isEmpty() ? 0 : 10);
+                applyUpdates();
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    try {
+                        handle(key);
+                    } catch (IOException | RuntimeException e) {
+                        logger.trace(e.getMessage(), e);
+                        if (key.attachment() instanceof Connection)
+                            ((Connection) key.attachment()).close();
+                    }
+                }
+                retryStalled();
+            }
+        } catch (IOException e) {
+            throw logger.systemException(e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if (!key.isValid())
+            return;
+        if (key.isAcceptable()) {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null)
+                accept(channel);
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        if (key.isReadable())
+            connection.read();
+        if (key.isValid() && key.isWritable())
+            connection.write();
+        if (key.isValid())
+            connection.updateInterest();
+    }
+
+    // a connection that cannot be set up is closed and logged; the other pending accepts go ahead.
+    private void accept(SocketChannel channel) {
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("{} unable to accept connection: {}", simulator.getClass().getSimpleName(), e.getMessage());
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                Logger.suppress(ex);
+            }
+        }
+    }
+
+    private void applyUpdates() {
+        Connection connection;
+        while ((connection = updates.poll()) != null) {
+            if (connection.key.isValid())
+                connection.updateInterest();
+        }
+    }
+
+    private void retryStalled() {
+        if (stalled.isEmpty())
+            return;
+        Iterator<Connection> iterator = stalled.iterator();
+        while (iterator.hasNext()) {
+            Connection connection = iterator.next();
+            iterator.remove();
+            connection.dispatch();
+        }
+    }
+
+    private void shutdown() {
+        if (selector != null) {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    Logger.suppress(e);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                Logger.suppress(e);
+            }
+        }
+        if (workers != null)
+            workers.shutdownNow();
+        stalled.clear();
+        stopped = true;
+    }
+
+    private class Connection {
+        private final SocketChannel channel;
+        private final FrameDecoder decoder;
+        private SelectionKey key;
+        private ByteBuffer readBuffer;
+        private final Deque<byte[]> frames = new ArrayDeque<>(); // guarded by this
+        private boolean running;  // guarded by this, true while a worker drains frames
+        private final Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<>();
+        private volatile boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.decoder = simulator.newFrameDecoder();
+            this.readBuffer = ByteBuffer.allocate(initialCapacity());
+        }
+
+        private int initialCapacity() {
+            return Math.min(INITIAL_READ_BUFFER, simulator.getMaxFrameSize());
+        }
+
+        void read() throws IOException {
+            int n = channel.read(readBuffer);
+            if (n < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            int received = 0;
+            byte[] frame;
+            while ((frame = decoder.decode(readBuffer)) != null) {
+                synchronized (this) {
+                    frames.add(frame);
+                }
+                received++;
+            }
+            readBuffer.compact();
+            if (!readBuffer.hasRemaining())
+                grow();
+            else if (readBuffer.position() == 0 && readBuffer.capacity() > initialCapacity())
+                readBuffer = ByteBuffer.allocate(initialCapacity());
+            if (received > 0)
+                dispatch();
+        }
+
+        // the buffer is full in write mode; the rest of the frame is read on the next select.
+        private void grow() throws IOException {
+            int max = simulator.getMaxFrameSize();
+            if (readBuffer.capacity() >= max)
+                throw new IOException("Frame exceeds " + max + " bytes");
+            ByteBuffer larger = ByteBuffer.allocate((int) Math.min((long) readBuffer.capacity() * 2, max));
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+
+        void write() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = writes.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining())
+                    return;
+                writes.poll();
+            }
+        }
+
+        void updateInterest() {
+            int ops = 0;
+            synchronized (this) {
+                if (frames.size() < simulator.getMaxPipeline())
+                    ops |= SelectionKey.OP_READ;
+            }
+            if (!writes.isEmpty())
+                ops |= SelectionKey.OP_WRITE;
+            key.interestOps(ops);
+        }
+
+        // called from the selector thread only.
+        void dispatch() {
+            synchronized (this) {
+                if (running || frames.isEmpty() || closed)
+                    return;
+                running = true;
+            }
+            try {
+                workers.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                synchronized (this) {
+                    running = false;
+                }
+                stalled.add(this);
+            }
+        }
+
+        private void drain() {
+            while (!closed) {
+                byte[] frame;
+                synchronized (this) {
+                    frame = frames.poll();
+                    if (frame == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                try {
+                    byte[] response = simulator.handle(frame);
+                    if (response != null)
+                        writes.add(ByteBuffer.wrap(response));
+                } catch (Exception e) {
+                    logger.trace(e.getMessage(), e);
+                    close();
+                }
+                updates.add(this);
+                selector.wakeup();
+            }
+        }
+
+        void close() {
+            if (closed)
+                return;
+            closed = true;
+            if (key != null)
+                key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Logger.suppress(e);
+            }
+            logger.info("{} client exited", simulator.getClass().getSimpleName());
+        }
+    }
+}
@@ -24,6 +24,11 @@ import java.net.Socket;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+/**
+ * Base class for HSM simulators.  By default each connection is served by its own thread from threadPool,
+ * reading through process.  When nio is set the simulator runs on a SelectorServer instead: requests are
+ * split into frames by newFrameDecoder and dispatched to handle on a bounded pool of workers.
+ */
 public abstract class Simulator {
 
     static Logger logger = Logger.getLogger();
@@ -32,8 +37,17 @@ public abstract class Simulator {
     private int port = 7000;
     private boolean stopped = true;
     private ExecutorService threadPool;
+    private boolean nio = false;
+    private int workers = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    private int workQueueSize = 1024;
+    private int maxPipeline = 64;
+    private int maxFrameSize = 64 * 1024;
+    private int backlog = 1024;
+    private SelectorServer selectorServer;
 
     public boolean isStopped() {
+        if (selectorServer != null)
+            return selectorServer.isStopped();
         return stopped;
     }
 
@@ -53,7 +67,69 @@ public abstract class Simulator {
         this.threadPool = threadPool;
     }
 
+    public boolean isNio() {
+        return nio;
+    }
+
+    public void setNio(boolean nio) {
+        this.nio = nio;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getWorkQueueSize() {
+        return workQueueSize;
+    }
+
+    public void setWorkQueueSize(int workQueueSize) {
+        this.workQueueSize = workQueueSize;
+    }
+
+    /**
+     * Number of requests a connection may have outstanding before the simulator stops reading from it.
+     */
+    public int getMaxPipeline() {
+        return maxPipeline;
+    }
+
+    public void setMaxPipeline(int maxPipeline) {
+        this.maxPipeline = maxPipeline;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
     public void start() {
+        if (nio) {
+            selectorServer = new SelectorServer(this);
+            try {
+                selectorServer.start(port);
+            } catch (IOException e) {
+                selectorServer = null;
+                throw logger.systemException(e);
+            }
+            return;
+        }
+
         if (threadPool == null) {
             threadPool = Executors.newCachedThreadPool(runnable -> {
                 Thread thread = new Thread(null, runnable, getClass().getSimpleName());
@@ -88,6 +164,10 @@ public abstract class Simulator {
     }
 
     public void stop() {
+        if (selectorServer != null) {
+            selectorServer.stop();
+            selectorServer = null;
+        }
         if (serverSocket != null) {
             try {
                 serverSocket.close();
@@ -100,4 +180,15 @@ public abstract class Simulator {
     }
 
     protected abstract void process(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns a new decoder for a connection accepted in nio mode.
+     */
+    protected abstract FrameDecoder newFrameDecoder();
+
+    /**
+     * Processes one request frame in nio mode and returns the bytes to send back, or null for no response.
+     * Called from a worker thread; frames from the same connection are never processed concurrently.
+     */
+    protected abstract byte[] handle(byte[] frame) throws IOException;
 }
@@ -85,7 +85,7 @@ public class AKB {
     public byte[] decryptKey(byte[] keyEncryptionKey) throws GeneralSecurityException {
         byte[] headerBytes = getHeader().getBytes(StandardCharsets.UTF_8);
         IvParameterSpec ivSpec = new IvParameterSpec(headerBytes);
-        Cipher cipher = Cipher.getInstance(DES_EDE_CBC_NO_PADDING);
+        Cipher cipher = Ciphers.getInstance(DES_EDE_CBC_NO_PADDING);
         byte[] xorMKey = maskAKBEncryptionKey(keyEncryptionKey, Hex.toBytes("45")[0]);
         SecretKey mkey = new SecretKeySpec(xorMKey, ALGORITHM_DES_EDE);
         cipher.init(Cipher.DECRYPT_MODE, mkey, ivSpec);
@@ -140,7 +140,7 @@ public class AKB {
         byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
 
         IvParameterSpec ivSpec = new IvParameterSpec(headerBytes);
-        Cipher cipher = Cipher.getInstance(DES_EDE_CBC_NO_PADDING);
+        Cipher cipher = Ciphers.getInstance(DES_EDE_CBC_NO_PADDING);
         byte[] xorMKey = maskAKBEncryptionKey(keyEncryptionKey, Hex.toBytes("45")[0]);
         SecretKey mkey = new SecretKeySpec(xorMKey, ALGORITHM_DES_EDE);
         cipher.init(Cipher.ENCRYPT_MODE, mkey, ivSpec);
@@ -164,7 +164,7 @@ public class AKB {
 
     private String cbcMac(byte[] macKeyBytes, byte[] text) throws GeneralSecurityException {
         Key macKey = new SecretKeySpec(macKeyBytes, ALGORITHM_DES_EDE);
-        Cipher cipher = Cipher.getInstance(DES_EDE_CBC_NO_PADDING);
+        Cipher cipher = Ciphers.getInstance(DES_EDE_CBC_NO_PADDING);
 
         if (text.length % 8 != 0) 
             throw new GeneralSecurityException("data block size must be multiple of 8");
@@ -184,7 +184,7 @@ public class AKB {
 
     @SuppressWarnings("squid:S2278")
     public static String calculateCheckDigits(byte[] key) throws GeneralSecurityException {
-        Cipher chkCipher = Cipher.getInstance("DESede/ECB/NoPadding");
+        Cipher chkCipher = Ciphers.getInstance("DESede/ECB/NoPadding");
         chkCipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(normalizeKey(key), ALGORITHM_DES_EDE));
         byte[] chk = chkCipher.doFinal(new byte[8]);
         return Hex.toString(chk).substring(0, 4);
@@ -16,8 +16,12 @@
 
 package net.e6tech.elements.security.hsm.atalla.simulator;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.security.Hex;
+import net.e6tech.elements.security.hsm.DelimiterFrameDecoder;
+import net.e6tech.elements.security.hsm.FrameDecoder;
 import net.e6tech.elements.security.hsm.Simulator;
 import net.e6tech.elements.security.hsm.atalla.Message;
 
@@ -56,6 +60,8 @@ public class AtallaSimulator extends Simulator {
 
     private byte[] masterKey = Hex.toBytes(MASTER_KEY); // triple des is 24 bytes,
     protected Map<String, String> keys = new LinkedHashMap<>();
+    private int keyCacheSize = 1024;
+    private Cache<String, DecryptedKey> keyCache = newKeyCache(keyCacheSize);
 
     public AtallaSimulator() throws GeneralSecurityException {
         Field[] fields = AtallaSimulator.class.getDeclaredFields();
@@ -82,6 +88,26 @@ public class AtallaSimulator extends Simulator {
 
     public void setMasterKey(String mkey) {
         masterKey = Hex.toBytes(mkey);
+        keyCache.invalidateAll();
+    }
+
+    /**
+     * Maximum number of decrypted AKB keys kept by the simulator.  Keys are cached by key block
+     * and dropped when the master key changes.
+     */
+    public int getKeyCacheSize() {
+        return keyCacheSize;
+    }
+
+    public void setKeyCacheSize(int keyCacheSize) {
+        this.keyCacheSize = keyCacheSize;
+        keyCache = newKeyCache(keyCacheSize);
+    }
+
+    private static Cache<String, DecryptedKey> newKeyCache(int size) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .build();
     }
 
     byte[] masterKeyBytes() {
@@ -105,7 +131,19 @@ public class AtallaSimulator extends Simulator {
     }
 
     public byte[] decryptKey(AKB akb) throws GeneralSecurityException {
-        return akb.decryptKey(masterKey);
+        return decryptedKey(akb).key.clone();
+    }
+
+    private DecryptedKey decryptedKey(AKB akb) throws GeneralSecurityException {
+        DecryptedKey decrypted = keyCache.getIfPresent(akb.getKeyBlock());
+        if (decrypted == null) {
+            byte[] key = akb.decryptKey(masterKey);
+            decrypted = new DecryptedKey(key.clone(), akb.getCheckDigits());
+            keyCache.put(akb.getKeyBlock(), decrypted);
+        } else if (akb.checkDigits == null) {
+            akb.checkDigits = decrypted.checkDigits;
+        }
+        return decrypted;
     }
 
     public byte[] decrypt(AKB akb, String encrypted) throws GeneralSecurityException {
@@ -113,9 +151,8 @@ public class AtallaSimulator extends Simulator {
     }
 
     public byte[] decrypt(AKB akb, byte[] encrypted) throws GeneralSecurityException {
-        byte[] key =  akb.decryptKey(masterKey);
-        Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
-        SecretKey secretKey = new SecretKeySpec(AKB.normalizeKey(key), "DESede");
+        SecretKey secretKey = decryptedKey(akb).secretKey;
+        Cipher cipher = Ciphers.getInstance("DESede/ECB/NoPadding");
         cipher.init(Cipher.DECRYPT_MODE, secretKey);
         return cipher.doFinal(encrypted);
     }
@@ -125,9 +162,8 @@ public class AtallaSimulator extends Simulator {
     }
 
     public byte[] encrypt(AKB akb, byte[] clearText) throws GeneralSecurityException {
-        byte[] key =  akb.decryptKey(masterKey);
-        Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
-        SecretKey secretKey = new SecretKeySpec(AKB.normalizeKey(key), "DESede");
+        SecretKey secretKey = decryptedKey(akb).secretKey;
+        Cipher cipher = Ciphers.getInstance("DESede/ECB/NoPadding");
         cipher.init(Cipher.ENCRYPT_MODE, secretKey);
         return cipher.doFinal(clearText);
     }
@@ -156,6 +192,21 @@ public class AtallaSimulator extends Simulator {
         }
     }
 
+    @Override
+    protected FrameDecoder newFrameDecoder() {
+        return new DelimiterFrameDecoder();
+    }
+
+    @Override
+    protected byte[] handle(byte[] frame) throws IOException {
+        String line = new String(frame).trim();
+        if (line.isEmpty())
+            return null;
+        Command request = Command.createInstance(line, this);
+        Message response = request.process();
+        return (response + System.lineSeparator()).getBytes();
+    }
+
     @SuppressWarnings("squid:S106")
     public static void main(String ... args) throws Exception  {
         AtallaSimulator simulator = new AtallaSimulator();
@@ -176,4 +227,16 @@ public class AtallaSimulator extends Simulator {
 
         simulator.start();
     }
+
+    private static class DecryptedKey {
+        private final byte[] key;
+        private final String checkDigits;
+        private final SecretKey secretKey;
+
+        DecryptedKey(byte[] key, String checkDigits) throws GeneralSecurityException {
+            this.key = key;
+            this.checkDigits = checkDigits;
+            this.secretKey = new SecretKeySpec(AKB.normalizeKey(key), "DESede");
+        }
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.security.hsm.atalla.simulator;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per thread Cipher instances, so that the simulator does not pay for a provider lookup on every
+ * operation.  A cipher obtained here must be initialized before use and must not be held across
+ * a call that may obtain the same transformation.
+ */
+final class Ciphers {
+
+    private static final ThreadLocal<Map<String, Cipher>> ciphers = ThreadLocal.withInitial(HashMap::new);
+
+    private Ciphers() {
+    }
+
+    static Cipher getInstance(String transformation) throws GeneralSecurityException {
+        Map<String, Cipher> map = ciphers.get();
+        Cipher cipher = map.get(transformation);
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation);
+            map.put(transformation, cipher);
+        }
+        return cipher;
+    }
+}
@@ -25,26 +25,27 @@ import java.security.GeneralSecurityException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
 /**
  * Created by futeh.
  */
 public abstract class Command extends Message {
-    private static Map<String, Class<? extends Command>> commands = new HashMap<>();
+    private static Map<String, Supplier<Command>> commands = new HashMap<>();
 
     static {
-        commands.put("00", Echo.class);
-        commands.put("5D", GenerateCVV.class);
-        commands.put("30", EncryptPIN.class);
-        commands.put("37", ChangePIN.class);
-        commands.put("32", VerifyPIN.class);
-        commands.put("31", TranslatePIN.class);
-        commands.put("7E", CheckDigits.class);
-        commands.put("11B", ImportWorkingKey.class);
-        commands.put("335", TranslatePINBlock.class);
-        commands.put("350", VerifyARQC.class);
-        commands.put("351", EMVPINChange.class);
-        commands.put("352", EMVGenerateMAC.class);
+        commands.put("00", Echo::new);
+        commands.put("5D", GenerateCVV::new);
+        commands.put("30", EncryptPIN::new);
+        commands.put("37", ChangePIN::new);
+        commands.put("32", VerifyPIN::new);
+        commands.put("31", TranslatePIN::new);
+        commands.put("7E", CheckDigits::new);
+        commands.put("11B", ImportWorkingKey::new);
+        commands.put("335", TranslatePINBlock::new);
+        commands.put("350", VerifyARQC::new);
+        commands.put("351", EMVPINChange::new);
+        commands.put("352", EMVGenerateMAC::new);
     }
 
     protected AtallaSimulator simulator;
@@ -59,7 +60,7 @@ public abstract class Command extends Message {
     public static Command createInstance(String message, AtallaSimulator simulator) {
         try {
             Message msg = new Message(message);
-            Command request = commands.get(msg.getField(0)).getDeclaredConstructor().newInstance();
+            Command request = commands.get(msg.getField(0)).get();
             request.simulator = simulator;
             request.fields = msg.getFields();
             return request;
@@ -50,7 +50,7 @@ public class CryptoUtil {
     }
 
     public static byte[] encrypt(SecretKey secretKey, byte[] clearText) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(DES_EDE_ECB_NO_PADDING);
+        Cipher cipher = Ciphers.getInstance(DES_EDE_ECB_NO_PADDING);
         cipher.init(Cipher.ENCRYPT_MODE, secretKey);
         return cipher.doFinal(clearText);
     }
@@ -61,7 +61,7 @@ public class CryptoUtil {
     }
 
     public static String mac(SecretKey macKey, byte[] text, int resultLength) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(DES_EDE_CBC_NO_PADDING);
+        Cipher cipher = Ciphers.getInstance(DES_EDE_CBC_NO_PADDING);
 
         if (text.length % 8 != 0)
             throw new GeneralSecurityException("data block size must be multiple of 8");
@@ -136,7 +136,7 @@ public class CryptoUtil {
         byte[] rightDiverse = Arrays.copyOf(diverse, diverse.length);
         rightDiverse[2] = (byte) 0x0F;
 
-        Cipher cipher = Cipher.getInstance(DES_EDE_ECB_NO_PADDING);
+        Cipher cipher = Ciphers.getInstance(DES_EDE_ECB_NO_PADDING);
         cipher.init(Cipher.ENCRYPT_MODE, iccMasterKey);
         byte[] leftSK = cipher.doFinal(leftDiverse);
         cipher.init(Cipher.ENCRYPT_MODE, iccMasterKey);
@@ -171,7 +171,7 @@ public class CryptoUtil {
     }
 
     public static String calculateCheckDigits(SecretKey secretKey, int checkDigitHexLength) throws GeneralSecurityException {
-        Cipher chkCipher = Cipher.getInstance(DES_EDE_ECB_NO_PADDING);
+        Cipher chkCipher = Ciphers.getInstance(DES_EDE_ECB_NO_PADDING);
         chkCipher.init(Cipher.ENCRYPT_MODE, secretKey);
         byte[] chk = chkCipher.doFinal(new byte[8]);
         return Hex.toString(chk).substring(0, checkDigitHexLength);
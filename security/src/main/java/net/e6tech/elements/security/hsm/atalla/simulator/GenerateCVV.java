@@ -37,7 +37,7 @@ public class GenerateCVV extends Command {
 
         try {
             AKB akb = new AKB(getField(2));
-            byte[] kcvv = akb.decryptKey(simulator.masterKeyBytes());
+            byte[] kcvv = simulator.decryptKey(akb);
             String cvv = generateVisaCVV(getField(4), kcvv, 8);
             return "6D#" + cvv + "#" + akb.checkDigits + "##";
         } catch (GeneralSecurityException e) {
@@ -64,7 +64,7 @@ public class GenerateCVV extends Command {
 
         // single des encrypt blockA and then xor with blockB
         SecretKeySpec key = new SecretKeySpec(desKey, 0, 8, "DES");
-        Cipher cipher = Cipher.getInstance("DES/ECB/NoPadding");
+        Cipher cipher = Ciphers.getInstance("DES/ECB/NoPadding");
         cipher.init(Cipher.ENCRYPT_MODE, key);
         byte[] encrypted = cipher.doFinal(blockA);
         for (int i = 0 ; i < 8 ; i++)
@@ -75,7 +75,7 @@ public class GenerateCVV extends Command {
         System.arraycopy(desKey, 0, tdesKey, 0, 16);
         System.arraycopy(desKey, 0, tdesKey, 16, 8);
         key = new SecretKeySpec(tdesKey, "DESede");
-        cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+        cipher = Ciphers.getInstance("DESede/ECB/NoPadding");
         cipher.init(Cipher.ENCRYPT_MODE, key);
         encrypted = cipher.doFinal(encrypted);
 
@@ -76,7 +76,7 @@ public class IBM3624PINOffset {
         byte[] pvvKeyNormalized = pvvKey;
         pvvKeyNormalized = AKB.normalizeKey(pvvKeyNormalized);
         SecretKey pvv = new SecretKeySpec(pvvKeyNormalized, "DESede");
-        Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+        Cipher cipher = Ciphers.getInstance("DESede/ECB/NoPadding");
 
         StringBuilder builder = new StringBuilder();
         String paddedAcctNum = StringUtil.padRight(acctNum, 16, pad);
@@ -163,7 +163,7 @@ class MasterCardARQC {
         rightDiverse[2] = (byte) 0x0F;
 
         try {
-            Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+            Cipher cipher = Ciphers.getInstance("DESede/ECB/NoPadding");
             cipher.init(Cipher.ENCRYPT_MODE, iccMasterKey);
             byte[] leftSK = cipher.doFinal(leftDiverse);
             cipher.init(Cipher.ENCRYPT_MODE, iccMasterKey);
@@ -194,7 +194,7 @@ class MasterCardARQC {
 
         Cipher cipher;
         try {
-            cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+            cipher = Ciphers.getInstance("DESede/ECB/NoPadding");
             cipher.init(Cipher.ENCRYPT_MODE, leftSessionKey);
 
             byte[] input = new byte[8];
@@ -227,7 +227,7 @@ class MasterCardARQC {
             bytes[i] = (byte)(bytes[i] ^ arcBytes[i]);
         }
         try {
-            Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+            Cipher cipher = Ciphers.getInstance("DESede/ECB/NoPadding");
             if (derivationType == 0) {
                 cipher.init(Cipher.ENCRYPT_MODE, iccMasterKey);
             } else if (derivationType == 2) {
@@ -104,7 +104,7 @@ class VisaCVN10ARQC extends MasterCardARQC {
         }
         try {
             // use left session key and right session key, which are the diversified key of ICC VSDC_MDK (IMK_ARQC) key with PAN and Pan sequence
-            Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+            Cipher cipher = Ciphers.getInstance("DESede/ECB/NoPadding");
             cipher.init(Cipher.ENCRYPT_MODE, leftSessionKey);
             bytes = cipher.doFinal(bytes);
             cipher.init(Cipher.DECRYPT_MODE, rightSessionKey);
@@ -54,7 +54,7 @@ public class VisaPVV {
             throw new GeneralSecurityException("invalid pvki, must be greater than or equal to 0 and less than 10.");
         byte[] pvvKeyBytes = AKB.normalizeKey(pvvKey);
         SecretKey pvv = new SecretKeySpec(pvvKeyBytes, "DESede");
-        Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+        Cipher cipher = Ciphers.getInstance("DESede/ECB/NoPadding");
         cipher.init(Cipher.ENCRYPT_MODE, pvv);
         byte[] clearTex = Hex.toBytes(partialPan + pvki + pin);
         byte[] encrypted = cipher.doFinal(clearTex);
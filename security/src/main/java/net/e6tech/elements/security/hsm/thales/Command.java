@@ -64,14 +64,21 @@ public abstract class Command {
     private boolean enveloped = false;
 
     public static Command fromBytes(byte[] bytes, int headerLength) {
-        int offset = 1 + LENGTH_BYTES + headerLength; // first byte is stx
+        return fromBytes(bytes, headerLength, false);
+    }
+
+    public static Command fromBytes(byte[] bytes, int headerLength, boolean enveloped) {
+        int offset = (enveloped ? 1 : 0) + LENGTH_BYTES + headerLength; // first byte is stx when enveloped
         // command
         byte[] commandBytes = Arrays.copyOfRange(bytes, offset, offset + 2);
         String command = new String(commandBytes, 0, 2, StandardCharsets.US_ASCII);
         Class<? extends Command> cls = commandClass.get(command);
+        if (cls == null)
+            throw new SystemException("Unsupported command " + command);
         try {
             Command cmd = cls.getDeclaredConstructor().newInstance();
             return cmd.headerLength(headerLength)
+                    .enveloped(enveloped)
                     .decode(bytes);
         } catch (Exception e) {
             throw new SystemException(e);
@@ -220,6 +227,10 @@ public abstract class Command {
         }
     }
 
+    public byte[] toBytes() {
+        return encode();
+    }
+
     protected byte[] encode() {
         int envelopeSize = (enveloped) ? 3 : 0;
         int envelopeOffset = (enveloped) ? 1 : 0;
@@ -284,6 +295,10 @@ public abstract class Command {
     protected void unpackFields() {
     }
 
+    protected String unpackRemaining() {
+        return unpackString(unpacked.remaining());
+    }
+
     protected String unpackString(int len) {
         byte[] buffer = new byte[len];
         unpacked.get(buffer, 0, len);
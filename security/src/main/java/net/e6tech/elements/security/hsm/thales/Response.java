@@ -16,8 +16,12 @@
 
 package net.e6tech.elements.security.hsm.thales;
 
+/**
+ * A response to a command: the error code followed by the response fields, if any.
+ */
 public class Response extends Command {
     private String errorCode;
+    private String data;
 
     public String getErrorCode() {
         return errorCode;
@@ -26,4 +30,25 @@ public class Response extends Command {
     public void setErrorCode(String errorCode) {
         this.errorCode = errorCode;
     }
+
+    public String getData() {
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    @Override
+    protected void packFields() {
+        pack(errorCode);
+        if (data != null)
+            pack(data);
+    }
+
+    @Override
+    protected void unpackFields() {
+        errorCode = unpackString(2);
+        data = unpackRemaining();
+    }
 }
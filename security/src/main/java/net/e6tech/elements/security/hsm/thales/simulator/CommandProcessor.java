@@ -20,16 +20,24 @@ import net.e6tech.elements.common.util.SystemException;
 import net.e6tech.elements.security.hsm.thales.Command;
 import net.e6tech.elements.security.hsm.thales.Echo;
 import net.e6tech.elements.security.hsm.thales.GenerateCVV;
+import net.e6tech.elements.security.hsm.thales.Response;
 
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Produces the simulator's response to a command.  Commands without a processor of their own are
+ * answered with error code 68, command disabled.
+ */
 public class CommandProcessor<T extends Command> {
 
+    public static final String NO_ERROR = "00";
+    public static final String COMMAND_DISABLED = "68";
+
     private static Map<Class<? extends Command>, Class<? extends CommandProcessor>> processors = new HashMap<>();
 
     static {
-        processors.put(Echo.class, CommandProcessor.class);  // this need to be a subclass of CommandProcessor
+        processors.put(Echo.class, EchoProcessor.class);
         processors.put(GenerateCVV.class, CommandProcessor.class);
     }
 
@@ -54,4 +62,18 @@ public class CommandProcessor<T extends Command> {
     public void setCommand(T command) {
         this.command = command;
     }
+
+    public Response process() {
+        return response(COMMAND_DISABLED);
+    }
+
+    protected Response response(String errorCode) {
+        Response response = new Response();
+        response.command(command.response())
+                .header(command.getHeader())
+                .headerLength(command.getHeaderLength())
+                .enveloped(command.isEnveloped());
+        response.setErrorCode(errorCode);
+        return response;
+    }
 }
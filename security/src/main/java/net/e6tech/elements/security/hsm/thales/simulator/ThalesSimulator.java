@@ -17,6 +17,8 @@
 package net.e6tech.elements.security.hsm.thales.simulator;
 
 import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.security.hsm.FrameDecoder;
+import net.e6tech.elements.security.hsm.LengthFieldFrameDecoder;
 import net.e6tech.elements.security.hsm.Simulator;
 import net.e6tech.elements.security.hsm.thales.Command;
 
@@ -45,12 +47,18 @@ public class ThalesSimulator extends Simulator {
                 int stx = 0x02;
                 if (enveloped) {
                     stx = in.read(); // STX
+                    if (stx < 0)
+                        return;
                     envelopeSize = 3;
                     envelopeOffset = 1;
                 }
 
                 // read length
-                read(in, length, 0);
+                try {
+                    read(in, length, 0);
+                } catch (EOFException ex) {
+                    return; // client closed the connection between frames
+                }
 
                 short len = Command.decodeLength(length);
                 byte[] buffer = new byte[len + envelopeSize + Command.LENGTH_BYTES];
@@ -63,17 +71,30 @@ public class ThalesSimulator extends Simulator {
                     buffer[i + envelopeOffset] = length[i];
                 }
 
-                Command cmd = Command.fromBytes(buffer, headerLength);
-                CommandProcessor processor = CommandProcessor.forCommand(cmd);
-
+                out.write(handle(buffer));
+                out.flush();
             }
         }
     }
 
+    @Override
+    protected FrameDecoder newFrameDecoder() {
+        // enveloped frames are STX, length, payload, LRC and ETX
+        return enveloped ? new LengthFieldFrameDecoder(Command.LENGTH_BYTES, 1, 2) : new LengthFieldFrameDecoder(Command.LENGTH_BYTES);
+    }
+
+    @Override
+    protected byte[] handle(byte[] frame) throws IOException {
+        Command cmd = Command.fromBytes(frame, headerLength, enveloped);
+        return CommandProcessor.forCommand(cmd).process().toBytes();
+    }
+
     protected void read(InputStream in, byte[] buffer, int offset) throws IOException {
         int read = offset;
         do {
             int r = in.read(buffer, read, buffer.length - read);
+            if (r < 0)
+                throw new EOFException();
             read += r;
         } while (read < buffer.length);
     }
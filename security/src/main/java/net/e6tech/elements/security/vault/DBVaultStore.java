@@ -29,18 +29,39 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 
 import static net.e6tech.elements.security.vault.Constants.mapper;
 
 /**
  * Created by futeh on 1/4/16.
+ *
+ * In batched mode reads go through a small pool of dedicated connections (poolSize) whose prepared
+ * statements are reused; an idle connection is checked with isValid(validationTimeout) before it is reused.  getSecrets fetches many aliases per round trip.  A cached latest secret that is older than
+ * latestRefreshPeriod is revalidated against the version column instead of being reloaded.
+ *
+ * When changeTableName is set, every save, remove and restore bumps a counter per alias in that table,
+ * e.g. create table h3_vault_change(name varchar(255), alias varchar(255), changed bigint, primary key(name, alias)), and
+ * readers poll it every changePollPeriod to evict only the aliases that changed; cached secrets are
+ * otherwise kept until evicted.
  */
 @SuppressWarnings({"squid:S1141", "squid:S3776", "squid:S1192", "squid:S1149", "squid:S00112", "squid:S1066", "squid:S1188", "squid:S134"})
 public class DBVaultStore implements VaultStore {
 
     private String tableName = "h3_vault";
     private long latestRefreshPeriod = 10 * 60 * 1000L;
+    private boolean batched = false;
+    private int batchSize = 100;
+    private String changeTableName;
+    private long changePollPeriod = 1000L;
+    private int poolSize = 4;
+    private int validationTimeout = 5; // seconds
+    private StatementCache statementCache = new StatementCache();
 
     private Map<String, DBVault> vaults = new HashMap<>();
     private DataSource dataSource;
@@ -71,6 +92,54 @@ public class DBVaultStore implements VaultStore {
         this.latestRefreshPeriod = latestRefreshPeriod;
     }
 
+    public boolean isBatched() {
+        return batched;
+    }
+
+    public void setBatched(boolean batched) {
+        this.batched = batched;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public String getChangeTableName() {
+        return changeTableName;
+    }
+
+    public void setChangeTableName(String changeTableName) {
+        this.changeTableName = changeTableName;
+    }
+
+    public long getChangePollPeriod() {
+        return changePollPeriod;
+    }
+
+    public void setChangePollPeriod(long changePollPeriod) {
+        this.changePollPeriod = changePollPeriod;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    public void setValidationTimeout(int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
     public String getTableName() {
         return tableName;
     }
@@ -188,12 +257,91 @@ public class DBVaultStore implements VaultStore {
 
     @Override
     public void close() throws IOException {
+        statementCache.close();
         if (dataSource instanceof Closeable) {
             Closeable closeable = (Closeable) dataSource;
             closeable.close();
         }
     }
 
+    private <T> T query(String sql, StatementCallback<T> callback) {
+        try {
+            return getRetry().retry(() -> batched ? statementCache.execute(sql, callback) : executeOnce(sql, callback));
+        } catch (Throwable th) {
+            throw new SystemException(th);
+        }
+    }
+
+    private <T> T executeOnce(String sql, StatementCallback<T> callback) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            T result = callback.apply(pstmt);
+            if (!connection.getAutoCommit())
+                connection.commit();
+            return result;
+        }
+    }
+
+    // number of parameters for an in list of n aliases, rounded up so that only a few distinct statements exist.
+    int slots(int n) {
+        int slots = 1;
+        while (slots < n)
+            slots <<= 1;
+        return Math.min(slots, Math.max(batchSize, n));
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0)
+                builder.append(',');
+            builder.append('?');
+        }
+        return builder.toString();
+    }
+
+    private void markChanged(Connection connection, String vaultName, String alias) throws SQLException {
+        if (changeTableName == null)
+            return;
+        if (bumpChanged(connection, vaultName, alias))
+            return;
+        // some databases, e.g. PostgreSQL, abort the whole transaction on a failed statement unless it is rolled back to a savepoint.
+        Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+        try (PreparedStatement insert = connection.prepareStatement("insert into " + changeTableName + "(name, alias, changed) values(?,?,?)")) {
+            insert.setString(1, vaultName);
+            insert.setString(2, alias);
+            insert.setLong(3, 1L);
+            insert.executeUpdate();
+        } catch (SQLException ex) {
+            // another writer inserted the row first, see the primary key on (name, alias)
+            if (!isDuplicateKey(ex))
+                throw ex;
+            if (savepoint != null) {
+                connection.rollback(savepoint);
+                savepoint = null;
+            }
+            if (!bumpChanged(connection, vaultName, alias))
+                throw ex;
+        } finally {
+            if (savepoint != null)
+                connection.releaseSavepoint(savepoint);
+        }
+    }
+
+    private boolean bumpChanged(Connection connection, String vaultName, String alias) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement("update " + changeTableName + " set changed = changed + 1 where name = ? and alias = ? ")) {
+            update.setString(1, vaultName);
+            update.setString(2, alias);
+            return update.executeUpdate() > 0;
+        }
+    }
+
+    // SQLState class 23 is integrity constraint violation; not every driver throws the subclass.
+    static boolean isDuplicateKey(SQLException ex) {
+        return ex instanceof SQLIntegrityConstraintViolationException
+                || (ex.getSQLState() != null && ex.getSQLState().startsWith("23"));
+    }
+
     public String writeString() throws IOException {
         Connection connection = null;
         PreparedStatement pstmt = null;
@@ -250,8 +398,11 @@ public class DBVaultStore implements VaultStore {
     private class DBVault implements Vault {
         List<Secret> addedSecrets = new ArrayList<>();
         String name;
-        Map<String, SortedMap<String, Secret>> cache = new HashMap<>();
-        Map<String, LatestSecret> latestSecret = new Hashtable<>();
+        Map<String, Map<String, Secret>> cache = new ConcurrentHashMap<>();
+        Map<String, LatestSecret> latestSecret = new ConcurrentHashMap<>();
+        Map<String, Long> changeMarks = new ConcurrentHashMap<>();
+        volatile long lastChangePoll;
+        volatile boolean changesPolled;
 
         DBVault(String name) {
             this.name = name;
@@ -264,75 +415,50 @@ public class DBVaultStore implements VaultStore {
 
         @Override
         public Secret getSecret(String alias, String version) {
+            pollChanges();
             if (version != null) {
-                synchronized (cache) {
-                    SortedMap<String, Secret> versions = cache.get(alias);
-                    if (versions != null) {
-                        Secret secret = versions.get(version);
-                        if (secret != null)
-                            return secret;
-                    }
+                Map<String, Secret> versions = cache.get(alias);
+                if (versions != null) {
+                    Secret secret = versions.get(version);
+                    if (secret != null)
+                        return secret;
                 }
+            } else if (batched) {
+                return getSecrets(Collections.singletonList(alias)).get(alias);
             } else {
                 LatestSecret l = latestSecret.get(alias);
-                if (l != null && l.timestamp > System.currentTimeMillis() - latestRefreshPeriod) {
+                if (l != null && isFresh(l)) {
                     return l.secret;
                 }
             }
 
-            Secret secret = null;
-            try {
-                secret = getRetry().retry(() -> {
-                    Secret ret = null;
-                    Connection connection = null;
-                    PreparedStatement select = null;
-                    ResultSet rs = null;
+            String sql;
+            if (version != null) {
+                sql = "select v.secret from " + tableName + " v where v.name = ? and v.alias = ? and v.version = ? ";
+            } else {
+                sql = "select v.secret from " + tableName + " v where v.name = ? and v.alias = ? " +
+                        "and v.version = (select max(v1.version) from " + tableName + " v1 where v1.name = ? and v1.alias = ?)";
+            }
+            Secret secret = query(sql, select -> {
+                select.setString(1, name);
+                select.setString(2, alias);
+                if (version != null) {
+                    select.setLong(3, Long.parseLong(version));
+                } else {
+                    select.setString(3, name);
+                    select.setString(4, alias);
+                }
+                try (ResultSet rs = select.executeQuery()) {
+                    String str = null;
+                    if (rs.next()) str = rs.getString(1);
+                    if (str == null) return null;
                     try {
-                        connection = dataSource.getConnection();
-                        if (version != null) {
-                            select = connection.prepareStatement("select v.secret from " + tableName + " v where v.name = ? and v.alias = ? and v.version = ? ");
-                            select.setLong(3, Long.parseLong(version));
-                        } else {
-                            select = connection.prepareStatement("select v.secret from " + tableName + " v where v.name = ? and v.alias = ? " +
-                                    "and v.version = (select max(v1.version) from " + tableName + " v1 where v1.name = ? and v1.alias = ?)");
-                            select.setString(3, name);
-                            select.setString(4, alias);
-                        }
-                        select.setString(1, name);
-                        select.setString(2, alias);
-
-                        rs = select.executeQuery();
-                        String str = null;
-                        if (rs.next()) str = rs.getString(1);
-                        if (str == null) return null;
-                        try {
-                            ret = mapper.readValue(str, Secret.class);
-                        } catch (IOException e) {
-                            throw new SystemException(e);
-                        }
-                    } finally {
-                        if (rs != null) try {
-                            rs.close();
-                        } catch (SQLException ex) {
-                            Logger.suppress(ex);
-                        }
-                        if (select != null) try {
-                            select.close();
-                        } catch (SQLException ex) {
-                            Logger.suppress(ex);
-                        }
-                        if (connection != null) try {
-                            connection.commit();
-                            connection.close();
-                        } catch (SQLException ex) {
-                            Logger.suppress(ex);
-                        }
+                        return mapper.readValue(str, Secret.class);
+                    } catch (IOException e) {
+                        throw new SystemException(e);
                     }
-                    return ret;
-                });
-            } catch (Throwable th) {
-                throw new SystemException(th);
-            }
+                }
+            });
 
             updateCache(secret);
             if (version == null) {
@@ -341,6 +467,146 @@ public class DBVaultStore implements VaultStore {
             return secret;
         }
 
+        @Override
+        public Map<String, Secret> getSecrets(Collection<String> aliases) {
+            pollChanges();
+            Map<String, Secret> found = new HashMap<>();
+            List<String> missing = new ArrayList<>();
+            Map<String, LatestSecret> stale = new HashMap<>();
+            for (String alias : new LinkedHashSet<>(aliases)) {
+                LatestSecret l = latestSecret.get(alias);
+                if (l == null)
+                    missing.add(alias);
+                else if (isFresh(l))
+                    found.put(alias, l.secret);
+                else
+                    stale.put(alias, l);
+            }
+
+            // revalidate stale entries against the version column
+            if (!stale.isEmpty()) {
+                Map<String, Long> current = latestVersions(new ArrayList<>(stale.keySet()));
+                for (Map.Entry<String, LatestSecret> entry : stale.entrySet()) {
+                    Secret secret = entry.getValue().secret;
+                    Long version = current.get(entry.getKey());
+                    if (version != null && version == Long.parseLong(secret.version())) {
+                        updateLatest(secret);
+                        found.put(entry.getKey(), secret);
+                    } else {
+                        missing.add(entry.getKey());
+                    }
+                }
+            }
+
+            if (!missing.isEmpty()) {
+                for (Secret secret : fetchLatest(missing)) {
+                    updateCache(secret);
+                    updateLatest(secret);
+                    found.put(secret.alias(), secret);
+                }
+            }
+
+            Map<String, Secret> result = new LinkedHashMap<>();
+            for (String alias : aliases) {
+                Secret secret = found.get(alias);
+                if (secret != null)
+                    result.put(alias, secret);
+            }
+            return result;
+        }
+
+        private boolean isFresh(LatestSecret l) {
+            // with a change table, entries stay valid until pollChanges evicts them.
+            return changeTableName != null || l.timestamp > System.currentTimeMillis() - latestRefreshPeriod;
+        }
+
+        private List<Secret> fetchLatest(List<String> aliases) {
+            List<Secret> secrets = new ArrayList<>();
+            for (int i = 0; i < aliases.size(); i += batchSize) {
+                List<String> chunk = aliases.subList(i, Math.min(i + batchSize, aliases.size()));
+                int slots = slots(chunk.size());
+                String sql = "select v.secret from " + tableName + " v where v.name = ? and v.alias in (" + placeholders(slots) + ") " +
+                        "and v.version = (select max(v1.version) from " + tableName + " v1 where v1.name = v.name and v1.alias = v.alias)";
+                secrets.addAll(query(sql, pstmt -> {
+                    setAliases(pstmt, chunk, slots);
+                    List<Secret> list = new ArrayList<>();
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            String str = rs.getString(1);
+                            if (str == null)
+                                continue;
+                            try {
+                                list.add(mapper.readValue(str, Secret.class));
+                            } catch (IOException e) {
+                                throw new SystemException(e);
+                            }
+                        }
+                    }
+                    return list;
+                }));
+            }
+            return secrets;
+        }
+
+        private Map<String, Long> latestVersions(List<String> aliases) {
+            Map<String, Long> versions = new HashMap<>();
+            for (int i = 0; i < aliases.size(); i += batchSize) {
+                List<String> chunk = aliases.subList(i, Math.min(i + batchSize, aliases.size()));
+                int slots = slots(chunk.size());
+                String sql = "select v.alias, max(v.version) from " + tableName + " v where v.name = ? and v.alias in (" + placeholders(slots) + ") group by v.alias";
+                versions.putAll(query(sql, pstmt -> {
+                    setAliases(pstmt, chunk, slots);
+                    Map<String, Long> map = new HashMap<>();
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next())
+                            map.put(rs.getString(1), rs.getLong(2));
+                    }
+                    return map;
+                }));
+            }
+            return versions;
+        }
+
+        // unused slots repeat the last alias.
+        private void setAliases(PreparedStatement pstmt, List<String> aliases, int slots) throws SQLException {
+            pstmt.setString(1, name);
+            for (int j = 0; j < slots; j++)
+                pstmt.setString(j + 2, aliases.get(Math.min(j, aliases.size() - 1)));
+        }
+
+        private void pollChanges() {
+            if (changeTableName == null)
+                return;
+            long now = System.currentTimeMillis();
+            if (now - lastChangePoll < changePollPeriod)
+                return;
+            lastChangePoll = now;
+            Map<String, Long> marks = query("select c.alias, c.changed from " + changeTableName + " c where c.name = ? ", pstmt -> {
+                pstmt.setString(1, name);
+                Map<String, Long> map = new HashMap<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next())
+                        map.put(rs.getString(1), rs.getLong(2));
+                }
+                return map;
+            });
+
+            boolean initialized = changesPolled;
+            for (Map.Entry<String, Long> entry : marks.entrySet()) {
+                Long previous = changeMarks.put(entry.getKey(), entry.getValue());
+                if (initialized && !entry.getValue().equals(previous)) {
+                    if ("*".equals(entry.getKey())) {
+                        cache.clear();
+                        latestSecret.clear();
+                    } else {
+                        cache.remove(entry.getKey());
+                        latestSecret.remove(entry.getKey());
+                    }
+                }
+            }
+            changesPolled = true;
+        }
+
         @Override
         public void addSecret(Secret secret) {
             addedSecrets.add(secret);
@@ -366,13 +632,14 @@ public class DBVaultStore implements VaultStore {
                             removeVersion.setString(1, name);
                             removeVersion.setString(2, alias);
                             removeVersion.setLong(3, Long.parseLong(version));
-                            removeAll.executeUpdate();
+                            removeVersion.executeUpdate();
                         } else {
                             removeAll = connection.prepareStatement("delete from " + tableName + " where name = ? and alias = ?");
                             removeAll.setString(1, name);
                             removeAll.setString(2, alias);
                             removeAll.executeUpdate();
                         }
+                        markChanged(connection, name, alias);
                         connection.commit();
                     } catch (SQLException ex) {
                         exception = ex;
@@ -405,36 +672,24 @@ public class DBVaultStore implements VaultStore {
                 }
             }
 
-            synchronized (cache) {
-                SortedMap<String, Secret> versions = cache.get(alias);
-                if (versions != null) {
-                    if (version == null)
-                        cache.remove(alias);
-                    else
-                        versions.remove(version);
-                }
+            if (version == null) {
+                cache.remove(alias);
+            } else {
+                Map<String, Secret> versions = cache.get(alias);
+                if (versions != null)
+                    versions.remove(version);
             }
 
-            synchronized (latestSecret) {
-                LatestSecret latest = latestSecret.get(alias);
-                if (latest != null) {
-                    if (version == null || version.equals(latest.secret.version()))
-                        latestSecret.remove(alias);
-                }
-            }
+            LatestSecret latest = latestSecret.get(alias);
+            if (latest != null && (version == null || version.equals(latest.secret.version())))
+                latestSecret.remove(alias, latest);
         }
 
         private void updateCache(Secret secret) {
             if (secret == null)
                 return;
-            synchronized (cache) {
-                SortedMap<String, Secret> versions = cache.get(secret.alias());
-                if (versions == null) {
-                    versions = new TreeMap<>();
-                    cache.put(secret.alias(), versions);
-                }
-                versions.put(secret.version(), secret);
-            }
+            cache.computeIfAbsent(secret.alias(), key -> new ConcurrentHashMap<>())
+                    .put(secret.version(), secret);
         }
 
         private void updateLatest(Secret secret) {
@@ -547,6 +802,11 @@ public class DBVaultStore implements VaultStore {
 
         public void restore(Connection connection, String version) {
             copy(connection, name + "." + version, name);
+            try {
+                markChanged(connection, name, "*");
+            } catch (SQLException ex) {
+                throw new SystemException(ex);
+            }
             latestSecret.clear();
             cache.clear();
         }
@@ -632,6 +892,7 @@ public class DBVaultStore implements VaultStore {
                         } catch (JsonProcessingException e) {
                             throw new SystemException(e);
                         }
+                        markChanged(connection, name, secret.alias());
                         if (c == 0) {
                             insert.setString(1, name);
                             insert.setString(2, secret.alias());
@@ -684,4 +945,123 @@ public class DBVaultStore implements VaultStore {
             this.secret = secret;
         }
     }
+
+    @FunctionalInterface
+    private interface StatementCallback<T> {
+        T apply(PreparedStatement pstmt) throws SQLException;
+    }
+
+    /*
+     * Up to poolSize dedicated connections, each with its prepared statements keyed by sql.  An idle holder whose
+     * connection is no longer valid is closed instead of reused.  A failure closes only the holder that failed so that the next call, or the retry, starts on a fresh one;
+     * callers on other holders are not affected.  close() closes idle holders and retires the ones
+     * in use when they are returned.
+     */
+    private class StatementCache {
+        private final Queue<Holder> idle = new ConcurrentLinkedQueue<>();
+        private Semaphore permits;
+        private volatile int generation;
+
+        private synchronized Semaphore permits() {
+            if (permits == null)
+                permits = new Semaphore(Math.max(poolSize, 1));
+            return permits;
+        }
+
+        <T> T execute(String sql, StatementCallback<T> callback) throws SQLException {
+            Semaphore semaphore = permits();
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SystemException(ex);
+            }
+            Holder holder = null;
+            try {
+                holder = idle();
+                T result = holder.execute(sql, callback);
+                if (holder.generation == generation)
+                    idle.add(holder);
+                else
+                    holder.close();
+                return result;
+            } catch (SQLException | RuntimeException ex) {
+                if (holder != null)
+                    holder.close();
+                throw ex;
+            } finally {
+                semaphore.release();
+            }
+        }
+
+        private Holder idle() {
+            Holder holder;
+            while ((holder = idle.poll()) != null) {
+                if (holder.isValid())
+                    return holder;
+                holder.close();
+            }
+            return new Holder(generation);
+        }
+
+        synchronized void close() {
+            generation++;
+            Holder holder;
+            while ((holder = idle.poll()) != null)
+                holder.close();
+        }
+    }
+
+    private class Holder {
+        private final int generation;
+        private Connection connection;
+        private Map<String, PreparedStatement> statements = new HashMap<>();
+
+        Holder(int generation) {
+            this.generation = generation;
+        }
+
+        <T> T execute(String sql, StatementCallback<T> callback) throws SQLException {
+            if (connection == null)
+                connection = dataSource.getConnection();
+            PreparedStatement pstmt = statements.get(sql);
+            if (pstmt == null) {
+                pstmt = connection.prepareStatement(sql);
+                statements.put(sql, pstmt);
+            }
+            pstmt.clearParameters();
+            T result = callback.apply(pstmt);
+            if (!connection.getAutoCommit())
+                connection.commit();
+            return result;
+        }
+
+        boolean isValid() {
+            try {
+                return connection == null || connection.isValid(validationTimeout);
+            } catch (SQLException ex) {
+                Logger.suppress(ex);
+                return false;
+            }
+        }
+
+        void close() {
+            for (PreparedStatement pstmt : statements.values()) {
+                try {
+                    pstmt.close();
+                } catch (SQLException ex) {
+                    Logger.suppress(ex);
+                }
+            }
+            statements.clear();
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ex) {
+                    Logger.suppress(ex);
+                }
+                connection = null;
+            }
+        }
+    }
 }
@@ -15,6 +15,9 @@ limitations under the License.
 */
 package net.e6tech.elements.security.vault;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -26,6 +29,19 @@ public interface Vault  {
 
     Secret getSecret(String alias, String version);
 
+    /**
+     * Returns the latest version of each alias, in the order given.  Aliases without a secret are left out.
+     */
+    default Map<String, Secret> getSecrets(Collection<String> aliases) {
+        Map<String, Secret> secrets = new LinkedHashMap<>();
+        for (String alias : aliases) {
+            Secret secret = getSecret(alias, null);
+            if (secret != null)
+                secrets.put(alias, secret);
+        }
+        return secrets;
+    }
+
     void addSecret(Secret secret);
 
     void removeSecret(String alias, String version);
@@ -291,6 +291,11 @@ public class VaultManager {
         return symmetricCipher.decrypt(secretKey, secret, iv);
     }
 
+    // checks that credential belongs to a guardian, for callers that keep unwrapped keys themselves.
+    public void authorize(Credential credential) throws GeneralSecurityException {
+        checkAccess(credential);
+    }
+
     // for decrypt keys
     public byte[] decrypt(Credential credential, String secret) throws GeneralSecurityException {
         checkAccess(credential);
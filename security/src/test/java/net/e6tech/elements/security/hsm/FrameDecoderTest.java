@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.security.hsm;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameDecoderTest {
+
+    @Test
+    void delimiter() {
+        DelimiterFrameDecoder decoder = new DelimiterFrameDecoder();
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put("<00#a#>\r\n<00#b".getBytes(StandardCharsets.US_ASCII));
+        buffer.flip();
+        assertEquals("<00#a#>", new String(decoder.decode(buffer), StandardCharsets.US_ASCII));
+        assertNull(decoder.decode(buffer));
+        buffer.compact();
+        buffer.put("#>\n".getBytes(StandardCharsets.US_ASCII));
+        buffer.flip();
+        assertEquals("<00#b#>", new String(decoder.decode(buffer), StandardCharsets.US_ASCII));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void lengthField() {
+        LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(2);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put(new byte[] {0, 3, 'a', 'b', 'c', 0, 2, 'd'});
+        buffer.flip();
+        assertArrayEquals(new byte[] {0, 3, 'a', 'b', 'c'}, decoder.decode(buffer));
+        assertNull(decoder.decode(buffer));
+        assertEquals(5, buffer.position());
+        buffer.compact();
+        buffer.put((byte) 'e');
+        buffer.flip();
+        assertArrayEquals(new byte[] {0, 2, 'd', 'e'}, decoder.decode(buffer));
+    }
+
+    @Test
+    void enveloped() {
+        LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(2, 1, 2);
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0x02, 0, 1, 'a', 0x61, 0x03});
+        assertArrayEquals(new byte[] {0x02, 0, 1, 'a', 0x61, 0x03}, decoder.decode(buffer));
+    }
+}
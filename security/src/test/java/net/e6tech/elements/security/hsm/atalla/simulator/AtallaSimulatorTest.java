@@ -20,6 +20,14 @@ import net.e6tech.elements.security.Hex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -72,4 +80,55 @@ public class AtallaSimulatorTest {
         assertTrue(recovered.equals(decTab));
         assertTrue(akb.getKeyBlock().equals("1nCNE000,2162CD77E8293FE4DC328EAB53BC3A2B0A3AFE1B299F07D2,111746BEB588C65B"));
     }
+
+    @Test
+    void nioPipelined() throws Exception {
+        simulator.setPort(17000);
+        simulator.setNio(true);
+        simulator.setWorkers(2);
+        simulator.start();
+        try (Socket socket = new Socket("localhost", 17000)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("<00#one#>\n<00#two#>\n<00#three#>\n".getBytes());
+            out.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            assertEquals("<00#000000#one#>", reader.readLine());
+            assertEquals("<00#000000#two#>", reader.readLine());
+            assertEquals("<00#000000#three#>", reader.readLine());
+        } finally {
+            simulator.stop();
+        }
+    }
+
+    @Test
+    void nioLargeFrame() throws Exception {
+        simulator.setPort(17001);
+        simulator.setNio(true);
+        simulator.setMaxFrameSize(8 * 1024);
+        simulator.start();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            builder.append((char) ('a' + i % 26));
+        String payload = builder.toString();
+        try (Socket socket = new Socket("localhost", 17001)) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            // larger than the initial read buffer, so the buffer has to grow
+            out.write(("<00#" + payload + "#>\n<00#small#>\n").getBytes());
+            out.flush();
+            assertEquals("<00#000000#" + payload + "#>", reader.readLine());
+            assertEquals("<00#000000#small#>", reader.readLine());
+
+            // larger than maxFrameSize, the connection is dropped
+            out.write(("<00#" + payload + payload + "#>\n").getBytes());
+            out.flush();
+            try {
+                assertNull(reader.readLine());
+            } catch (SocketException ex) {
+                // closed with unread input, reset instead of EOF
+            }
+        } finally {
+            simulator.stop();
+        }
+    }
 }
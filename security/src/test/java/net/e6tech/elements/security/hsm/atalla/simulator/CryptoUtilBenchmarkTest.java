@@ -0,0 +1,104 @@
+package net.e6tech.elements.security.hsm.atalla.simulator;
+
+import net.e6tech.elements.security.Hex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput of the CryptoUtil EMV operations, single threaded and across a small thread pool.
+ */
+public class CryptoUtilBenchmarkTest {
+
+    private static final int ITERATIONS = 20000;
+    private static final int THREADS = 4;
+
+    private AtallaSimulator simulator;
+    private AKB imk;
+    private String dataBlock;
+
+    @BeforeEach
+    void setup() throws Exception {
+        simulator = new AtallaSimulator();
+        imk = simulator.asAKB(AtallaSimulator.IMK_ARQC);
+        dataBlock = "000000012300" + "000000000000" + "0840" + "8000010000" + "0840" + "200106" + "00"
+                + "9BADBCAB" + "0000" + "0102" + "06011203A00000" + "80";
+        while (Hex.toBytes(dataBlock).length % 8 != 0)
+            dataBlock += "00";
+    }
+
+    @Test
+    void deriveICCMasterKey() throws Exception {
+        run("derivativeICCMasterKeyBytes", () -> CryptoUtil.derivativeICCMasterKeyBytes(simulator, imk, "5555550000000002", "01"));
+    }
+
+    @Test
+    void deriveSessionKey() throws Exception {
+        byte[] icc = CryptoUtil.derivativeICCMasterKeyBytes(simulator, imk, "5555550000000002", "01");
+        run("deriveSessionKeyBytes", () -> CryptoUtil.deriveSessionKeyBytes(icc, "0102000000000000"));
+    }
+
+    @Test
+    void mac() throws Exception {
+        byte[] icc = CryptoUtil.derivativeICCMasterKeyBytes(simulator, imk, "5555550000000002", "01");
+        byte[] sessionKey = CryptoUtil.deriveSessionKeyBytes(icc, "0102000000000000");
+        byte[] data = Hex.toBytes(dataBlock);
+        run("mac", () -> CryptoUtil.mac(CryptoUtil.createSecretKey(sessionKey), data, 16));
+    }
+
+    @Test
+    void verifyARQC() throws Exception {
+        run("VisaCVN18ARQC", () -> {
+            VisaCVN18ARQC arqc = new VisaCVN18ARQC(simulator);
+            String result = arqc.imk(imk)
+                    .pan("5555550000000002")
+                    .cardSequence("01")
+                    .diversification("0102000000000000")
+                    .arqc("9DA57063E9BF4757")
+                    .dataBlock(dataBlock)
+                    .arc("00008000")
+                    .process();
+            assertEquals("9DA57063E9BF4757", arqc.getComputedARQC());
+            return result;
+        });
+    }
+
+    private void run(String name, Callable<?> operation) throws Exception {
+        // warm up
+        for (int i = 0; i < ITERATIONS / 10; i++)
+            operation.call();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            operation.call();
+        long elapsed = System.nanoTime() - start;
+        System.out.println(name + " 1 thread: " + (ITERATIONS * 1_000_000_000L / elapsed) + " ops/s");
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            start = System.nanoTime();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < ITERATIONS; i++)
+                        operation.call();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+            elapsed = System.nanoTime() - start;
+            System.out.println(name + " " + THREADS + " threads: " + (THREADS * ITERATIONS * 1_000_000_000L / elapsed) + " ops/s");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
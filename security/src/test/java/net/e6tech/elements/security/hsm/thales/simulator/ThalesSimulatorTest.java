@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.security.hsm.thales.simulator;
+
+import net.e6tech.elements.security.hsm.thales.Command;
+import net.e6tech.elements.security.hsm.thales.Echo;
+import net.e6tech.elements.security.hsm.thales.GenerateCVV;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ThalesSimulatorTest {
+
+    private ThalesSimulator simulator;
+
+    @BeforeEach
+    void setup() {
+        simulator = new ThalesSimulator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.stop();
+    }
+
+    @Test
+    void nioPipelined() throws Exception {
+        simulator.setPort(17002);
+        simulator.setNio(true);
+        simulator.setWorkers(2);
+        simulator.start();
+        exchange(17002);
+    }
+
+    @Test
+    void blocking() throws Exception {
+        simulator.setPort(17003);
+        simulator.start();
+        for (int i = 0; i < 50 && simulator.isStopped(); i++)
+            Thread.sleep(100);
+        exchange(17003);
+    }
+
+    private void exchange(int port) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            ByteArrayOutputStream requests = new ByteArrayOutputStream();
+            requests.write(echo("one").toBytes());
+            requests.write(echo("two").toBytes());
+            GenerateCVV cvv = new GenerateCVV();
+            cvv.setServiceCode("123");
+            cvv.setExpiry("2009");
+            cvv.setCvk("12345678901234561234567890123456");
+            cvv.setAccountNumber("1234567890123456");
+            requests.write(cvv.toBytes());
+            requests.write(echo("three").toBytes());
+            OutputStream out = socket.getOutputStream();
+            out.write(requests.toByteArray());
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals("0000B300one", readResponse(in));
+            assertEquals("0000B300two", readResponse(in));
+            assertEquals("0000CX68", readResponse(in)); // not simulated
+            assertEquals("0000B300three", readResponse(in));
+        }
+    }
+
+    private static Echo echo(String data) {
+        Echo echo = new Echo();
+        echo.setData(data);
+        return echo;
+    }
+
+    private static String readResponse(DataInputStream in) throws IOException {
+        byte[] length = new byte[Command.LENGTH_BYTES];
+        in.readFully(length);
+        byte[] payload = new byte[Command.decodeLength(length)];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.security.vault;
+
+import net.e6tech.elements.common.util.SystemException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static net.e6tech.elements.security.vault.Constants.ALIAS;
+import static net.e6tech.elements.security.vault.Constants.VERSION;
+import static net.e6tech.elements.security.vault.Constants.mapper;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs DBVaultStore against a JDBC stub that understands the handful of statements the store issues.
+ */
+public class DBVaultStoreTest {
+
+    private static final String VAULT = "v";
+
+    private FakeDatabase db;
+    private DBVaultStore store;
+    private Vault vault;
+
+    @BeforeEach
+    void setup() {
+        db = new FakeDatabase();
+        store = new DBVaultStore(db.dataSource());
+        store.setBatched(true);
+        store.manage(VAULT);
+        vault = store.getVault(VAULT);
+    }
+
+    @Test
+    void slots() {
+        store.setBatchSize(100);
+        assertEquals(1, store.slots(1));
+        assertEquals(2, store.slots(2));
+        assertEquals(4, store.slots(3));
+        assertEquals(64, store.slots(33));
+        assertEquals(100, store.slots(65)); // capped at batchSize
+        store.setBatchSize(6);
+        assertEquals(6, store.slots(5));
+    }
+
+    @Test
+    void padding() {
+        db.put("a", 1);
+        db.put("b", 1);
+        db.put("c", 1);
+        Map<String, Secret> secrets = vault.getSecrets(Arrays.asList("a", "b", "c"));
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(secrets.keySet()));
+
+        List<Execution> fetches = db.executions("v.alias in");
+        assertEquals(1, fetches.size());
+        // 3 aliases use 4 slots, the last alias is repeated
+        assertEquals(Arrays.asList(VAULT, "a", "b", "c", "c"), fetches.get(0).params);
+    }
+
+    @Test
+    void chunking() {
+        store.setBatchSize(4);
+        List<String> aliases = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            aliases.add("a" + i);
+            db.put("a" + i, 1);
+        }
+        Map<String, Secret> secrets = vault.getSecrets(aliases);
+        assertEquals(aliases, new ArrayList<>(secrets.keySet()));
+
+        List<Execution> fetches = db.executions("v.alias in");
+        assertEquals(3, fetches.size());
+        assertEquals(5, fetches.get(0).params.size());
+        assertEquals(5, fetches.get(1).params.size());
+        assertEquals(Arrays.asList(VAULT, "a8", "a9"), fetches.get(2).params);
+        // statements are prepared once per distinct sql and reused
+        assertEquals(1, db.connections);
+    }
+
+    @Test
+    void revalidation() throws Exception {
+        store.setLatestRefreshPeriod(0);
+        db.put("a", 1);
+        db.put("b", 1);
+        vault.getSecrets(Arrays.asList("a", "b"));
+        db.clearExecutions();
+
+        Thread.sleep(5);
+        Map<String, Secret> secrets = vault.getSecrets(Arrays.asList("a", "b"));
+        assertEquals("1", secrets.get("a").version());
+        assertEquals(1, db.executions("max(v.version) from").size());
+        assertEquals(0, db.executions("select v.secret").size());
+
+        db.put("b", 2);
+        db.clearExecutions();
+        Thread.sleep(5);
+        secrets = vault.getSecrets(Arrays.asList("a", "b"));
+        assertEquals("1", secrets.get("a").version());
+        assertEquals("2", secrets.get("b").version());
+        List<Execution> fetches = db.executions("select v.secret");
+        assertEquals(1, fetches.size());
+        assertEquals(Arrays.asList(VAULT, "b"), fetches.get(0).params);
+    }
+
+    @Test
+    void changePolling() {
+        store.setChangeTableName("h3_vault_change");
+        store.setChangePollPeriod(0);
+        db.put("a", 1);
+        db.put("b", 1);
+        db.changed("a", 1);
+        vault.getSecrets(Arrays.asList("a", "b"));
+
+        // cached until the change table says otherwise
+        db.put("a", 2);
+        db.clearExecutions();
+        assertEquals("1", vault.getSecrets(Arrays.asList("a", "b")).get("a").version());
+        assertEquals(0, db.executions("select v.secret").size());
+
+        db.changed("a", 2);
+        db.clearExecutions();
+        Map<String, Secret> secrets = vault.getSecrets(Arrays.asList("a", "b"));
+        assertEquals("2", secrets.get("a").version());
+        assertEquals("1", secrets.get("b").version());
+        List<Execution> fetches = db.executions("select v.secret");
+        assertEquals(1, fetches.size());
+        assertEquals(Arrays.asList(VAULT, "a"), fetches.get(0).params);
+    }
+
+    @Test
+    void markChangedRace() {
+        store.setChangeTableName("h3_vault_change");
+        db.put("a", 1);
+        db.raceInsert = true;
+        vault.removeSecret("a", null);
+        // the competing writer inserted 1, our retried update bumped it
+        assertEquals(Long.valueOf(2), db.changes.get("a"));
+        // the failed insert aborts the transaction, as on PostgreSQL, until it is rolled back to the savepoint
+        assertEquals(1, db.savepointRollbacks);
+    }
+
+    @Test
+    void duplicateKey() {
+        assertTrue(DBVaultStore.isDuplicateKey(new SQLIntegrityConstraintViolationException("dup")));
+        assertTrue(DBVaultStore.isDuplicateKey(new SQLException("dup", "23505")));
+        assertFalse(DBVaultStore.isDuplicateKey(new SQLException("timeout", "HYT00")));
+        assertFalse(DBVaultStore.isDuplicateKey(new SQLException("unknown")));
+    }
+
+    @Test
+    void failureClosesHolder() {
+        db.put("a", 1);
+        vault.getSecrets(Collections.singletonList("a"));
+        store.setLatestRefreshPeriod(-1000); // always stale
+        db.failNext = true;
+        assertThrows(SystemException.class, () -> vault.getSecrets(Collections.singletonList("a")));
+        assertEquals(1, db.closedConnections);
+        assertEquals("1", vault.getSecrets(Collections.singletonList("a")).get("a").version());
+        assertEquals(2, db.connections);
+    }
+
+    @Test
+    void invalidHolder() {
+        db.put("a", 1);
+        vault.getSecrets(Collections.singletonList("a"));
+        store.setLatestRefreshPeriod(-1000); // always stale
+        db.invalidateConnections();
+        db.clearExecutions();
+        assertEquals("1", vault.getSecrets(Collections.singletonList("a")).get("a").version());
+        // the dead connection is dropped before use, not after a failed query
+        assertEquals(1, db.closedConnections);
+        assertEquals(2, db.connections);
+        assertEquals(1, db.executions("max(v.version) from").size());
+        vault.getSecrets(Collections.singletonList("a"));
+        assertEquals(2, db.connections);
+    }
+
+    private static class Execution {
+        String sql;
+        List<Object> params;
+
+        Execution(String sql, List<Object> params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    private static class FakeDatabase {
+        private static final Pattern CHANGE_TABLE = Pattern.compile("(?:update|insert into) (\\w+)");
+        Map<String, TreeMap<Long, String>> secrets = new HashMap<>(); // alias -> version -> json
+        Map<String, Long> changes = new HashMap<>();
+        List<Execution> executions = new ArrayList<>();
+        int connections;
+        int closedConnections;
+        int validFrom; // connections numbered below are no longer valid
+        int savepointRollbacks;
+        boolean failNext;
+        boolean raceInsert;
+
+        void put(String alias, long version) {
+            Properties properties = new Properties();
+            properties.setProperty(ALIAS, alias);
+            properties.setProperty(VERSION, Long.toString(version));
+            Secret secret = new Secret();
+            secret.setProperties(properties);
+            secret.setSecret("secret-" + alias + "-" + version);
+            try {
+                secrets.computeIfAbsent(alias, k -> new TreeMap<>()).put(version, mapper.writeValueAsString(secret));
+            } catch (Exception ex) {
+                throw new SystemException(ex);
+            }
+        }
+
+        void changed(String alias, long changed) {
+            changes.put(alias, changed);
+        }
+
+        synchronized void invalidateConnections() {
+            validFrom = connections + 1;
+        }
+
+        synchronized List<Execution> executions(String fragment) {
+            List<Execution> list = new ArrayList<>();
+            for (Execution execution : executions)
+                if (execution.sql.contains(fragment))
+                    list.add(execution);
+            return list;
+        }
+
+        synchronized void clearExecutions() {
+            executions.clear();
+        }
+
+        DataSource dataSource() {
+            return proxy(DataSource.class, (proxy, method, args) -> {
+                if ("getConnection".equals(method.getName())) {
+                    synchronized (this) {
+                        connections++;
+                        return connection(connections);
+                    }
+                }
+                return defaultValue(method);
+            });
+        }
+
+        private Connection connection(int number) {
+            boolean[] aborted = new boolean[1];
+            return proxy(Connection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "prepareStatement":
+                        return statement((String) args[0], aborted);
+                    case "getAutoCommit":
+                        return false;
+                    case "isValid":
+                        synchronized (this) {
+                            return number >= validFrom;
+                        }
+                    case "setSavepoint":
+                        return proxy(Savepoint.class, (p, m, a) -> defaultValue(m));
+                    case "rollback":
+                        synchronized (this) {
+                            if (args != null)
+                                savepointRollbacks++;
+                        }
+                        aborted[0] = false;
+                        return null;
+                    case "close":
+                        synchronized (this) {
+                            closedConnections++;
+                        }
+                        return null;
+                    default:
+                        return defaultValue(method);
+                }
+            });
+        }
+
+        private PreparedStatement statement(String sql, boolean[] aborted) {
+            Map<Integer, Object> params = new TreeMap<>();
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setString":
+                    case "setLong":
+                        params.put((Integer) args[0], args[1]);
+                        return null;
+                    case "clearParameters":
+                        params.clear();
+                        return null;
+                    case "executeQuery":
+                        return resultSet(query(sql, new ArrayList<>(params.values())));
+                    case "executeUpdate":
+                        if (aborted[0])
+                            throw new SQLException("current transaction is aborted", "25P02");
+                        try {
+                            return update(sql, new ArrayList<>(params.values()));
+                        } catch (SQLException ex) {
+                            aborted[0] = true;
+                            throw ex;
+                        }
+                    default:
+                        return defaultValue(method);
+                }
+            });
+        }
+
+        private synchronized List<Object[]> query(String sql, List<Object> params) throws SQLException {
+            executions.add(new Execution(sql, params));
+            if (failNext) {
+                failNext = false;
+                throw new SQLException("connection lost", "08006");
+            }
+            List<Object[]> rows = new ArrayList<>();
+            Set<Object> aliases = new LinkedHashSet<>(params.subList(1, params.size()));
+            if (sql.startsWith("select v.secret") && sql.contains("v.alias in")) {
+                for (Object alias : aliases) {
+                    TreeMap<Long, String> versions = secrets.get(alias);
+                    if (versions != null)
+                        rows.add(new Object[] {versions.lastEntry().getValue()});
+                }
+            } else if (sql.startsWith("select v.alias, max(v.version)")) {
+                for (Object alias : aliases) {
+                    TreeMap<Long, String> versions = secrets.get(alias);
+                    if (versions != null)
+                        rows.add(new Object[] {alias, versions.lastKey()});
+                }
+            } else if (sql.startsWith("select c.alias, c.changed")) {
+                for (Map.Entry<String, Long> entry : changes.entrySet())
+                    rows.add(new Object[] {entry.getKey(), entry.getValue()});
+            } else {
+                throw new SQLException("unsupported: " + sql);
+            }
+            return rows;
+        }
+
+        private synchronized int update(String sql, List<Object> params) throws SQLException {
+            executions.add(new Execution(sql, params));
+            Matcher matcher = CHANGE_TABLE.matcher(sql);
+            boolean changeTable = matcher.find() && matcher.group(1).endsWith("_change");
+            if (sql.startsWith("delete from")) {
+                TreeMap<Long, String> versions = secrets.get(params.get(1));
+                if (versions == null)
+                    return 0;
+                if (params.size() > 2)
+                    return versions.remove(params.get(2)) != null ? 1 : 0;
+                secrets.remove(params.get(1));
+                return versions.size();
+            } else if (changeTable && sql.startsWith("update")) {
+                String alias = (String) params.get(1);
+                if (!changes.containsKey(alias))
+                    return 0;
+                changes.put(alias, changes.get(alias) + 1);
+                return 1;
+            } else if (changeTable && sql.startsWith("insert")) {
+                String alias = (String) params.get(1);
+                if (raceInsert) {
+                    raceInsert = false;
+                    changes.put(alias, 1L); // another writer got there first
+                }
+                if (changes.containsKey(alias))
+                    throw new SQLIntegrityConstraintViolationException("duplicate key", "23505");
+                changes.put(alias, (Long) params.get(2));
+                return 1;
+            }
+            throw new SQLException("unsupported: " + sql);
+        }
+
+        private ResultSet resultSet(List<Object[]> rows) {
+            Iterator<Object[]> iterator = rows.iterator();
+            Object[][] current = new Object[1][];
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        current[0] = iterator.hasNext() ? iterator.next() : null;
+                        return current[0] != null;
+                    case "getString":
+                        return (String) current[0][(Integer) args[0] - 1];
+                    case "getLong":
+                        return ((Number) current[0][(Integer) args[0] - 1]).longValue();
+                    case "getInt":
+                        return ((Number) current[0][(Integer) args[0] - 1]).intValue();
+                    default:
+                        return defaultValue(method);
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(DBVaultStoreTest.class.getClassLoader(), new Class[] {type}, (proxy, method, args) -> {
+                if (method.getDeclaringClass() == Object.class) {
+                    if ("equals".equals(method.getName()))
+                        return proxy == args[0];
+                    if ("hashCode".equals(method.getName()))
+                        return System.identityHashCode(proxy);
+                    return type.getSimpleName();
+                }
+                try {
+                    return handler.invoke(proxy, method, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            });
+        }
+
+        private static Object defaultValue(Method method) {
+            Class<?> type = method.getReturnType();
+            if (type == boolean.class)
+                return false;
+            if (type == int.class || type == long.class)
+                return type == int.class ? (Object) 0 : (Object) 0L;
+            return null;
+        }
+    }
+}
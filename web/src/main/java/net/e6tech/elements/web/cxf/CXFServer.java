@@ -26,23 +26,15 @@ import net.e6tech.elements.common.resources.Startable;
 import net.e6tech.elements.common.util.ExceptionMapper;
 import net.e6tech.elements.common.util.SystemException;
 import net.e6tech.elements.common.util.datastructure.Pair;
-import net.e6tech.elements.jmx.JMXService;
-import net.e6tech.elements.jmx.stat.Measurement;
 import net.e6tech.elements.security.JavaKeyStore;
 import net.e6tech.elements.security.SelfSignedCert;
 import net.e6tech.elements.web.JaxExceptionHandler;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.transport.http.AbstractHTTPDestination;
 
-import javax.annotation.Nonnull;
-import javax.management.JMException;
-import javax.management.ObjectInstance;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.ws.rs.PathParam;
-import javax.ws.rs.QueryParam;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.KeyStore;
@@ -50,6 +42,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 /**
@@ -57,7 +50,6 @@ import java.util.function.Supplier;
  */
 @SuppressWarnings("squid:S134")
 public class CXFServer implements Initializable, Startable {
-    private static final String CANNOT_BE_NULL = " cannot be null. \n";
     private static final Logger logger = Logger.getLogger();
     private Provision provision;
     private Interceptor interceptor;
@@ -73,6 +65,8 @@ public class CXFServer implements Initializable, Startable {
     private boolean initialized = false;
     private boolean started = false;
     private boolean measurement = false;
+    private MetricsRegistry metrics = new MetricsRegistry();
+    private Map<Method, InvocationPlan> invocationPlans = new ConcurrentHashMap<>();
     private Observer headerObserver;
     private ExceptionMapper exceptionMapper;
     private Map<String, String> responseHeaders = new LinkedHashMap<>();
@@ -189,6 +183,11 @@ public class CXFServer implements Initializable, Startable {
 
     public void setMeasurement(boolean measurement) {
         this.measurement = measurement;
+        metrics.setEnabled(measurement);
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
     }
 
     public ExceptionMapper getExceptionMapper() {
@@ -329,77 +328,31 @@ public class CXFServer implements Initializable, Startable {
         }
     }
 
-    void computePerformance(Method method, Map<Method,String> methods, long duration) {
-        ObjectInstance instance = null;
-        try {
-            instance = getMeasurement(method, methods);
-            logger.trace("{} call took {}ms",  instance.getObjectName().getCanonicalName(), duration);
-            JMXService.invoke(instance.getObjectName(), "add", duration);
-        } catch (Exception e) {
-            logger.debug("Unable to record measurement for " + method, e);
-        }
+    void computePerformance(Method method, long duration) {
+        metrics.recorder(method).record(duration);
     }
 
-    void recordFailure(Method method, Map<Method,String> methods) {
-        try {
-            ObjectInstance instance = getMeasurement(method, methods);
-            JMXService.invoke(instance.getObjectName(), "fail");
-        } catch (Exception e) {
-            logger.debug("Unable to record fail measurement for " + method, e);
-        }
+    void recordFailure(Method method) {
+        metrics.recorder(method).fail();
     }
 
-    private ObjectInstance getMeasurement(Method method, Map<Method, String> methods) throws JMException {
-        String methodName = methods.computeIfAbsent(method, m -> {
-            StringBuilder builder = new StringBuilder();
-            builder.append(m.getDeclaringClass().getTypeName());
-            builder.append(".");
-            builder.append(m.getName());
-            Class[] types = m.getParameterTypes();
-            for (int i = 0; i < types.length; i++) {
-                builder.append("|"); // separating parameters using underscores instead commas because of JMX
-                // ObjectName constraint
-                builder.append(types[i].getSimpleName());
-            }
-            return builder.toString();
-        });
-
-        String objectName = "net.e6tech:type=Restful,name=" + methodName;
-        return JMXService.registerIfAbsent(objectName, () -> new Measurement(methodName, "ms", isMeasurement()));
+    /**
+     * Compiles the parameter checks and metrics recorders of the resource methods so that requests only
+     * look them up.
+     */
+    public void register(Class resourceClass) {
+        metrics.register(resourceClass);
+        for (Method method : resourceClass.getMethods()) {
+            if (method.getDeclaringClass() != Object.class)
+                invocationPlans.computeIfAbsent(method, InvocationPlan::new);
+        }
     }
 
-    @SuppressWarnings("squid:S3776")
     void checkInvocation(Method method, Object[] args) {
-        Parameter[] params = method.getParameters();
-        int idx = 0;
-        StringBuilder builder = null;
-        for (Parameter param : params) {
-            QueryParam queryParam =  param.getAnnotation(QueryParam.class);
-            PathParam pathParam =  param.getAnnotation(PathParam.class);
-            if (args[idx] == null || (args[idx] instanceof String && ((String) args[idx]).trim().isEmpty())) {
-                if (pathParam != null) {
-                    if (builder == null)
-                        builder = new StringBuilder();
-                    builder.append("path parameter ").append(pathParam.value()).append(CANNOT_BE_NULL);
-                }
-
-                if (param.getAnnotation(Nonnull.class) != null) {
-                    if (queryParam != null) {
-                        if (builder == null)
-                            builder = new StringBuilder();
-                        builder.append("query parameter ").append(queryParam.value()).append(CANNOT_BE_NULL);
-                    } else if (pathParam == null) {
-                        if (builder == null)
-                            builder = new StringBuilder();
-                        builder.append("post parameter ").append("arg").append(idx).append(CANNOT_BE_NULL);
-                    }
-                }
-            }
-            idx++;
-        }
-        if (builder != null) {
-            throw new IllegalArgumentException(builder.toString());
-        }
+        InvocationPlan plan = invocationPlans.get(method);
+        if (plan == null)
+            plan = invocationPlans.computeIfAbsent(method, InvocationPlan::new);
+        plan.check(args);
     }
 }
 
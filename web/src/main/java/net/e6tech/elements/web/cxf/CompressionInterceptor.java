@@ -0,0 +1,269 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.PhaseInterceptorChain;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses response entities with gzip or deflate, whichever the client accepts, gzip first.
+ * The first minSize bytes are held back so that small entities are sent as is; the Content-Encoding
+ * header is only added once an entity turns out to be larger.  Deflaters are pooled.  A strong ETag set
+ * by the resource is turned into a weak one when the entity is compressed.
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements WriterInterceptor {
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private int minSize = 1024;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private Queue<Deflater> gzipPool = new ArrayBlockingQueue<>(64);
+    private Queue<Deflater> deflatePool = new ArrayBlockingQueue<>(64);
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String encoding = negotiate(acceptEncoding());
+        if (encoding == null) {
+            context.proceed();
+            return;
+        }
+
+        CompressingOutputStream stream = new CompressingOutputStream(context.getOutputStream(), encoding, headers);
+        context.setOutputStream(stream);
+        try {
+            context.proceed();
+            stream.finish();
+        } finally {
+            stream.release();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String acceptEncoding() {
+        Message message = PhaseInterceptorChain.getCurrentMessage();
+        if (message == null || message.getExchange() == null || message.getExchange().getInMessage() == null)
+            return null;
+        Map<String, List<String>> headers = (Map<String, List<String>>) message.getExchange().getInMessage().get(Message.PROTOCOL_HEADERS);
+        if (headers == null)
+            return null;
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(entry.getKey()) && entry.getValue() != null)
+                return String.join(",", entry.getValue());
+        }
+        return null;
+    }
+
+    /**
+     * Picks gzip or deflate from an Accept-Encoding value.  A coding listed explicitly takes its own
+     * qvalue, so "gzip;q=0, *" refuses gzip; "*" only stands in for codings that are not listed.
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return null;
+        Map<String, Boolean> accepted = new HashMap<>();
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim().toLowerCase();
+            if ("x-gzip".equals(coding))
+                coding = GZIP;
+            if (coding.isEmpty())
+                continue;
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().replace(" ", "").toLowerCase();
+                if (param.matches("q=0(\\.0*)?"))
+                    refused = true;
+            }
+            // a refusal wins over an acceptance of the same coding
+            accepted.merge(coding, !refused, Boolean::logicalAnd);
+        }
+        Boolean wildcard = accepted.get("*");
+        if (accepted.getOrDefault(GZIP, wildcard != null && wildcard))
+            return GZIP;
+        if (accepted.getOrDefault(DEFLATE, wildcard != null && wildcard))
+            return DEFLATE;
+        return null;
+    }
+
+    private Deflater acquire(String encoding) {
+        Deflater deflater = (GZIP.equals(encoding) ? gzipPool : deflatePool).poll();
+        if (deflater == null)
+            deflater = new Deflater(level, GZIP.equals(encoding)); // gzip carries raw deflate data, deflate is zlib
+        return deflater;
+    }
+
+    private void release(String encoding, Deflater deflater) {
+        deflater.reset();
+        if (!(GZIP.equals(encoding) ? gzipPool : deflatePool).offer(deflater))
+            deflater.end();
+    }
+
+    private class CompressingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final String encoding;
+        private final MultivaluedMap<String, Object> headers;
+        private byte[] pending = new byte[Math.max(minSize, 0)];
+        private int count;
+        private Deflater deflater;
+        private CRC32 crc;
+        private byte[] buffer;
+        private boolean finished;
+
+        CompressingOutputStream(OutputStream out, String encoding, MultivaluedMap<String, Object> headers) {
+            this.out = out;
+            this.encoding = encoding;
+            this.headers = headers;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            if (deflater == null) {
+                if (count + len <= pending.length) {
+                    System.arraycopy(bytes, off, pending, count, len);
+                    count += len;
+                    return;
+                }
+                start();
+            }
+            deflate(bytes, off, len);
+        }
+
+        private void start() throws IOException {
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            Object etag = headers.getFirst(HttpHeaders.ETAG);
+            if (etag instanceof String && ((String) etag).startsWith("\""))
+                headers.putSingle(HttpHeaders.ETAG, "W/" + etag); // the encoded bytes differ from the identity representation
+            deflater = acquire(encoding);
+            buffer = new byte[8192];
+            if (GZIP.equals(encoding)) {
+                crc = new CRC32();
+                out.write(new byte[] {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+            }
+            if (count > 0)
+                deflate(pending, 0, count);
+            pending = null;
+        }
+
+        private void deflate(byte[] bytes, int off, int len) throws IOException {
+            if (crc != null)
+                crc.update(bytes, off, len);
+            deflater.setInput(bytes, off, len);
+            while (!deflater.needsInput()) {
+                int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+                if (n > 0)
+                    out.write(buffer, 0, n);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // flushing deflate output early only hurts the compression ratio; the container flushes at the end.
+            if (deflater == null)
+                return;
+            out.flush();
+        }
+
+        void finish() throws IOException {
+            if (finished)
+                return;
+            finished = true;
+            if (deflater == null) {
+                if (count > 0)
+                    out.write(pending, 0, count);
+                return;
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer, 0, buffer.length);
+                if (n > 0)
+                    out.write(buffer, 0, n);
+            }
+            if (crc != null) {
+                writeInt((int) crc.getValue());
+                writeInt(deflater.getTotalIn());
+            }
+        }
+
+        private void writeInt(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            out.close();
+        }
+
+        void release() {
+            if (deflater != null) {
+                CompressionInterceptor.this.release(encoding, deflater);
+                deflater = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import net.e6tech.elements.common.util.SystemException;
+import org.apache.cxf.jaxrs.model.OperationResourceInfo;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.PhaseInterceptorChain;
+
+import javax.annotation.Priority;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.RuntimeDelegate;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Answers conditional GETs for resources that have etag turned on.  The entity of a 200 response is
+ * buffered and hashed into a weak ETag, unless the resource set one itself.  The tag is weak because
+ * the same entity may go out gzip'ed, deflated or as is; responses also carry Vary: Accept-Encoding.  When the request's
+ * If-None-Match matches, or there is no If-None-Match and If-Modified-Since is not before the
+ * resource's Last-Modified, the status is changed to 304 and nothing is written.
+ *
+ * Runs inside CompressionInterceptor so that the ETag is computed over the identity encoding.
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER + 100)
+public class ConditionalGetInterceptor implements WriterInterceptor {
+
+    private Set<Class<?>> resourceClasses;
+
+    public ConditionalGetInterceptor(Set<Class<?>> resourceClasses) {
+        this.resourceClasses = resourceClasses;
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Message message = PhaseInterceptorChain.getCurrentMessage();
+        if (!applicable(message)) {
+            context.proceed();
+            return;
+        }
+
+        OutputStream original = context.getOutputStream();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        context.setOutputStream(buffer);
+        try {
+            context.proceed();
+        } finally {
+            context.setOutputStream(original);
+        }
+
+        byte[] entity = buffer.toByteArray();
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        vary(headers);
+        String etag = headerString(headers.getFirst(HttpHeaders.ETAG));
+        if (etag == null) {
+            etag = etag(entity);
+            headers.putSingle(HttpHeaders.ETAG, etag);
+        }
+
+        Map<String, List<String>> requestHeaders = requestHeaders(message);
+        if (notModified(etag, headers.getFirst(HttpHeaders.LAST_MODIFIED), requestHeaders)) {
+            message.put(Message.RESPONSE_CODE, 304);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            return;
+        }
+        original.write(entity);
+    }
+
+    private boolean applicable(Message message) {
+        if (message == null || resourceClasses == null || resourceClasses.isEmpty())
+            return false;
+        Exchange exchange = message.getExchange();
+        if (exchange == null || exchange.getInMessage() == null)
+            return false;
+        if (!HttpMethod.GET.equals(exchange.getInMessage().get(Message.HTTP_REQUEST_METHOD)))
+            return false;
+        Object status = message.get(Message.RESPONSE_CODE);
+        if (status != null && !Integer.valueOf(200).equals(status))
+            return false;
+        OperationResourceInfo ori = exchange.get(OperationResourceInfo.class);
+        return ori != null && resourceClasses.contains(ori.getClassResourceInfo().getServiceClass());
+    }
+
+    static String etag(byte[] entity) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            return "W/\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest(entity)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    private static void vary(MultivaluedMap<String, Object> headers) {
+        List<Object> vary = headers.get(HttpHeaders.VARY);
+        if (vary != null) {
+            for (Object value : vary) {
+                if (value != null && value.toString().toLowerCase().contains(HttpHeaders.ACCEPT_ENCODING.toLowerCase()))
+                    return;
+            }
+        }
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    static boolean notModified(String etag, Object lastModified, Map<String, List<String>> requestHeaders) {
+        String ifNoneMatch = header(requestHeaders, HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            String opaque = opaque(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                if ("*".equals(candidate) || opaque.equals(opaque(candidate))) // weak comparison, RFC 7232 3.2
+                    return true;
+            }
+            return false;
+        }
+
+        String ifModifiedSince = header(requestHeaders, HttpHeaders.IF_MODIFIED_SINCE);
+        Date modified = toDate(lastModified);
+        if (ifModifiedSince == null || modified == null)
+            return false;
+        Date since = toDate(ifModifiedSince);
+        // HTTP dates have a resolution of one second
+        return since != null && modified.getTime() / 1000 <= since.getTime() / 1000;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static Date toDate(Object value) {
+        if (value instanceof Date)
+            return (Date) value;
+        if (value == null)
+            return null;
+        try {
+            return RuntimeDelegate.getInstance().createHeaderDelegate(Date.class).fromString(value.toString());
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static String headerString(Object value) {
+        if (value == null)
+            return null;
+        if (value instanceof String)
+            return (String) value;
+        try {
+            @SuppressWarnings("unchecked")
+            RuntimeDelegate.HeaderDelegate<Object> delegate = (RuntimeDelegate.HeaderDelegate<Object>) RuntimeDelegate.getInstance().createHeaderDelegate(value.getClass());
+            return delegate.toString(value);
+        } catch (RuntimeException ex) {
+            return value.toString();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, List<String>> requestHeaders(Message message) {
+        Map<String, List<String>> headers = (Map<String, List<String>>) message.getExchange().getInMessage().get(Message.PROTOCOL_HEADERS);
+        return headers == null ? Collections.emptyMap() : headers;
+    }
+
+    private static String header(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && entry.getValue() != null && !entry.getValue().isEmpty())
+                return String.join(",", entry.getValue());
+        }
+        return null;
+    }
+}
@@ -18,6 +18,7 @@ package net.e6tech.elements.web.cxf;
 
 import net.e6tech.elements.common.inject.Module;
 import net.e6tech.elements.common.interceptor.CallFrame;
+import net.e6tech.elements.common.interceptor.Interceptor;
 import net.e6tech.elements.common.interceptor.InterceptorHandler;
 import net.e6tech.elements.common.logging.LogLevel;
 import net.e6tech.elements.common.logging.Logger;
@@ -33,22 +34,30 @@ import org.apache.cxf.io.CachedOutputStream;
 import org.apache.cxf.jaxrs.lifecycle.PerRequestResourceProvider;
 import org.apache.cxf.message.Message;
 
-import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
 import javax.servlet.http.HttpServletResponse;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 class InstanceResourceProvider extends PerRequestResourceProvider {
     private ResourcesFactory factory;
     private Observer observer;
-    private Map<Method, String> methods = new ConcurrentHashMap<>();
     private Object prototype;
     private CXFServer server;
     private Map<Signature, Map<Class<? extends Annotation>, Annotation>> annotations;
+    private Map<Method, MethodPlan> plans = new ConcurrentHashMap<>();
+    private Map<Class<? extends Annotation>, Annotation> classAnnotations;
+    private BlockingQueue<Object> pool;
 
     @SuppressWarnings("unchecked")
     InstanceResourceProvider(JaxRSServer server, Class resourceClass, Object prototype, Module module, ResourcesFactory factory, Observer observer) {
@@ -66,48 +75,93 @@ class InstanceResourceProvider extends PerRequestResourceProvider {
             }
         });
         annotations = Reflection.getAnnotations(resourceClass);
+        classAnnotations = annotations.get(new ClassSignature(resourceClass));
+        for (Method method : resourceClass.getMethods()) {
+            if (method.getDeclaringClass() != Object.class)
+                plan(method);
+        }
+    }
+
+    public int getPoolSize() {
+        return (pool == null) ? 0 : pool.remainingCapacity() + pool.size();
+    }
+
+    /**
+     * A pool size greater than 0 turns on pooling of resource instances, see JaxResource.isPooled.
+     */
+    public void setPoolSize(int poolSize) {
+        pool = (poolSize > 0) ? new ArrayBlockingQueue<>(poolSize) : null;
+    }
+
+    private MethodPlan plan(Method method) {
+        return plans.computeIfAbsent(method, m -> new MethodPlan(m, classAnnotations, annotations.get(new MethodSignature(m)), server.getMetrics().recorder(m)));
     }
 
     @SuppressWarnings("unchecked")
     @Override
     protected Object createInstance(Message message) {
+        Observer cloneObserver = (observer == null) ? null : observer.clone();
+        UnitOfWork uow = (cloneObserver != null) ? cloneObserver.open(factory) : factory.open();
+        Object proxy = (pool == null) ? null : pool.poll();
+        if (proxy != null) {
+            Handler handler = Interceptor.getInterceptorHandler(proxy);
+            handler.reset(uow, cloneObserver, message);
+            return proxy;
+        }
+
         Object instance = super.createInstance(message);
         if (prototype != null)
             Reflection.copyInstance(instance, prototype);
-        Observer cloneObserver = (observer == null) ? null : observer.clone();
-        UnitOfWork uow = (cloneObserver != null) ? cloneObserver.open(factory) : factory.open();
-        return server.getInterceptor().newInterceptor(instance, new Handler(uow, methods, cloneObserver, message));
+        return server.getInterceptor().newInterceptor(instance, new Handler(uow, cloneObserver, message));
+    }
+
+    @Override
+    public void releaseInstance(Message message, Object proxy) {
+        if (pool == null || !Interceptor.isProxyObject(proxy)) {
+            super.releaseInstance(message, proxy);
+            return;
+        }
+
+        Handler handler = Interceptor.getInterceptorHandler(proxy);
+        if (handler.async) { // the instance may still be in use by an async response
+            super.releaseInstance(message, proxy);
+            return;
+        }
+        handler.reset(null, null, null);
+        Object target = Interceptor.getTarget(proxy);
+        if (target instanceof Resettable) {
+            try {
+                ((Resettable) target).reset();
+            } catch (Exception ex) {
+                Logger.suppress(ex);
+                super.releaseInstance(message, proxy);
+                return;
+            }
+        }
+        if (!pool.offer(proxy))
+            super.releaseInstance(message, proxy);
     }
 
     private class Handler implements InterceptorHandler {
         UnitOfWork uow;
         Message message;
         Observer observer;
-        Map<Method, String> methods;
+        volatile boolean async;
 
-        Handler(UnitOfWork uow, Map<Method, String> methods, Observer observer, Message message) {
+        Handler(UnitOfWork uow, Observer observer, Message message) {
             this.uow = uow;
             this.message = message;
             this.observer = observer;
-            this.methods = methods;
         }
 
-        @SuppressWarnings("unchecked")
-        private void open(Object target, Method method) {
-            Class cls = target.getClass();
-            ClassSignature classSignature = new ClassSignature(cls);
-            Map<Class<? extends Annotation>, Annotation> map = annotations.getOrDefault(classSignature, new HashMap<>());
-            MethodSignature methodSignature = new MethodSignature(method);
-            Map<Class<? extends Annotation>, Annotation> map2 = annotations.getOrDefault(methodSignature, new HashMap<>());
-
-            for (Map.Entry<Class<? extends Annotation>, Annotation> entry : map.entrySet()) {
-                uow.put((Class) entry.getKey(), entry.getValue());
-            }
-
-            for (Map.Entry<Class<? extends Annotation>, Annotation> entry : map2.entrySet()) {
-                uow.put((Class) entry.getKey(), entry.getValue());
-            }
+        void reset(UnitOfWork uow, Observer observer, Message message) {
+            this.uow = uow;
+            this.observer = observer;
+            this.message = message;
+        }
 
+        private void open(MethodPlan plan) {
+            plan.bind(uow);
             uow.open();
         }
 
@@ -115,16 +169,19 @@ class InstanceResourceProvider extends PerRequestResourceProvider {
         @SuppressWarnings("squid:S3776")
         public Object invoke(CallFrame frame) throws Throwable {
             boolean abort = false;
+            boolean deferred = false;
             Object result = null;
             boolean ignored = false;
+            UnitOfWork work = uow; // a pooled handler is reset on release, possibly before an async response completes
 
             // Note PostConstruct is handled by CXF during createInstance
             boolean uowOpen = false;
-            if (frame.getAnnotation(PreDestroy.class) != null) {
+            MethodPlan plan = plan(frame.getMethod());
+            if (plan.isPreDestroy()) {
                 ignored = true;
             } else {
                 try {
-                    open(frame.getTarget(), frame.getMethod());
+                    open(plan);
                     uowOpen = true;
                 } catch (Exception th) {
                     JaxRSServer.getLogger().debug(th.getMessage(), th);
@@ -154,8 +211,12 @@ class InstanceResourceProvider extends PerRequestResourceProvider {
                         return ret;
                     });
 
-                    long duration = System.currentTimeMillis() - start;
-                    server.computePerformance(frame.getMethod(), methods, duration);
+                    if (plan.isAsync() && uowOpen)
+                        deferred = defer(plan, work, frame.getArguments(), result, start);
+                    if (deferred)
+                        async = true;
+                    if (!deferred)
+                        plan.getRecorder().record(System.currentTimeMillis() - start);
                 } else {
                     // PreDestroy is called
                     result = frame.invoke();
@@ -168,19 +229,58 @@ class InstanceResourceProvider extends PerRequestResourceProvider {
                         Logger.suppress(ex);
                     }
                 }
-                server.recordFailure(frame.getMethod(), methods);
+                plan.getRecorder().fail();
                 abort = true;
                 server.getProvision().log(JaxRSServer.getLogger(), LogLevel.DEBUG, th.getMessage(), th);
                 server.handleException(message, frame, th);
             } finally {
-                if (uowOpen) {
+                if (uowOpen && !deferred) {
                     if (abort)
-                        uow.abort();
-                    else if (!uow.isAborted()) // application can call abort
-                        uow.commit();
+                        work.abort();
+                    else if (!work.isAborted()) // application can call abort
+                        work.commit();
                 }
             }
             return result;
         }
+
+        /*
+         * For a returned CompletionStage or a suspended AsyncResponse the container thread is released when
+         * invoke returns, so the unit of work is committed, or aborted, once the response completes.
+         */
+        @SuppressWarnings("unchecked")
+        private boolean defer(MethodPlan plan, UnitOfWork work, Object[] args, Object result, long start) {
+            AtomicBoolean finished = new AtomicBoolean();
+            BiConsumer<Object, Throwable> finish = (value, error) -> {
+                if (finished.getAndSet(true))
+                    return;
+                try {
+                    if (error != null) {
+                        plan.getRecorder().fail();
+                        work.abort();
+                    } else {
+                        plan.getRecorder().record(System.currentTimeMillis() - start);
+                        if (!work.isAborted())
+                            work.commit();
+                    }
+                } catch (Exception ex) {
+                    JaxRSServer.getLogger().warn("Unable to complete unit of work for " + plan.getMethod(), ex);
+                }
+            };
+
+            if (result instanceof CompletionStage) {
+                ((CompletionStage<Object>) result).whenComplete(finish);
+                return true;
+            }
+
+            AsyncResponse asyncResponse = plan.asyncResponse(args);
+            if (asyncResponse == null)
+                return false;
+            // register before checking so that a response resumed in between is not missed.
+            asyncResponse.register((CompletionCallback) error -> finish.accept(null, error));
+            if (asyncResponse.isDone())
+                finish.accept(null, asyncResponse.isCancelled() ? new CancellationException() : null);
+            return true;
+        }
     }
 }
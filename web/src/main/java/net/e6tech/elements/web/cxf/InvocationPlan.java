@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import javax.annotation.Nonnull;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parameter checks of a resource method compiled from its PathParam, QueryParam and Nonnull annotations.
+ * Only the parameters that must not be null are kept, together with their error messages, so a check
+ * is a walk over two arrays.
+ */
+class InvocationPlan {
+    private static final String CANNOT_BE_NULL = " cannot be null. \n";
+
+    private final int[] slots;
+    private final String[] messages;
+
+    InvocationPlan(Method method) {
+        List<Integer> indexes = new ArrayList<>();
+        List<String> list = new ArrayList<>();
+        Parameter[] params = method.getParameters();
+        for (int idx = 0; idx < params.length; idx++) {
+            Parameter param = params[idx];
+            QueryParam queryParam = param.getAnnotation(QueryParam.class);
+            PathParam pathParam = param.getAnnotation(PathParam.class);
+            String message = null;
+            if (pathParam != null) {
+                message = "path parameter " + pathParam.value() + CANNOT_BE_NULL;
+            } else if (param.getAnnotation(Nonnull.class) != null) {
+                message = (queryParam != null) ? "query parameter " + queryParam.value() + CANNOT_BE_NULL
+                        : "post parameter arg" + idx + CANNOT_BE_NULL;
+            }
+            if (message != null) {
+                indexes.add(idx);
+                list.add(message);
+            }
+        }
+        slots = indexes.stream().mapToInt(Integer::intValue).toArray();
+        messages = list.toArray(new String[0]);
+    }
+
+    void check(Object[] args) {
+        StringBuilder builder = null;
+        for (int i = 0; i < slots.length; i++) {
+            Object arg = args[slots[i]];
+            if (arg == null || (arg instanceof String && ((String) arg).trim().isEmpty())) {
+                if (builder == null)
+                    builder = new StringBuilder();
+                builder.append(messages[i]);
+            }
+        }
+        if (builder != null) {
+            throw new IllegalArgumentException(builder.toString());
+        }
+    }
+}
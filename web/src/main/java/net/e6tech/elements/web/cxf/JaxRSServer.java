@@ -28,6 +28,7 @@ import net.e6tech.elements.common.resources.Resources;
 import net.e6tech.elements.common.resources.ResourcesFactory;
 import net.e6tech.elements.common.util.ExceptionMapper;
 import net.e6tech.elements.common.util.SystemException;
+import org.apache.cxf.ext.logging.AbstractLoggingInterceptor;
 import org.apache.cxf.ext.logging.LoggingFeature;
 import org.apache.cxf.ext.logging.event.LogEvent;
 import org.apache.cxf.ext.logging.event.LogEventSender;
@@ -47,6 +48,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
 
 /**
  * Created by futeh.
@@ -72,6 +74,12 @@ public class JaxRSServer extends CXFServer {
     private ClassLoader classLoader;
     private LogEventSender logEventSender;
     private ResourcesFactory resourcesFactory;
+    private boolean streamingJson = false;
+    private double logSampleRate = 1.0;
+    private int logPayloadLimit = AbstractLoggingInterceptor.DEFAULT_LIMIT;
+    private boolean compression = false;
+    private int compressionMinSize = 1024;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
 
     public static Logger getLogger() {
         return logger;
@@ -152,6 +160,63 @@ public class JaxRSServer extends CXFServer {
         this.classLoader = classLoader;
     }
 
+    /**
+     * When true, JSON is handled by the shared StreamingJsonProvider and messages are logged through a
+     * SampledLoggingFeature, which is only installed if message logging is on at start, i.e. a
+     * LogEventSender is set or the message logger is at trace level.
+     */
+    public boolean isStreamingJson() {
+        return streamingJson;
+    }
+
+    public void setStreamingJson(boolean streamingJson) {
+        this.streamingJson = streamingJson;
+    }
+
+    public double getLogSampleRate() {
+        return logSampleRate;
+    }
+
+    public void setLogSampleRate(double logSampleRate) {
+        this.logSampleRate = logSampleRate;
+    }
+
+    public int getLogPayloadLimit() {
+        return logPayloadLimit;
+    }
+
+    public void setLogPayloadLimit(int logPayloadLimit) {
+        this.logPayloadLimit = logPayloadLimit;
+    }
+
+    /**
+     * When true, response entities larger than compressionMinSize bytes are gzip or deflate encoded
+     * according to the request's Accept-Encoding.
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    public void setCompressionMinSize(int compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
     public ResourcesFactory getResourcesFactory() {
         return resourcesFactory;
     }
@@ -206,7 +271,10 @@ public class JaxRSServer extends CXFServer {
         } else {
             Module module = (res == null) ? null : res.getModule();
             ResourcesFactory factory = (resourcesFactory != null) ? resourcesFactory : getProvision().resourcesFactory();
-            resourceProvider = new InstanceResourceProvider(this, jaxResource.getResourceClass(), prototype, module, factory, hObserver);
+            InstanceResourceProvider instanceProvider = new InstanceResourceProvider(this, jaxResource.getResourceClass(), prototype, module, factory, hObserver);
+            if (jaxResource.isPooled())
+                instanceProvider.setPoolSize(jaxResource.getPoolSize());
+            resourceProvider = instanceProvider;
         }
 
         String resourceName = jaxResource.getName();
@@ -240,11 +308,15 @@ public class JaxRSServer extends CXFServer {
             if (securityAnnotationEngine != null) {
                 securityAnnotationEngine.register(jaxResource.getResourceClass());
             }
+            register(resourceClass);
 
             ResourceProvider resourceProvider = initResourceProvider(res, jaxResource, hObserver);
 
-            for (JaxRSServerController entry : entryList)
+            for (JaxRSServerController entry : entryList) {
                 entry.getFactory().setResourceProvider(resourceClass, resourceProvider);
+                if (jaxResource.isEtag())
+                    entry.addEtagClass(resourceClass);
+            }
 
             resourceClasses.add(resourceClass);
         }
@@ -275,7 +347,7 @@ public class JaxRSServer extends CXFServer {
 
         // create a list of JAXRSServerFactoryBean
         List<JAXRSServerFactoryBean> beans = new LinkedList<>();
-        List<ServerController> controllers = new LinkedList<>();
+        List<JaxRSServerController> controllers = new LinkedList<>();
         synchronized (entries) {
             for (URL url : getURLs()) {
                 JaxRSServerController controller = entries.get(url.getPort());
@@ -292,15 +364,23 @@ public class JaxRSServer extends CXFServer {
         for (JAXRSServerFactoryBean bean: beans)
             bean.getBus().setProperty("skip.default.json.provider.registration", true);
 
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.disable(SerializationFeature.WRAP_ROOT_VALUE)
-                .enable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
-                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
-                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
-                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        JacksonJaxbJsonProvider jackson = new JacksonJaxbJsonProvider(mapper, JacksonJaxbJsonProvider.DEFAULT_ANNOTATIONS);
-        for (JAXRSServerFactoryBean bean: beans)
-            bean.setProvider(jackson);
+        if (streamingJson) {
+            StreamingJsonProvider provider = StreamingJsonProvider.getShared();
+            for (JAXRSServerFactoryBean bean : beans) {
+                bean.getResourceClasses().forEach(provider::warmUp);
+                bean.setProvider(provider);
+            }
+        } else {
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.disable(SerializationFeature.WRAP_ROOT_VALUE)
+                    .enable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                    .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                    .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+            JacksonJaxbJsonProvider jackson = new JacksonJaxbJsonProvider(mapper, JacksonJaxbJsonProvider.DEFAULT_ANNOTATIONS);
+            for (JAXRSServerFactoryBean bean : beans)
+                bean.setProvider(jackson);
+        }
 
         // setup Cors
         if (isCorsFilter()) {
@@ -311,12 +391,36 @@ public class JaxRSServer extends CXFServer {
         }
 
         // logging
-        LoggingFeature feature = new LoggingFeature();
         DefaultLogEventSender sender = new DefaultLogEventSender();
-        feature.setInSender(sender);
-        feature.setOutSender(sender);
-        for (JAXRSServerFactoryBean bean: beans) {
-            bean.getFeatures().add(feature);
+        if (streamingJson) {
+            if (logEventSender != null || messageLogger.isTraceEnabled()) {
+                SampledLoggingFeature feature = new SampledLoggingFeature(sender);
+                feature.setSampleRate(logSampleRate);
+                feature.setLimit(logPayloadLimit);
+                for (JAXRSServerFactoryBean bean : beans)
+                    bean.getFeatures().add(feature);
+            }
+        } else {
+            LoggingFeature feature = new LoggingFeature();
+            feature.setInSender(sender);
+            feature.setOutSender(sender);
+            for (JAXRSServerFactoryBean bean : beans) {
+                bean.getFeatures().add(feature);
+            }
+        }
+
+        // compression and conditional GET
+        if (compression) {
+            CompressionInterceptor interceptor = new CompressionInterceptor();
+            interceptor.setMinSize(compressionMinSize);
+            interceptor.setLevel(compressionLevel);
+            for (JAXRSServerFactoryBean bean: beans)
+                bean.setProvider(interceptor);
+        }
+
+        for (JaxRSServerController controller : controllers) {
+            if (!controller.getEtagClasses().isEmpty())
+                controller.getFactory().setProvider(new ConditionalGetInterceptor(controller.getEtagClasses()));
         }
 
         // setup exception mapper
@@ -22,10 +22,13 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 public class JaxRSServerController extends ServerController<JAXRSServerFactoryBean> {
 
     private List<Class<?>> resourceClasses = new ArrayList<>();
+    private Set<Class<?>> etagClasses = new CopyOnWriteArraySet<>();
 
     JaxRSServerController(URL url, JAXRSServerFactoryBean bean) throws URISyntaxException {
         super(url, bean);
@@ -39,6 +42,14 @@ public class JaxRSServerController extends ServerController<JAXRSServerFactoryBe
         return resourceClasses;
     }
 
+    void addEtagClass(Class<?> cls) {
+        etagClasses.add(cls);
+    }
+
+    Set<Class<?>> getEtagClasses() {
+        return etagClasses;
+    }
+
     @Override
     public int hashCode() {
         return super.hashCode();
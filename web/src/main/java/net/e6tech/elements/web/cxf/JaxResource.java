@@ -37,6 +37,9 @@ public class JaxResource {
     private String name;
     private String prototypeResolver;
     private boolean bindHeaderObserver = true;
+    private boolean pooled;
+    private int poolSize = 64;
+    private boolean etag;
 
     public JaxResource() {
     }
@@ -84,6 +87,21 @@ public class JaxResource {
         return this;
     }
 
+    public JaxResource pooled(boolean pooled) {
+        setPooled(pooled);
+        return this;
+    }
+
+    public JaxResource poolSize(int poolSize) {
+        setPoolSize(poolSize);
+        return this;
+    }
+
+    public JaxResource etag(boolean etag) {
+        setEtag(etag);
+        return this;
+    }
+
     public JaxResource prototype(String prototype) {
         setPrototypeResolver(prototype);
         return this;
@@ -148,6 +166,39 @@ public class JaxResource {
         this.singleton = singleton;
     }
 
+    /**
+     * When true, per-request instances are kept in a pool and reused instead of being created, copied from the
+     * prototype and proxied for every request.  An instance that implements Resettable is reset before it
+     * goes back to the pool; otherwise it must not carry state from one request to the next.
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * When true, GET responses of this resource carry an ETag computed from the entity and conditional
+     * requests are answered with 304 Not Modified.  See ConditionalGetInterceptor.
+     */
+    public boolean isEtag() {
+        return etag;
+    }
+
+    public void setEtag(boolean etag) {
+        this.etag = etag;
+    }
+
     public String getRegisterBean() {
         return registerBean;
     }
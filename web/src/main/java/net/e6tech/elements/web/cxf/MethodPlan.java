@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import net.e6tech.elements.common.resources.UnitOfWork;
+
+import javax.annotation.PreDestroy;
+import javax.ws.rs.container.AsyncResponse;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Per-method metadata of a resource class that is computed once when the resource is registered
+ * instead of on every request.
+ */
+class MethodPlan {
+    private final Method method;
+    private final Class[] annotationTypes;
+    private final Annotation[] annotations;
+    private final boolean preDestroy;
+    private final MetricsRegistry.Recorder recorder;
+    private final int asyncResponseIndex;
+    private final boolean completionStage;
+
+    MethodPlan(Method method, Map<Class<? extends Annotation>, Annotation> classAnnotations,
+               Map<Class<? extends Annotation>, Annotation> methodAnnotations, MetricsRegistry.Recorder recorder) {
+        this.method = method;
+        this.recorder = recorder;
+        // method annotations override class annotations of the same type.
+        Map<Class<? extends Annotation>, Annotation> merged = new LinkedHashMap<>();
+        if (classAnnotations != null)
+            merged.putAll(classAnnotations);
+        if (methodAnnotations != null)
+            merged.putAll(methodAnnotations);
+        annotationTypes = merged.keySet().toArray(new Class[0]);
+        annotations = merged.values().toArray(new Annotation[0]);
+        preDestroy = method.getAnnotation(PreDestroy.class) != null;
+        completionStage = CompletionStage.class.isAssignableFrom(method.getReturnType());
+        int index = -1;
+        Class[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (AsyncResponse.class.isAssignableFrom(types[i]))
+                index = i;
+        }
+        asyncResponseIndex = index;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    MetricsRegistry.Recorder getRecorder() {
+        return recorder;
+    }
+
+    boolean isPreDestroy() {
+        return preDestroy;
+    }
+
+    /**
+     * True if the method returns a CompletionStage or takes an AsyncResponse, i.e. the response may be
+     * completed after the invocation returns.
+     */
+    boolean isAsync() {
+        return completionStage || asyncResponseIndex >= 0;
+    }
+
+    AsyncResponse asyncResponse(Object[] args) {
+        return (asyncResponseIndex < 0 || args == null) ? null : (AsyncResponse) args[asyncResponseIndex];
+    }
+
+    @SuppressWarnings("unchecked")
+    void bind(UnitOfWork uow) {
+        for (int i = 0; i < annotations.length; i++)
+            uow.put(annotationTypes[i], annotations[i]);
+    }
+}
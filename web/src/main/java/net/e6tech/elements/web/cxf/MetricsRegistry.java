@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import net.e6tech.elements.common.logging.Logger;
+import net.e6tech.elements.jmx.JMXService;
+import net.e6tech.elements.jmx.stat.Measurement;
+
+import javax.management.JMException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds a Recorder per resource method.  Recorders are resolved when a resource class is registered and
+ * write straight into the method's Measurement.  The Measurement is the MBean registered under
+ * net.e6tech:type=Restful,name=..., so JMX reads what the requests recorded without any MBeanServer call
+ * on the request path.
+ *
+ * Measurements are shared by every server so that a method records into one MBean, but whether a server records
+ * is decided by its own registry's enabled flag.  The Measurement's own enabled flag is left to JMX.
+ */
+public class MetricsRegistry {
+    private static final Logger logger = Logger.getLogger();
+    private static final String OBJECT_NAME = "net.e6tech:type=Restful,name=";
+
+    // shared by all servers so that the same method records into the same registered MBean.
+    private static final Map<String, Measurement> measurements = new ConcurrentHashMap<>();
+
+    private Map<Method, Recorder> recorders = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void register(Class resourceClass) {
+        for (Method method : resourceClass.getMethods()) {
+            if (method.getDeclaringClass() != Object.class)
+                recorder(method);
+        }
+    }
+
+    public Recorder recorder(Method method) {
+        Recorder recorder = recorders.get(method);
+        if (recorder != null)
+            return recorder;
+        return recorders.computeIfAbsent(method, this::newRecorder);
+    }
+
+    public Collection<Recorder> getRecorders() {
+        return Collections.unmodifiableCollection(recorders.values());
+    }
+
+    private Recorder newRecorder(Method method) {
+        String name = methodName(method);
+        Measurement measurement = measurements.computeIfAbsent(name, n -> {
+            Measurement m = new Measurement(n, "ms", true);
+            try {
+                JMXService.registerIfAbsent(OBJECT_NAME + n, () -> m);
+            } catch (JMException e) {
+                logger.debug("Unable to register measurement for " + method, e);
+            }
+            return m;
+        });
+        return new Recorder(this, name, measurement);
+    }
+
+    static String methodName(Method method) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(method.getDeclaringClass().getTypeName());
+        builder.append(".");
+        builder.append(method.getName());
+        Class[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            builder.append("|"); // separating parameters using underscores instead commas because of JMX
+            // ObjectName constraint
+            builder.append(types[i].getSimpleName());
+        }
+        return builder.toString();
+    }
+
+    public static class Recorder {
+        private final MetricsRegistry registry;
+        private final String name;
+        private final Measurement measurement;
+
+        Recorder(MetricsRegistry registry, String name, Measurement measurement) {
+            this.registry = registry;
+            this.name = name;
+            this.measurement = measurement;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Measurement getMeasurement() {
+            return measurement;
+        }
+
+        public void record(long duration) {
+            if (logger.isTraceEnabled())
+                logger.trace("{} call took {}ms", name, duration);
+            if (registry.enabled)
+                measurement.add(duration);
+        }
+
+        public void fail() {
+            if (registry.enabled)
+                measurement.fail();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.ext.logging.AbstractLoggingInterceptor;
+import org.apache.cxf.ext.logging.LoggingInInterceptor;
+import org.apache.cxf.ext.logging.LoggingOutInterceptor;
+import org.apache.cxf.ext.logging.event.LogEventSender;
+import org.apache.cxf.feature.AbstractFeature;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.InterceptorProvider;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs a sample of the exchanges instead of all of them.  The request and the response of an exchange
+ * are either both logged or both skipped.  Payloads are only cached up to the limit, in memory, so a
+ * large response is streamed to the client rather than buffered for logging.
+ */
+public class SampledLoggingFeature extends AbstractFeature {
+    static final String SAMPLED = SampledLoggingFeature.class.getName() + ".sampled";
+
+    private LogEventSender sender;
+    private double sampleRate = 1.0;
+    private int limit = AbstractLoggingInterceptor.DEFAULT_LIMIT;
+
+    public SampledLoggingFeature(LogEventSender sender) {
+        this.sender = sender;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    protected void initializeProvider(InterceptorProvider provider, Bus bus) {
+        LoggingInInterceptor in = new SampledIn(sender);
+        in.setLimit(limit);
+        in.setInMemThreshold(limit);
+        LoggingOutInterceptor out = new SampledOut(sender);
+        out.setLimit(limit);
+        out.setInMemThreshold(limit);
+        provider.getInInterceptors().add(in);
+        provider.getInFaultInterceptors().add(in);
+        provider.getOutInterceptors().add(out);
+        provider.getOutFaultInterceptors().add(out);
+    }
+
+    boolean sample(Message message) {
+        Exchange exchange = message.getExchange();
+        Boolean sampled = (exchange == null) ? null : (Boolean) exchange.get(SAMPLED);
+        if (sampled == null) {
+            sampled = sampleRate >= 1.0 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+            if (exchange != null)
+                exchange.put(SAMPLED, sampled);
+        }
+        return sampled;
+    }
+
+    private class SampledIn extends LoggingInInterceptor {
+        SampledIn(LogEventSender sender) {
+            super(sender);
+        }
+
+        @Override
+        public void handleMessage(Message message) throws Fault {
+            if (sample(message))
+                super.handleMessage(message);
+        }
+    }
+
+    private class SampledOut extends LoggingOutInterceptor {
+        SampledOut(LogEventSender sender) {
+            super(sender);
+        }
+
+        @Override
+        public void handleMessage(Message message) throws Fault {
+            if (sample(message))
+                super.handleMessage(message);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by barry.
@@ -46,6 +47,7 @@ public class SecurityAnnotationEngine {
 
     private Map<Object, Class> securityProviders = new HashMap<>();
     private Map<String, Map<MethodSignature, Set<String>>> scannedClassMap = new HashMap<>();
+    private Map<Class, Map<Method, AccessPlan>> accessPlans = new ConcurrentHashMap<>();
 
     public Map<Object, Class> getSecurityProviders() {
         return securityProviders;
@@ -86,45 +88,41 @@ public class SecurityAnnotationEngine {
         }
 
         scannedClassMap.put(cls.getName(), methodMap);
+
+        Map<Method, AccessPlan> plans = new ConcurrentHashMap<>();
+        for (Method method : cls.getMethods()) {
+            if (method.getDeclaringClass() != Object.class)
+                plans.put(method, new AccessPlan(method, lookupRoles(cls, method)));
+        }
+        accessPlans.put(cls, plans);
         return this;
     }
 
+    /**
+     * Returns the compiled roles of a method.  Plans of registered classes are built by register; others
+     * are built on first use.
+     */
+    public AccessPlan accessPlan(Class cls, Method method) {
+        Map<Method, AccessPlan> plans = accessPlans.computeIfAbsent(cls, c -> new ConcurrentHashMap<>());
+        AccessPlan plan = plans.get(method);
+        if (plan == null)
+            plan = plans.computeIfAbsent(method, m -> new AccessPlan(m, lookupRoles(cls, m)));
+        return plan;
+    }
+
 
     public boolean hasAccess(Object instance, Method method, Object[] args, String userRole) {
-        if (userRole == null) {
-            return hasAccess(instance, method, args, Collections.emptySet());
-        }
-        Set<String> roles = new HashSet<>();
-        roles.add(userRole);
-        return hasAccess(instance, method, args, roles);
+        AccessPlan plan = accessPlan(ClassHelper.getRealClass(instance), method);
+        if (plan.isUnmapped(instance))
+            return true;
+        return plan.hasAccess(userRole);
     }
 
     public boolean hasAccess(Object instance, Method method, Object[] args, Set<String> userRoles) {
-        Set<String> value = lookupRoles(instance, method, args);
-        if (value == null) {
-            if (logger.isWarnEnabled())
-                logger.warn("no security map entry found: class: {} method:{}",
-                        instance.getClass().getName(), createMethodSig(method));
-            return true;
-        }
-
-        if (userRoles.contains("ReadOnly") && method.getAnnotation(GET.class) == null && method.getAnnotation(ReadOnly.class) == null) {
-            return false;
-        }
-
-        if (userRoles.contains("PermitAll")) {
-            return true;
-        } else if (value.contains(DenyAll.class.getSimpleName())) {
-            return false;
-        } else if (value.contains(PermitAll.class.getSimpleName())) {
+        AccessPlan plan = accessPlan(ClassHelper.getRealClass(instance), method);
+        if (plan.isUnmapped(instance))
             return true;
-        } else {
-            for (String userRole : userRoles) {
-                if (value.contains(userRole))
-                    return true;
-            }
-            return false;
-        }
+        return plan.hasAccess(userRoles);
     }
 
     @SuppressWarnings("squid:S1172")
@@ -213,4 +211,67 @@ public class SecurityAnnotationEngine {
         return new MethodSignature(method);
     }
 
+    /**
+     * Roles of a method reduced to flags and an immutable role set, so that an access check does not
+     * allocate or compute signatures.
+     */
+    public static class AccessPlan {
+        private static final String READ_ONLY = "ReadOnly";
+        private static final String PERMIT_ALL = PermitAll.class.getSimpleName();
+
+        private final Method method;
+        private final Set<String> roles;
+        private final boolean denyAll;
+        private final boolean permitAll;
+        private final boolean readOnly;
+
+        AccessPlan(Method method, Set<String> roles) {
+            this.method = method;
+            this.roles = (roles == null) ? null : Collections.unmodifiableSet(new HashSet<>(roles));
+            denyAll = roles != null && roles.contains(DenyAll.class.getSimpleName());
+            permitAll = roles != null && roles.contains(PERMIT_ALL);
+            readOnly = method.getAnnotation(GET.class) != null || method.getAnnotation(ReadOnly.class) != null;
+        }
+
+        public Set<String> getRoles() {
+            return roles;
+        }
+
+        boolean isUnmapped(Object instance) {
+            if (roles != null)
+                return false;
+            if (logger.isWarnEnabled())
+                logger.warn("no security map entry found: class: {} method:{}",
+                        instance.getClass().getName(), new MethodSignature(method));
+            return true;
+        }
+
+        public boolean hasAccess(String userRole) {
+            if (READ_ONLY.equals(userRole) && !readOnly)
+                return false;
+            if (PERMIT_ALL.equals(userRole))
+                return true;
+            if (denyAll)
+                return false;
+            if (permitAll)
+                return true;
+            return userRole != null && roles.contains(userRole);
+        }
+
+        public boolean hasAccess(Set<String> userRoles) {
+            if (userRoles.contains(READ_ONLY) && !readOnly)
+                return false;
+            if (userRoles.contains(PERMIT_ALL))
+                return true;
+            if (denyAll)
+                return false;
+            if (permitAll)
+                return true;
+            for (String userRole : userRoles) {
+                if (roles.contains(userRole))
+                    return true;
+            }
+            return false;
+        }
+    }
 }
@@ -24,9 +24,6 @@ import org.apache.cxf.message.Message;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.lang.reflect.Method;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 class SharedResourceProvider extends SingletonResourceProvider {
 
@@ -34,7 +31,6 @@ class SharedResourceProvider extends SingletonResourceProvider {
 
     private Observer observer;
     private Object proxy = null;
-    private Map<Method, String> methods = new ConcurrentHashMap<>();
     private CXFServer server;
 
     SharedResourceProvider(JaxRSServer server, Object instance, Observer observer) {
@@ -67,7 +63,7 @@ class SharedResourceProvider extends SingletonResourceProvider {
                     Object result = frame.invoke();
 
                     long duration = System.currentTimeMillis() - start;
-                    server.computePerformance(frame.getMethod(), methods, duration);
+                    server.computePerformance(frame.getMethod(), duration);
                     if (cloneObserver != null)
                         cloneObserver.afterInvocation(result);
 
@@ -75,7 +71,7 @@ class SharedResourceProvider extends SingletonResourceProvider {
                 } catch (Exception th) {
                     if (cloneObserver != null)
                         cloneObserver.onException(th);
-                    server.recordFailure(frame.getMethod(), methods);
+                    server.recordFailure(frame.getMethod());
                     server.getProvision().log(JaxRSServer.getLogger(), LogLevel.DEBUG, th.getMessage(), th);
                     server.handleException(message, frame, th);
                 } finally {
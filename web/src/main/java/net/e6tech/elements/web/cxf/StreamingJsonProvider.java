@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import net.e6tech.elements.common.logging.Logger;
+
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * JSON provider that shares one ObjectMapper across all servers.  Unlike the default provider it only
+ * uses Jackson annotations, not JAXB ones.  Afterburner is registered when it is on the class path
+ * so that bean (de)serializers use generated accessors instead of reflection.
+ * Serializers for the entity types of a resource class are built when the class is registered rather
+ * than by the first request.  Entities are written straight to the response stream.
+ */
+public class StreamingJsonProvider extends JacksonJsonProvider {
+    private static final Logger logger = Logger.getLogger();
+    private static final String AFTERBURNER = "com.fasterxml.jackson.module.afterburner.AfterburnerModule";
+    private static final StreamingJsonProvider shared = new StreamingJsonProvider(newMapper());
+
+    private final ObjectMapper mapper;
+
+    public StreamingJsonProvider(ObjectMapper mapper) {
+        super(mapper, BASIC_ANNOTATIONS);
+        this.mapper = mapper;
+    }
+
+    public static StreamingJsonProvider getShared() {
+        return shared;
+    }
+
+    public static ObjectMapper newMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.disable(SerializationFeature.WRAP_ROOT_VALUE)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        try {
+            mapper.registerModule((Module) Class.forName(AFTERBURNER).getDeclaredConstructor().newInstance());
+        } catch (ClassNotFoundException ex) {
+            Logger.suppress(ex);
+        } catch (ReflectiveOperationException ex) {
+            logger.warn("Cannot register " + AFTERBURNER, ex);
+        }
+        return mapper;
+    }
+
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * Builds and caches the serializers of the return types and the deserializers of the entity
+     * parameters of resourceClass.
+     */
+    public void warmUp(Class<?> resourceClass) {
+        for (Method method : resourceClass.getMethods()) {
+            if (method.getDeclaringClass() == Object.class)
+                continue;
+            Type returnType = entityType(method.getGenericReturnType());
+            if (returnType != null) {
+                try {
+                    mapper.writerFor(mapper.getTypeFactory().constructType(returnType));
+                } catch (Exception ex) {
+                    logger.debug("Cannot prepare serializer for " + method, ex);
+                }
+            }
+
+            Type[] paramTypes = method.getGenericParameterTypes();
+            for (int i = 0; i < paramTypes.length; i++) {
+                // an entity parameter is the one without JAX-RS annotations
+                if (method.getParameterAnnotations()[i].length > 0 || entityType(paramTypes[i]) == null)
+                    continue;
+                try {
+                    JavaType type = mapper.getTypeFactory().constructType(paramTypes[i]);
+                    mapper.readerFor(type);
+                } catch (Exception ex) {
+                    logger.debug("Cannot prepare deserializer for " + method, ex);
+                }
+            }
+        }
+    }
+
+    private static Type entityType(Type type) {
+        if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == CompletionStage.class)
+            type = ((ParameterizedType) type).getActualTypeArguments()[0];
+        Class<?> raw = (type instanceof ParameterizedType) ? (Class<?>) ((ParameterizedType) type).getRawType()
+                : (type instanceof Class) ? (Class<?>) type : null;
+        if (raw == null || raw == void.class || raw == Void.class || raw.isPrimitive()
+                || raw == String.class || Response.class.isAssignableFrom(raw))
+            return null;
+        return type;
+    }
+}
@@ -37,6 +37,15 @@ import org.apache.cxf.transport.Destination;
 import org.apache.cxf.transport.http_jetty.JettyHTTPDestination;
 import org.apache.cxf.transport.http_jetty.JettyHTTPServerEngine;
 import org.apache.cxf.transport.http_jetty.JettyHTTPServerEngineFactory;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import javax.net.ssl.KeyManager;
@@ -57,12 +66,14 @@ import java.util.*;
 public class JettyEngine implements ServerEngine {
 
     private static Logger logger = Logger.getLogger();
+    private static final String HTTP2_PROTOCOL = "h2";
 
     private QueuedThreadPool queuedThreadPool;
     private boolean useActorThreadPool = false;
     private Provision provision;
     private WorkerPoolConfig workerPoolConfig = new WorkerPoolConfig();
     private JettyActorExecutor executor;
+    private boolean http2 = false;
 
     public QueuedThreadPool getQueuedThreadPool() {
         return queuedThreadPool;
@@ -90,6 +101,18 @@ public class JettyEngine implements ServerEngine {
         this.useActorThreadPool = useActorThreadPool;
     }
 
+    /**
+     * Adds HTTP/2 to the connector: h2c (prior knowledge and HTTP/1.1 upgrade) for http and ALPN for https.
+     * ALPN requires a JDK with ALPN support (9+ or 8u252+).
+     */
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
     public WorkerPoolConfig getWorkerPoolConfig() {
         return workerPoolConfig;
     }
@@ -144,6 +167,50 @@ public class JettyEngine implements ServerEngine {
 
         if (engine != null) {
             startThreadPool(engine);
+            if (http2)
+                startHttp2(engine);
+        }
+    }
+
+    /*
+     * CXF creates the connector with HTTP/1.1 only and it is not configurable before the engine starts,
+     * so the connector is briefly stopped to swap in the HTTP/2 connection factories.
+     */
+    private void startHttp2(JettyHTTPServerEngine engine) {
+        if (!(engine.getConnector() instanceof AbstractConnector))
+            return;
+        AbstractConnector connector = (AbstractConnector) engine.getConnector();
+        if (connector.getConnectionFactory(HTTP2ServerConnectionFactory.class) != null)
+            return; // engine is shared by another server on the same port
+
+        HttpConnectionFactory http = connector.getConnectionFactory(HttpConnectionFactory.class);
+        if (http == null)
+            http = new HttpConnectionFactory();
+        HttpConfiguration config = http.getHttpConfiguration();
+        SslConnectionFactory ssl = connector.getConnectionFactory(SslConnectionFactory.class);
+        try {
+            connector.stop();
+            connector.clearConnectionFactories();
+            if (ssl == null) {
+                connector.addConnectionFactory(http);
+                connector.addConnectionFactory(new HTTP2CServerConnectionFactory(config));
+                connector.setDefaultProtocol(http.getProtocol());
+            } else {
+                SslContextFactory sslContextFactory = ssl.getSslContextFactory();
+                sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+                sslContextFactory.setUseCipherSuitesOrder(true);
+                ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory(HTTP2_PROTOCOL, http.getProtocol());
+                alpn.setDefaultProtocol(http.getProtocol());
+                SslConnectionFactory tls = new SslConnectionFactory(sslContextFactory, alpn.getProtocol());
+                connector.addConnectionFactory(tls);
+                connector.addConnectionFactory(alpn);
+                connector.addConnectionFactory(new HTTP2ServerConnectionFactory(config));
+                connector.addConnectionFactory(http);
+                connector.setDefaultProtocol(tls.getProtocol());
+            }
+            connector.start();
+        } catch (Exception ex) {
+            throw new SystemException("Cannot enable HTTP/2 on port " + engine.getPort(), ex);
         }
     }
 
@@ -28,8 +28,10 @@ import net.e6tech.elements.web.cxf.ServerEngine;
 import org.apache.catalina.Container;
 import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http2.Http2Protocol;
 import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
 import org.apache.tomcat.util.net.SSLHostConfig;
 import org.apache.tomcat.util.net.SSLHostConfigCertificate;
@@ -58,6 +60,8 @@ public class TomcatEngine implements ServerEngine {
     private Provision provision;
     private boolean useActorThreadPool = false;
     private WorkerPoolConfig workerPoolConfig = new WorkerPoolConfig();
+    private boolean http2 = false;
+    private boolean asyncSupported = true;
 
     public int getMaxThreads() {
         return maxThreads;
@@ -91,6 +95,30 @@ public class TomcatEngine implements ServerEngine {
         this.baseDir = baseDir;
     }
 
+    /**
+     * Adds HTTP/2 to the connector: h2c through the HTTP/1.1 upgrade for http and ALPN for https.  ALPN
+     * requires a JDK with ALPN support (9+ or 8u252+) or the APR/OpenSSL connector.
+     */
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    /**
+     * Whether the JAX-RS servlet supports async processing, which is required for resource methods that
+     * take an AsyncResponse or return a CompletionStage.
+     */
+    public boolean isAsyncSupported() {
+        return asyncSupported;
+    }
+
+    public void setAsyncSupported(boolean asyncSupported) {
+        this.asyncSupported = asyncSupported;
+    }
+
     public Provision getProvision() {
         return provision;
     }
@@ -133,7 +161,8 @@ public class TomcatEngine implements ServerEngine {
         if (context.endsWith("/"))
             context = context.substring(0, context.length() - 1);
         Context ctx = tomcat.addContext(context, null);
-        tomcat.addServlet(context, "jaxrs", servlet);
+        Wrapper wrapper = tomcat.addServlet(context, "jaxrs", servlet);
+        wrapper.setAsyncSupported(asyncSupported);
 
         // host name port and context, e.g, http://0.0.0.0:8080/restful are controlled by Tomcat.
         // JaxRSServer sets the addresse to "/" so that servlet mapping needs to
@@ -192,6 +221,8 @@ public class TomcatEngine implements ServerEngine {
         connector.setAttribute("maxConnections", maxConnections); // default 10000
         connector.setAttribute("minSpareThreads", minSpareThreads); // default 10
         connector.setAttribute("address", url.getHost());
+        if (http2)
+            connector.addUpgradeProtocol(new Http2Protocol());
 
         if ("https".equals(url.getProtocol())) {
             connector.setSecure(true);
@@ -15,9 +15,11 @@ limitations under the License.
 */
 package net.e6tech.elements.web.security.vault;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import net.e6tech.elements.common.inject.Inject;
 import net.e6tech.elements.common.logging.Logger;
 import net.e6tech.elements.common.resources.Provision;
@@ -27,6 +29,7 @@ import net.e6tech.elements.security.vault.Credential;
 import net.e6tech.elements.security.vault.VaultManager;
 import net.e6tech.elements.web.security.vault.client.*;
 
+import javax.annotation.PreDestroy;
 import javax.crypto.BadPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
@@ -35,13 +38,27 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static net.e6tech.elements.security.vault.Constants.mapper;
 
 /**
  * Created by futeh.
+ *
+ * Keys unwrapped for Encrypt, Decrypt with a key block and DecryptKeys are cached for at most keyLifetime
+ * milliseconds, one key object per entry that is handed to the cipher as is.  The key bytes are zeroed
+ * when an entry is evicted or expires, or, if a request is still using it, when that request is done.
+ * The cipher provider still takes its own copy of the key on every init, which this class cannot zero.
+ * The credential is checked on every request regardless.  stop() shuts down the cleaner and zeroes
+ * all cached keys.
  */
 @Path("/keyserver/v1")
 public class KeyServer {
@@ -49,6 +66,10 @@ public class KeyServer {
     private static Logger logger = Logger.getLogger();
     private VaultManager vaultManager;
     private Provision provision;
+    private long keyLifetime = 5 * 60 * 1000L;
+    private int keyCacheSize = 1000;
+    private Cache<String, UnwrappedKey> unwrappedKeys = newUnwrappedKeys();
+    private volatile ScheduledExecutorService cleaner;
     private LoadingCache<String, SecretKey> clientKeys = CacheBuilder.newBuilder()
             .maximumSize(1000)
             .initialCapacity(20)
@@ -79,6 +100,94 @@ public class KeyServer {
         this.provision = provision;
     }
 
+    public long getKeyLifetime() {
+        return keyLifetime;
+    }
+
+    public void setKeyLifetime(long keyLifetime) {
+        this.keyLifetime = keyLifetime;
+        resetUnwrappedKeys();
+    }
+
+    public int getKeyCacheSize() {
+        return keyCacheSize;
+    }
+
+    public void setKeyCacheSize(int keyCacheSize) {
+        this.keyCacheSize = keyCacheSize;
+        resetUnwrappedKeys();
+    }
+
+    private Cache<String, UnwrappedKey> newUnwrappedKeys() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(keyCacheSize)
+                .expireAfterWrite(keyLifetime, TimeUnit.MILLISECONDS)
+                .concurrencyLevel(Provision.cacheBuilderConcurrencyLevel)
+                .<String, UnwrappedKey>removalListener(notification -> {
+                    if (notification.getValue() != null)
+                        notification.getValue().evict();
+                })
+                .build();
+    }
+
+    private synchronized void resetUnwrappedKeys() {
+        Cache<String, UnwrappedKey> old = unwrappedKeys;
+        unwrappedKeys = newUnwrappedKeys();
+        old.invalidateAll();
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+            cleaner = null;
+        }
+    }
+
+    // Guava only expires entries when the cache is used, so an idle server would keep keys around.
+    private synchronized void startCleaner() {
+        if (cleaner != null)
+            return;
+        cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "KeyServer-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, keyLifetime / 4);
+        Cache<String, UnwrappedKey> cache = unwrappedKeys;
+        cleaner.scheduleWithFixedDelay(cache::cleanUp, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+            cleaner = null;
+        }
+        unwrappedKeys.invalidateAll();
+    }
+
+    private <T> T withKey(String encryptedKey, KeyOperation<T> operation) throws GeneralSecurityException {
+        if (cleaner == null)
+            startCleaner();
+        Cache<String, UnwrappedKey> cache = unwrappedKeys;
+        while (true) {
+            UnwrappedKey key;
+            try {
+                key = cache.get(encryptedKey, () -> new UnwrappedKey(vaultManager._decrypt(encryptedKey), vaultManager.getSymmetricCipher().getAlgorithm()));
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                if (e.getCause() instanceof GeneralSecurityException)
+                    throw (GeneralSecurityException) e.getCause();
+                throw new GeneralSecurityException(e.getCause());
+            }
+            if (key.acquire()) {
+                try {
+                    return operation.apply(key);
+                } finally {
+                    key.release();
+                }
+            }
+            // evicted between lookup and use
+            cache.asMap().remove(encryptedKey, key);
+        }
+    }
+
     public LoadingCache<String, SecretKey> getClientKeys() {
         return clientKeys;
     }
@@ -148,16 +257,39 @@ public class KeyServer {
                 value = mapper.writeValueAsString(ct);
             } else if (action instanceof Encrypt) {
                 Encrypt encrypt = (Encrypt) action;
-                value = vaultManager.encrypt(credential, encrypt.getKeyBlock(), encrypt.getData(), encrypt.getIv());
+                vaultManager.authorize(credential);
+                value = withKey(encrypt.getKeyBlock(), key ->
+                        vaultManager.getSymmetricCipher().encrypt(key, encrypt.getData(), encrypt.getIv()));
             } else if (action instanceof Decrypt) {
                 Decrypt decrypt = (Decrypt) action;
                 byte[] result;
                 if (decrypt.getKeyBlock() == null) {
                     result = vaultManager.decrypt(credential, decrypt.getSecret());
                 } else {
-                    result = vaultManager.decrypt(credential, decrypt.getKeyBlock(), decrypt.getSecret(), decrypt.getIv());
+                    vaultManager.authorize(credential);
+                    result = withKey(decrypt.getKeyBlock(), key ->
+                            vaultManager.getSymmetricCipher().decrypt(key, decrypt.getSecret(), decrypt.getIv()));
                 }
                 return vaultManager.getSymmetricCipher().encrypt(clientKey, result, null);
+            } else if (action instanceof DecryptKeys) {
+                DecryptKeys decryptKeys = (DecryptKeys) action;
+                vaultManager.authorize(credential);
+                Map<String, String> keys = new LinkedHashMap<>();
+                for (String key : decryptKeys.getKeys()) {
+                    try {
+                        keys.put(key, withKey(key, secretKey -> {
+                            byte[] bytes = secretKey.getEncoded();
+                            try {
+                                return vaultManager.getSymmetricCipher().toString(bytes);
+                            } finally {
+                                Arrays.fill(bytes, (byte) 0);
+                            }
+                        }));
+                    } catch (GeneralSecurityException ex) {
+                        logger.debug(ex.getMessage(), ex);
+                    }
+                }
+                value = mapper.writeValueAsString(keys);
             } else {
                 throw new SystemException("Unsupported action " + action);
             }
@@ -173,4 +305,65 @@ public class KeyServer {
             throw new SystemException(ex);
         }
     }
+
+    @FunctionalInterface
+    private interface KeyOperation<T> {
+        T apply(SecretKey key) throws GeneralSecurityException;
+    }
+
+    /*
+     * A key shared by concurrent requests.  Unlike SecretKeySpec it keeps the caller's array, so the bytes
+     * are zeroed once the entry has left the cache and no request is using them.
+     */
+    private static class UnwrappedKey implements SecretKey {
+        private static final long serialVersionUID = 4185170946113472383L;
+        private final byte[] bytes;
+        private final String algorithm;
+        private int users;
+        private boolean evicted;
+
+        UnwrappedKey(byte[] bytes, String algorithm) {
+            this.bytes = bytes;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return bytes.clone();
+        }
+
+        @Override
+        public synchronized boolean isDestroyed() {
+            return evicted && users == 0;
+        }
+
+        synchronized boolean acquire() {
+            if (evicted)
+                return false;
+            users++;
+            return true;
+        }
+
+        synchronized void release() {
+            users--;
+            if (evicted && users == 0)
+                Arrays.fill(bytes, (byte) 0);
+        }
+
+        synchronized void evict() {
+            evicted = true;
+            if (users == 0)
+                Arrays.fill(bytes, (byte) 0);
+        }
+    }
 }
@@ -0,0 +1,35 @@
+/*
+Copyright 2015-2019 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.web.security.vault.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decrypts several keys, each encrypted with the master key, in one request.  The result is a map of
+ * encrypted key to the decrypted key bytes, encoded by the symmetric cipher; keys that cannot be decrypted are left out.
+ */
+public class DecryptKeys extends Action {
+    private List<String> keys = new ArrayList<>();
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(List<String> keys) {
+        this.keys = keys;
+    }
+}
@@ -31,11 +31,21 @@ import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.PublicKey;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static net.e6tech.elements.security.vault.Constants.mapper;
 
 /**
  * Created by futeh.
+ *
+ * When remoteEncryption is off, keys are decrypted by the key server and leased locally for
+ * leaseDuration milliseconds.  Leases that were used during their term are renewed in the background,
+ * in batches, once renewAt of the term has passed; unused leases are left to expire.  At most maxLeases
+ * keys are leased; beyond that expired leases are dropped first, then the least recently used ones.
  */
 public class KeyClient implements Startable {
     private AsymmetricCipher asym = AsymmetricCipher.getInstance("RSA");
@@ -48,8 +58,13 @@ public class KeyClient implements Startable {
     private String authorization;
     private boolean started;
     private boolean remoteEncryption = true;
-    private CacheFacade<String, SecretKey> cachedSecretKeys;
     private CacheFacade<String, ClearText> cachedSecrets;
+    private long leaseDuration = 10 * 60 * 1000L;
+    private double renewAt = 0.8;
+    private int renewBatchSize = 100;
+    private int maxLeases = 1000;
+    private Map<String, KeyLease> leases = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService renewer;
 
 
     public String getAddress() {
@@ -76,14 +91,47 @@ public class KeyClient implements Startable {
         this.remoteEncryption = remoteEncryption;
     }
 
+    public long getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public void setLeaseDuration(long leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    public double getRenewAt() {
+        return renewAt;
+    }
+
+    public void setRenewAt(double renewAt) {
+        this.renewAt = renewAt;
+    }
+
+    public int getRenewBatchSize() {
+        return renewBatchSize;
+    }
+
+    public void setRenewBatchSize(int renewBatchSize) {
+        this.renewBatchSize = renewBatchSize;
+    }
+
+    public int getMaxLeases() {
+        return maxLeases;
+    }
+
+    public void setMaxLeases(int maxLeases) {
+        this.maxLeases = maxLeases;
+    }
+
+    Set<String> leasedKeys() {
+        return new HashSet<>(leases.keySet());
+    }
+
     public void start() {
         if (started)
             return;
         started = true;
 
-        cachedSecretKeys = new CacheFacade<String, SecretKey>("secretKeys") {};
-        cachedSecretKeys.initPool();
-
         cachedSecrets = new CacheFacade<String, ClearText>("secrets") {};
         cachedSecrets.initPool();
 
@@ -177,11 +225,104 @@ public class KeyClient implements Startable {
         }
     }
 
-    private SecretKey getSecretKey(String key) {
-        return cachedSecretKeys.get(key, ()-> {
-            byte[] keyBytes = decrypt(key);
-            return sym.getKeySpec(keyBytes);
+    private SecretKey getSecretKey(String key) throws GeneralSecurityException {
+        KeyLease lease = leases.get(key);
+        long now = System.currentTimeMillis();
+        if (lease != null) {
+            if (now < lease.expiresAt) {
+                lease.lastAccess = now;
+                return lease.secretKey;
+            }
+            leases.remove(key, lease);
+        }
+        byte[] keyBytes = decrypt(key);
+        try {
+            return lease(key, keyBytes).secretKey;
+        } finally {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Leases keys ahead of use with a single request to the key server.
+     */
+    public void prefetch(Collection<String> keys) throws GeneralSecurityException {
+        Map<String, byte[]> decrypted = decryptKeys(keys);
+        for (Map.Entry<String, byte[]> entry : decrypted.entrySet()) {
+            lease(entry.getKey(), entry.getValue());
+            Arrays.fill(entry.getValue(), (byte) 0);
+        }
+    }
+
+    private KeyLease lease(String key, byte[] keyBytes) {
+        KeyLease lease = new KeyLease(sym.getKeySpec(keyBytes), System.currentTimeMillis(), leaseDuration, renewAt);
+        leases.put(key, lease);
+        if (leases.size() > maxLeases)
+            trimLeases();
+        if (renewer == null)
+            startRenewer();
+        return lease;
+    }
+
+    private synchronized void trimLeases() {
+        long now = System.currentTimeMillis();
+        leases.entrySet().removeIf(entry -> now >= entry.getValue().expiresAt);
+        while (leases.size() > maxLeases) {
+            Map.Entry<String, KeyLease> eldest = null;
+            for (Map.Entry<String, KeyLease> entry : leases.entrySet()) {
+                if (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess)
+                    eldest = entry;
+            }
+            if (eldest == null)
+                break;
+            leases.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private synchronized void startRenewer() {
+        if (renewer != null)
+            return;
+        renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "KeyClient-renewer");
+            thread.setDaemon(true);
+            return thread;
         });
+        long period = Math.max(1000L, (long) (leaseDuration * (1 - renewAt) / 2));
+        renewer.scheduleWithFixedDelay(() -> renewLeases(System.currentTimeMillis()), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void renewLeases(long now) {
+        List<String> due = dueLeases(now);
+        for (int i = 0; i < due.size(); i += renewBatchSize) {
+            try {
+                prefetch(due.subList(i, Math.min(i + renewBatchSize, due.size())));
+            } catch (Exception ex) {
+                // current leases remain valid until they expire
+                Logger.suppress(ex);
+            }
+        }
+    }
+
+    // drops expired leases and returns the keys whose leases were used and are due for renewal.
+    List<String> dueLeases(long now) {
+        List<String> due = new ArrayList<>();
+        for (Map.Entry<String, KeyLease> entry : leases.entrySet()) {
+            KeyLease lease = entry.getValue();
+            if (now >= lease.expiresAt) {
+                leases.remove(entry.getKey(), lease);
+            } else if (now >= lease.renewAt && lease.lastAccess > lease.acquired) {
+                due.add(entry.getKey());
+            }
+        }
+        return due;
+    }
+
+    public synchronized void stop() {
+        if (renewer != null) {
+            renewer.shutdownNow();
+            renewer = null;
+        }
+        leases.clear();
     }
 
     // for decrypt keys
@@ -193,6 +334,20 @@ public class KeyClient implements Startable {
         return decryptResult(ret);
     }
 
+    // decrypts keys in one request.  Keys the server cannot decrypt are not in the returned map.
+    @SuppressWarnings("unchecked")
+    public Map<String, byte[]> decryptKeys(Collection<String> keys) throws GeneralSecurityException {
+        checkAuthorize();
+        DecryptKeys request = new DecryptKeys();
+        request.setKeys(new ArrayList<>(keys));
+        String ret = submit(request);
+        Map<String, String> encoded = decryptResult(ret, Map.class);
+        Map<String, byte[]> decrypted = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : encoded.entrySet())
+            decrypted.put(entry.getKey(), sym.toBytes(entry.getValue()));
+        return decrypted;
+    }
+
     private String submit(Action action) throws GeneralSecurityException {
         Request request = new Request();
         request.setAction(action.getType());
@@ -240,4 +395,19 @@ public class KeyClient implements Startable {
             throw new GeneralSecurityException("Not authenticated");
     }
 
+    private static class KeyLease {
+        private final SecretKey secretKey;
+        private final long acquired;
+        private final long renewAt;
+        private final long expiresAt;
+        private volatile long lastAccess;
+
+        KeyLease(SecretKey secretKey, long acquired, long duration, double renewAt) {
+            this.secretKey = secretKey;
+            this.acquired = acquired;
+            this.renewAt = acquired + (long) (duration * renewAt);
+            this.expiresAt = acquired + duration;
+            this.lastAccess = acquired;
+        }
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+
+@Path("/v1/async")
+public class AsyncRS {
+
+    // responses suspended by suspend(), resumed by the test
+    static final BlockingQueue<AsyncResponse> suspended = new LinkedBlockingQueue<>();
+
+    @GET
+    @Path("hello")
+    @Produces({MediaType.TEXT_PLAIN})
+    public String hello(@QueryParam("text") String text) {
+        return "Hello " + text;
+    }
+
+    @GET
+    @Path("suspend")
+    @Produces({MediaType.TEXT_PLAIN})
+    public void suspend(@Suspended AsyncResponse response) {
+        suspended.add(response);
+    }
+
+    @GET
+    @Path("stage")
+    @Produces({MediaType.TEXT_PLAIN})
+    public CompletionStage<String> stage(@QueryParam("text") String text) {
+        return CompletableFuture.supplyAsync(() -> "Later " + text);
+    }
+}
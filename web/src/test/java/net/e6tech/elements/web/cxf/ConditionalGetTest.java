@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015-2020 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionalGetTest {
+
+    @Test
+    void negotiate() {
+        assertNull(CompressionInterceptor.negotiate(null));
+        assertNull(CompressionInterceptor.negotiate("identity"));
+        assertEquals("gzip", CompressionInterceptor.negotiate("deflate, gzip"));
+        assertEquals("gzip", CompressionInterceptor.negotiate("x-gzip"));
+        assertEquals("deflate", CompressionInterceptor.negotiate("deflate"));
+        assertEquals("gzip", CompressionInterceptor.negotiate("*"));
+
+        // explicit refusals win over the wildcard, regardless of order
+        assertEquals("deflate", CompressionInterceptor.negotiate("gzip;q=0, *"));
+        assertEquals("deflate", CompressionInterceptor.negotiate("*, gzip; q=0.0"));
+        assertNull(CompressionInterceptor.negotiate("gzip;q=0, deflate;q=0, *"));
+        assertNull(CompressionInterceptor.negotiate("*;q=0"));
+        assertEquals("deflate", CompressionInterceptor.negotiate("*;q=0, deflate"));
+        assertEquals("gzip", CompressionInterceptor.negotiate("gzip;q=0.5, deflate"));
+    }
+
+    @Test
+    void etag() {
+        byte[] entity = "hello".getBytes(StandardCharsets.UTF_8);
+        String etag = ConditionalGetInterceptor.etag(entity);
+        assertTrue(etag.startsWith("W/\""));
+        assertTrue(etag.endsWith("\""));
+        assertEquals(etag, ConditionalGetInterceptor.etag("hello".getBytes(StandardCharsets.UTF_8)));
+        assertNotEquals(etag, ConditionalGetInterceptor.etag("world".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void notModified() {
+        String etag = ConditionalGetInterceptor.etag("hello".getBytes(StandardCharsets.UTF_8));
+        String strong = etag.substring(2);
+
+        assertFalse(ConditionalGetInterceptor.notModified(etag, null, Collections.emptyMap()));
+        assertTrue(ConditionalGetInterceptor.notModified(etag, null, headers(HttpHeaders.IF_NONE_MATCH, etag)));
+        assertTrue(ConditionalGetInterceptor.notModified(etag, null, headers("if-none-match", "\"x\", " + strong)));
+        assertTrue(ConditionalGetInterceptor.notModified(etag, null, headers(HttpHeaders.IF_NONE_MATCH, "*")));
+        assertFalse(ConditionalGetInterceptor.notModified(etag, null, headers(HttpHeaders.IF_NONE_MATCH, "\"x\"")));
+
+        Date modified = new Date(1_600_000_000_500L);
+        assertTrue(ConditionalGetInterceptor.notModified(etag, modified, headers(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 13 Sep 2020 12:26:40 GMT")));
+        assertFalse(ConditionalGetInterceptor.notModified(etag, modified, headers(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 13 Sep 2020 12:26:39 GMT")));
+        assertFalse(ConditionalGetInterceptor.notModified(etag, null, headers(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 13 Sep 2020 12:26:40 GMT")));
+
+        // If-None-Match takes precedence over If-Modified-Since
+        Map<String, List<String>> both = headers(HttpHeaders.IF_NONE_MATCH, "\"x\"");
+        both.put(HttpHeaders.IF_MODIFIED_SINCE, Collections.singletonList("Sun, 13 Sep 2020 12:26:40 GMT"));
+        assertFalse(ConditionalGetInterceptor.notModified(etag, modified, both));
+    }
+
+    private static Map<String, List<String>> headers(String name, String value) {
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put(name, Collections.singletonList(value));
+        return headers;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Just enough HTTP/2 for a GET over cleartext with prior knowledge, i.e. h2c without the HTTP/1.1 upgrade.
+ * Request headers are sent as HPACK literals; of the response headers only :status is decoded.
+ */
+class H2cClient {
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int DATA = 0;
+    private static final int HEADERS = 1;
+    private static final int SETTINGS = 4;
+    private static final int PING = 6;
+    private static final int GOAWAY = 7;
+    private static final int RST_STREAM = 3;
+    private static final int END_STREAM = 0x1;
+    private static final int ACK = 0x1;
+    private static final int END_HEADERS = 0x4;
+    private static final int PADDED = 0x8;
+    private static final int PRIORITY = 0x20;
+    private static final int[] STATUS = {200, 204, 206, 304, 400, 404, 500}; // static table entries 8 to 14
+
+    private final String host;
+    private final int port;
+
+    H2cClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    Response get(String path) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setSoTimeout(10000);
+            OutputStream out = socket.getOutputStream();
+            out.write(PREFACE);
+            writeFrame(out, SETTINGS, 0, 0, new byte[0]);
+
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            block.write(0x82); // :method GET
+            block.write(0x86); // :scheme http
+            literal(block, 4, path); // :path
+            literal(block, 1, host + ":" + port); // :authority
+            writeFrame(out, HEADERS, END_STREAM | END_HEADERS, 1, block.toByteArray());
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            Response response = new Response();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                int length = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+                int type = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                int stream = in.readInt() & 0x7fffffff;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (type == SETTINGS && (flags & ACK) == 0) {
+                    writeFrame(out, SETTINGS, ACK, 0, new byte[0]);
+                } else if (type == PING && (flags & ACK) == 0) {
+                    writeFrame(out, PING, ACK, 0, payload);
+                } else if (type == GOAWAY || (type == RST_STREAM && stream == 1)) {
+                    throw new IOException("stream closed by server, frame type " + type);
+                } else if (type == HEADERS && stream == 1) {
+                    int offset = 0;
+                    if ((flags & PADDED) != 0)
+                        offset++;
+                    if ((flags & PRIORITY) != 0)
+                        offset += 5;
+                    response.status = status(payload, offset);
+                } else if (type == DATA && stream == 1) {
+                    int offset = 0;
+                    int padding = 0;
+                    if ((flags & PADDED) != 0) {
+                        padding = payload[0] & 0xff;
+                        offset = 1;
+                    }
+                    body.write(payload, offset, payload.length - offset - padding);
+                }
+                out.flush();
+                if (stream == 1 && (type == HEADERS || type == DATA) && (flags & END_STREAM) != 0)
+                    break;
+            }
+            response.body = new String(body.toByteArray(), StandardCharsets.UTF_8);
+            return response;
+        }
+    }
+
+    // :status is the first response header, either fully indexed or a literal with an indexed name.  It may be
+    // preceded by dynamic table size updates.
+    private static int status(byte[] block, int offset) throws IOException {
+        int pos = offset;
+        while ((block[pos] & 0xe0) == 0x20) {
+            if ((block[pos++] & 0x1f) == 0x1f) {
+                while ((block[pos] & 0x80) != 0)
+                    pos++;
+                pos++;
+            }
+        }
+        int first = block[pos] & 0xff;
+        if ((first & 0x80) != 0) {
+            int index = first & 0x7f;
+            if (index >= 8 && index <= 14)
+                return STATUS[index - 8];
+        } else {
+            int name = ((first & 0xc0) == 0x40) ? first & 0x3f : first & 0x0f;
+            int length = block[pos + 1] & 0x7f;
+            if (name >= 8 && name <= 14 && (block[pos + 1] & 0x80) == 0)
+                return Integer.parseInt(new String(block, pos + 2, length, StandardCharsets.US_ASCII));
+        }
+        throw new IOException("Cannot decode :status from header block");
+    }
+
+    // literal header field without indexing, indexed name, no Huffman coding; values are short.
+    private static void literal(ByteArrayOutputStream block, int nameIndex, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        block.write(nameIndex);
+        block.write(bytes.length);
+        block.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int stream, byte[] payload) throws IOException {
+        out.write(payload.length >>> 16);
+        out.write(payload.length >>> 8);
+        out.write(payload.length);
+        out.write(type);
+        out.write(flags);
+        out.write(stream >>> 24);
+        out.write(stream >>> 16);
+        out.write(stream >>> 8);
+        out.write(stream);
+        out.write(payload);
+    }
+
+    static class Response {
+        int status;
+        String body;
+    }
+}
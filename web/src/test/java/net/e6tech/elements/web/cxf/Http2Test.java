@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015-2019 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import net.e6tech.elements.common.resources.ResourceManager;
+import net.e6tech.elements.web.cxf.jetty.JettyEngine;
+import net.e6tech.elements.web.cxf.tomcat.TomcatEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.ws.rs.container.AsyncResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HTTP/2 cleartext on both engines and async resources through InstanceResourceProvider.
+ */
+public class Http2Test {
+
+    private static final int PORT = 9010;
+    private JaxRSLauncher launcher;
+
+    private JaxRSServer start(ServerEngine engine) {
+        launcher = JaxRSLauncher.create(new ResourceManager(), "http://0.0.0.0:" + PORT + "/restful/")
+                .perInstanceService(AsyncRS.class);
+        launcher.getServer().setServerEngine(engine);
+        launcher.getServer().setMeasurement(true);
+        launcher.start();
+        return launcher.getServer();
+    }
+
+    private static ServerEngine engine(String engineClass, boolean http2) {
+        if (engineClass.equals(JettyEngine.class.getName())) {
+            JettyEngine jetty = new JettyEngine();
+            jetty.setHttp2(http2);
+            return jetty;
+        }
+        TomcatEngine tomcat = new TomcatEngine();
+        tomcat.setBaseDir(System.getProperty("java.io.tmpdir") + "/tomcat");
+        tomcat.setHttp2(http2);
+        return tomcat;
+    }
+
+    @AfterEach
+    void stop() {
+        if (launcher != null)
+            launcher.stop();
+        AsyncRS.suspended.clear();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"net.e6tech.elements.web.cxf.jetty.JettyEngine", "net.e6tech.elements.web.cxf.tomcat.TomcatEngine"})
+    void h2c(String engineClass) throws Exception {
+        start(engine(engineClass, true));
+        H2cClient client = new H2cClient("localhost", PORT);
+        H2cClient.Response response = client.get("/restful/v1/async/hello?text=h2");
+        assertEquals(200, response.status);
+        assertEquals("Hello h2", response.body);
+
+        // async resources work over HTTP/2 as well
+        response = client.get("/restful/v1/async/stage?text=h2");
+        assertEquals(200, response.status);
+        assertEquals("Later h2", response.body);
+
+        // HTTP/1.1 is still served on the same port
+        assertEquals("Hello http", get("/v1/async/hello?text=http"));
+    }
+
+    @Test
+    void withoutHttp2() {
+        start(engine(TomcatEngine.class.getName(), false));
+        assertThrows(IOException.class, () -> new H2cClient("localhost", PORT).get("/restful/v1/async/hello?text=h2"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"net.e6tech.elements.web.cxf.jetty.JettyEngine", "net.e6tech.elements.web.cxf.tomcat.TomcatEngine"})
+    void suspendAndResume(String engineClass) throws Exception {
+        JaxRSServer server = start(engine(engineClass, false));
+        MetricsRegistry.Recorder recorder = server.getMetrics().recorder(AsyncRS.class.getMethod("suspend", AsyncResponse.class));
+        long count = recorder.getMeasurement().getCount();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> reply = executor.submit(() -> get("/v1/async/suspend"));
+            AsyncResponse response = AsyncRS.suspended.poll(10, TimeUnit.SECONDS);
+            assertNotNull(response);
+            assertTrue(response.isSuspended());
+            // the container thread is released and the unit of work stays open until the response is resumed
+            assertThrows(TimeoutException.class, () -> reply.get(200, TimeUnit.MILLISECONDS));
+            assertEquals(count, recorder.getMeasurement().getCount());
+
+            assertTrue(response.resume("resumed"));
+            assertEquals("resumed", reply.get(10, TimeUnit.SECONDS));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (recorder.getMeasurement().getCount() == count && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            assertEquals(count + 1, recorder.getMeasurement().getCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String get(String path) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + PORT + "/restful" + path).openConnection();
+        conn.setReadTimeout(10000);
+        conn.setRequestProperty("Connection", "close"); // servers restart on the same port, don't reuse connections
+        try (InputStream in = conn.getInputStream()) {
+            assertEquals(200, conn.getResponseCode());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
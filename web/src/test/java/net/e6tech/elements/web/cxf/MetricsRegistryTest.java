@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015-2020 Futeh Kao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.e6tech.elements.web.cxf;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    void enabledPerRegistry() throws Exception {
+        Method method = HelloWorldRS.class.getMethods()[0];
+        MetricsRegistry enabled = new MetricsRegistry();
+        enabled.setEnabled(true);
+        MetricsRegistry disabled = new MetricsRegistry();
+
+        MetricsRegistry.Recorder on = enabled.recorder(method);
+        MetricsRegistry.Recorder off = disabled.recorder(method);
+        // both servers share the method's measurement
+        assertSame(on.getMeasurement(), off.getMeasurement());
+
+        long count = on.getMeasurement().getCount();
+        off.record(5);
+        assertEquals(count, on.getMeasurement().getCount());
+        on.record(5);
+        assertEquals(count + 1, on.getMeasurement().getCount());
+
+        // disabling one server does not turn off the other
+        disabled.setEnabled(false);
+        on.record(5);
+        assertEquals(count + 2, on.getMeasurement().getCount());
+    }
+}
@@ -31,21 +31,25 @@ import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.*;
 
-import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Created by futeh.
  */
 public class KeyClientTest {
 
+    public static final String ADDRESS = "http://localhost:1111/restful/keyserver/v1";
+    public static final Credential user1 = new Credential("user1", "1234567890123456789012345678901234567890".toCharArray());
+    public static String appKey;
+    public static String otherKey;
     static KeyClient client;
     static JaxRSServer server;
-    static Credential user1 = new Credential("user1", "1234567890123456789012345678901234567890".toCharArray());
-    static String appKey;
 
+    // also used by the client package tests; the server is started once per jvm.
     @BeforeAll
-    static void startKeyServer() throws Exception {
+    public static synchronized void startKeyServer() throws Exception {
+        if (server != null)
+            return;
         ResourceManager rm = new ResourceManager();
         rm.loadProvision(Provision.class);
         Resources res = rm.open(null);
@@ -83,6 +87,7 @@ public class KeyClientTest {
 
         // set up a key
         appKey = manager.generateKey(dualEntry);
+        otherKey = manager.generateKey(dualEntry);
 
         server = res.newInstance(JaxRSServer.class);
         List<Map<String, Object>> resources = new ArrayList<>();
@@ -99,7 +104,7 @@ public class KeyClientTest {
         server.start();
 
         client = new KeyClient();
-        client.setAddress("http://localhost:1111/restful/keyserver/v1");
+        client.setAddress(ADDRESS);
         client.setCredential(user1);
         client.start();
 
@@ -123,4 +128,26 @@ public class KeyClientTest {
         assertTrue(Arrays.equals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, bytes));
     }
 
+    @Test
+    void decryptKeys() throws Exception {
+        Map<String, byte[]> keys = client.decryptKeys(Arrays.asList(appKey, otherKey, "not-a-key"));
+        assertEquals(new HashSet<>(Arrays.asList(appKey, otherKey)), keys.keySet());
+        assertFalse(Arrays.equals(keys.get(appKey), keys.get(otherKey)));
+        assertArrayEquals(client.decrypt(appKey), keys.get(appKey));
+
+        // data encrypted by the key server decrypts with the leased key
+        KeyClient local = new KeyClient();
+        local.setAddress(ADDRESS);
+        local.setCredential(user1);
+        local.setRemoteEncryption(false);
+        local.start();
+        try {
+            String iv = SymmetricCipher.getInstance("AES").generateIV();
+            byte[] plain = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+            assertArrayEquals(plain, local.decrypt(appKey, client.encrypt(appKey, plain, iv), iv));
+            assertArrayEquals(plain, client.decrypt(otherKey, local.encrypt(otherKey, plain, iv), iv));
+        } finally {
+            local.stop();
+        }
+    }
 }
@@ -0,0 +1,102 @@
+/*
+Copyright 2015-2019 Futeh Kao
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package net.e6tech.elements.web.security.vault.client;
+
+import net.e6tech.elements.security.SymmetricCipher;
+import net.e6tech.elements.web.security.vault.KeyClientTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static net.e6tech.elements.web.security.vault.KeyClientTest.appKey;
+import static net.e6tech.elements.web.security.vault.KeyClientTest.otherKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyLeaseTest {
+
+    private KeyClient client;
+    private String iv = SymmetricCipher.getInstance("AES").generateIV();
+    private byte[] plain = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+    @BeforeAll
+    static void startKeyServer() throws Exception {
+        KeyClientTest.startKeyServer();
+    }
+
+    @BeforeEach
+    void setup() {
+        client = new KeyClient();
+        client.setAddress(KeyClientTest.ADDRESS);
+        client.setCredential(KeyClientTest.user1);
+        client.setRemoteEncryption(false);
+        client.setLeaseDuration(60 * 1000L);
+        client.setRenewAt(0.5);
+        client.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.stop();
+    }
+
+    @Test
+    void renewal() throws Exception {
+        long start = System.currentTimeMillis();
+        String encrypted = client.encrypt(appKey, plain, iv);
+        assertEquals(Collections.singleton(appKey), client.leasedKeys());
+        // not used since it was leased
+        assertTrue(client.dueLeases(start + 30 * 1000L).isEmpty());
+
+        Thread.sleep(2);
+        assertArrayEquals(plain, client.decrypt(appKey, encrypted, iv));
+        assertTrue(client.dueLeases(start + 10 * 1000L).isEmpty()); // before renewAt
+        assertEquals(Collections.singletonList(appKey), client.dueLeases(start + 35 * 1000L));
+
+        client.renewLeases(start + 35 * 1000L);
+        // only leases that were due are renewed, the new lease has not been used yet
+        assertEquals(Collections.singleton(appKey), client.leasedKeys());
+        assertTrue(client.dueLeases(System.currentTimeMillis() + 35 * 1000L).isEmpty());
+        assertArrayEquals(plain, client.decrypt(appKey, encrypted, iv));
+
+        // expired leases are dropped
+        assertTrue(client.dueLeases(System.currentTimeMillis() + 61 * 1000L).isEmpty());
+        assertTrue(client.leasedKeys().isEmpty());
+    }
+
+    @Test
+    void maxLeases() throws Exception {
+        client.setMaxLeases(1);
+        client.prefetch(Collections.singletonList(appKey));
+        Thread.sleep(2);
+        client.prefetch(Collections.singletonList(otherKey));
+        assertEquals(Collections.singleton(otherKey), client.leasedKeys());
+
+        client.encrypt(otherKey, plain, iv);
+        Thread.sleep(2);
+        client.encrypt(appKey, plain, iv);
+        // otherKey was used less recently and gave way
+        assertEquals(Collections.singleton(appKey), client.leasedKeys());
+
+        client.setMaxLeases(2);
+        client.prefetch(Arrays.asList(appKey, otherKey));
+        assertEquals(new HashSet<>(Arrays.asList(appKey, otherKey)), client.leasedKeys());
+    }
+}